@@ -0,0 +1,296 @@
+package com.homeassistant;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.homeassistant.benchmark.PluginHarness;
+import com.homeassistant.classes.TickMetrics;
+import com.homeassistant.enums.EntityPriority;
+import com.homeassistant.enums.MetricSection;
+import com.homeassistant.network.EntityStateStore;
+import com.homeassistant.network.HomeassistantHttpClient;
+import com.homeassistant.network.HomeassistantStandIn;
+import com.homeassistant.network.OutboundQueue;
+import com.homeassistant.network.RestTransport;
+import com.homeassistant.trackers.events.HomeassistantEvents;
+import lombok.Getter;
+import net.runelite.api.events.GameTick;
+import net.runelite.client.eventbus.EventBus;
+import net.runelite.client.events.ConfigChanged;
+import okio.ByteString;
+import org.openjdk.jmh.annotations.*;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Drives entity updates through the plugin as fast as it takes them, against {@link HomeassistantStandIn} with the
+ * given latency, error and drop rates. Every operation posts `entitiesPerTick` updates and a game tick, every
+ * {@link #EVENT_EVERY_TICKS}th operation an event as well.
+ * An update is timed from when it was posted to the plugin's callback for the request that delivered it. Updates
+ * that were coalesced into a later one are timed from the first of them. The bookkeeping for that runs in the flush.
+ * After the trial the plugin gets bare game ticks until everything is delivered. It fails when that takes longer than
+ * the longest backoff, when an event got lost without the outbound queue dropping it, when the heap grew too much or
+ * when the p99 update to acknowledgement latency went over `maxP99Ms`.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class LoadBenchmark {
+    private static final String EVENT_SERVICE = "trigger_load_test";
+    // Updates rotate over this many entity ids
+    private static final int DISTINCT_ENTITIES = 2000;
+    private static final int EVENT_EVERY_TICKS = 10;
+    private static final long MAX_HEAP_GROWTH_BYTES = 64L << 20;
+    // Longer than the longest backoff of the outbound queue
+    private static final long DRAIN_TIMEOUT_MS = 90_000L;
+    private static final long DRAIN_TICK_MS = 10L;
+
+    @Param({"100", "1000"})
+    public int entitiesPerTick;
+
+    @Param({"20"})
+    public long latencyMs;
+
+    @Param({"0", "0.05"})
+    public double errorRate;
+
+    // Closes the connection without an answer, the plugin has to send those again
+    @Param({"0", "0.01"})
+    public double dropRate;
+
+    @Param({"1000"})
+    public long maxP99Ms;
+
+    private HomeassistantStandIn standIn;
+    private HomeassistantPlugin plugin;
+    private EventBus eventBus;
+    private EntityStateStore entityStateStore;
+    private OutboundQueue outboundQueue;
+    private TickMetrics tickMetrics;
+    private TimedRestTransport transport;
+
+    private int nextEntity = 0;
+    private long updates = 0;
+    private long ticks = 0;
+    private long events = 0;
+    private int maxPendingEntities = 0;
+    private int maxOutboundQueue = 0;
+    private long heapAtStart;
+
+    @Setup
+    public void setup() throws Exception {
+        standIn = new HomeassistantStandIn(latencyMs, errorRate, dropRate, 1L);
+        standIn.start(0);
+
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("homeassistantUrl", standIn.getUrl());
+        overrides.put("homeassistantToken", HomeassistantStandIn.TOKEN);
+        overrides.put("validateToken", true);
+        overrides.put("http2", false);
+        // One request per event, so a dropped request is one dropped event
+        overrides.put("batchEvents", false);
+        PluginHarness harness = new PluginHarness(overrides,
+                binder -> binder.bind(RestTransport.class).to(TimedRestTransport.class));
+        eventBus = harness.getEventBus();
+        entityStateStore = harness.getInstance(EntityStateStore.class);
+        outboundQueue = harness.getInstance(OutboundQueue.class);
+        tickMetrics = harness.getInstance(TickMetrics.class);
+        transport = harness.getInstance(TimedRestTransport.class);
+
+        plugin = harness.getInstance(HomeassistantPlugin.class);
+        plugin.startUp();
+        eventBus.register(plugin);
+
+        // Goes through /api/ and /api/services like the config button does
+        ConfigChanged validate = new ConfigChanged();
+        validate.setGroup(HomeassistantConfig.CONFIG_GROUP);
+        validate.setKey("validate_token");
+        eventBus.post(validate);
+
+        heapAtStart = usedHeap();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        long heapGrowth = usedHeap() - heapAtStart;
+        long drainMs = drain();
+        long p99Ms = TimeUnit.NANOSECONDS.toMillis(transport.latencyPercentile(99));
+        long httpP99Ms = 0;
+        for (TickMetrics.Snapshot snapshot : tickMetrics.roll()) {
+            if (snapshot.getSection() == MetricSection.HTTP) {
+                httpP99Ms = TimeUnit.NANOSECONDS.toMillis(snapshot.getP99());
+            }
+        }
+        long dropped = outboundQueue.getDropped();
+        long lostEvents = events - transport.getDeliveredEvents().get() - dropped;
+
+        eventBus.unregister(plugin);
+        plugin.shutDown();
+        standIn.shutdown();
+
+        System.out.printf("%nrequests %d, entities acknowledged %d, errors %d, drops %d%n",
+                standIn.getRequests().get(), standIn.getEntities().get(), standIn.getErrors().get(), standIn.getDrops().get());
+        System.out.printf("events %d, delivered %d, dropped by the outbound queue %d, drained in %d ms%n",
+                events, transport.getDeliveredEvents().get(), dropped, drainMs);
+        System.out.printf("max pending entities %d, max outbound queue %d, heap growth %d KiB, p99 update to ack %d ms, p99 request %d ms%n",
+                maxPendingEntities, maxOutboundQueue, heapGrowth >> 10, p99Ms, httpP99Ms);
+
+        List<String> failures = new ArrayList<>();
+        if (drainMs < 0) {
+            failures.add("not everything was delivered " + DRAIN_TIMEOUT_MS + " ms after the load stopped");
+        }
+        if (lostEvents > 0) {
+            failures.add(lostEvents + " events lost without being dropped");
+        }
+        if (heapGrowth > MAX_HEAP_GROWTH_BYTES) {
+            failures.add("heap grew " + (heapGrowth >> 20) + " MiB");
+        }
+        if (p99Ms > maxP99Ms) {
+            failures.add("p99 update to ack " + p99Ms + " ms > " + maxP99Ms + " ms");
+        }
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Load bounds exceeded: " + String.join(", ", failures));
+        }
+    }
+
+    @Benchmark
+    public void tick() {
+        long now = System.nanoTime();
+        List<Map<String, Object>> entities = new ArrayList<>(entitiesPerTick);
+        for (int i = 0; i < entitiesPerTick; i++) {
+            String entityId = "sensor.runelite_load_test_" + nextEntity;
+            Map<String, Object> entity = new HashMap<>();
+            entity.put("entity_id", entityId);
+            entity.put("state", updates++);
+            entities.add(entity);
+            transport.updated(entityId, now);
+            nextEntity = (nextEntity + 1) % DISTINCT_ENTITIES;
+        }
+        eventBus.post(new HomeassistantEvents.UpdateEntities(entities, EntityPriority.HIGH));
+
+        if (++ticks % EVENT_EVERY_TICKS == 0) {
+            Map<String, Object> event = new HashMap<>();
+            event.put("tick", ticks);
+            events++;
+            eventBus.post(new HomeassistantEvents.SendEvent(event, EVENT_SERVICE));
+        }
+        eventBus.post(new GameTick());
+
+        maxPendingEntities = Math.max(maxPendingEntities, entityStateStore.size());
+        maxOutboundQueue = Math.max(maxOutboundQueue, outboundQueue.size());
+    }
+
+    /**
+     * Posts bare game ticks until every entity and event is delivered and the backoff ended. Returns how long that
+     * took, or -1 when it didn't happen in time.
+     */
+    private long drain() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (entityStateStore.hasChanges() || !outboundQueue.isEmpty() || outboundQueue.isBackingOff()
+                || transport.getInFlight().get() > 0) {
+            if (System.currentTimeMillis() - start > DRAIN_TIMEOUT_MS) {
+                return -1;
+            }
+            eventBus.post(new GameTick());
+            Thread.sleep(DRAIN_TICK_MS);
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The plugin's REST transport, timing every entity in a request from its first update that homeassistant didn't
+     * have yet to the plugin's callback. Counts the load test's events that were delivered.
+     */
+    @Singleton
+    public static class TimedRestTransport extends RestTransport {
+        private static final int LATENCY_SAMPLES = 1 << 16;
+
+        // System.nanoTime of the first update homeassistant doesn't have yet, by entity id
+        private final Map<String, Long> firstUpdates = new ConcurrentHashMap<>();
+        // Ring of the latest update to acknowledgement latencies, in nanoseconds
+        private final long[] latencies = new long[LATENCY_SAMPLES];
+        private long latencyCount = 0;
+
+        @Getter
+        private final AtomicInteger inFlight = new AtomicInteger();
+        @Getter
+        private final AtomicLong deliveredEvents = new AtomicLong();
+
+        @Inject
+        public TimedRestTransport(HomeassistantHttpClient httpClient, HomeassistantConfig config) {
+            super(httpClient, config);
+        }
+
+        void updated(String entityId, long now) {
+            firstUpdates.putIfAbsent(entityId, now);
+        }
+
+        @Override
+        public void send(String service, ByteString jsonPayload, Consumer<Boolean> onDelivered) {
+            // Taken when the flush sends them, updates posted while the request is out start a new measurement
+            Map<String, Long> sent = service.equals(OutboundQueue.ENTITY_SERVICE) ? take(jsonPayload) : Collections.emptyMap();
+            inFlight.incrementAndGet();
+            super.send(service, jsonPayload, delivered -> {
+                long now = System.nanoTime();
+                if (delivered) {
+                    for (long firstUpdate : sent.values()) {
+                        record(now - firstUpdate);
+                    }
+                    if (service.equals(EVENT_SERVICE)) {
+                        deliveredEvents.incrementAndGet();
+                    }
+                } else {
+                    // The plugin sends them again, still timed from the first update
+                    sent.forEach((entityId, firstUpdate) -> firstUpdates.merge(entityId, firstUpdate, Math::min));
+                }
+                onDelivered.accept(delivered);
+                inFlight.decrementAndGet();
+            });
+        }
+
+        private Map<String, Long> take(ByteString jsonPayload) {
+            Map<String, Long> sent = new HashMap<>();
+            for (JsonElement entity : new JsonParser().parse(jsonPayload.utf8()).getAsJsonObject().getAsJsonArray("entities")) {
+                String entityId = entity.getAsJsonObject().get("entity_id").getAsString();
+                Long firstUpdate = firstUpdates.remove(entityId);
+                if (firstUpdate != null) {
+                    sent.put(entityId, firstUpdate);
+                }
+            }
+            return sent;
+        }
+
+        private synchronized void record(long nanos) {
+            latencies[(int) (latencyCount++ % LATENCY_SAMPLES)] = nanos;
+        }
+
+        /**
+         * The `percentile` (0-100) of the latest update to acknowledgement latencies, in nanoseconds.
+         */
+        synchronized long latencyPercentile(double percentile) {
+            int count = (int) Math.min(latencyCount, LATENCY_SAMPLES);
+            if (count == 0) {
+                return 0;
+            }
+
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted[Math.min(count - 1, (int) Math.ceil(percentile / 100 * count) - 1)];
+        }
+    }
+}
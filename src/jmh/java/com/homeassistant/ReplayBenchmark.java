@@ -0,0 +1,217 @@
+package com.homeassistant;
+
+import com.homeassistant.benchmark.PluginHarness;
+import com.homeassistant.benchmark.Stubs;
+import com.homeassistant.replay.ReplayFile;
+import net.runelite.api.ChatMessageType;
+import net.runelite.api.GameState;
+import net.runelite.api.Skill;
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.events.ChatMessage;
+import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.GameTick;
+import net.runelite.api.events.VarbitChanged;
+import net.runelite.api.gameval.VarbitID;
+import net.runelite.client.eventbus.EventBus;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a recording from {@link com.homeassistant.replay.ReplayRecorder} through the whole plugin, with a stubbed
+ * Client that answers with the recorded values. Nothing waits for the game, so a recording replays as fast as the
+ * plugin can handle it. Predictions run inline, see {@link PluginHarness}, and no homeassistant is configured, so
+ * every run is the same. Pass a recording with -PjmhInclude=ReplayBenchmark -PjmhArgs="-p replay=/path/to/file",
+ * without one a generated hour of play is replayed.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayBenchmark {
+    private static final int GENERATED_TICKS = 6000;
+
+    @Param({""})
+    public String replay;
+
+    private final List<Object> steps = new ArrayList<>();
+    private Stubs.ClientState state;
+    private EventBus eventBus;
+    private HomeassistantPlugin plugin;
+    private int nextStep = 0;
+
+    @Setup
+    public void setup() throws Exception {
+        PluginHarness harness = new PluginHarness(Collections.emptyMap());
+        state = harness.getState();
+        eventBus = harness.getEventBus();
+
+        File file = replay.isEmpty() ? generateSession() : new File(replay);
+        try (InputStream in = new FileInputStream(file)) {
+            ReplayFile.read(in, new ReplayFile.Visitor() {
+                @Override
+                public void onSnapshot(int[] varps, int[] varbitIds, int[] varbitValues) {
+                    System.arraycopy(varps, 0, state.varps, 0, Math.min(varps.length, state.varps.length));
+                    for (int i = 0; i < varbitIds.length; i++) {
+                        state.varbits[varbitIds[i]] = varbitValues[i];
+                    }
+                }
+
+                @Override
+                public void onGameTick(ReplayFile.Frame frame) {
+                    steps.add(frame.copy());
+                }
+
+                @Override
+                public void onVarbitChanged(VarbitChanged event) {
+                    steps.add(event);
+                }
+
+                @Override
+                public void onChatMessage(ChatMessage event) {
+                    steps.add(event);
+                }
+
+                @Override
+                public void onGameStateChanged(GameStateChanged event) {
+                    steps.add(event);
+                }
+            });
+        }
+
+        plugin = harness.getInstance(HomeassistantPlugin.class);
+        plugin.startUp();
+        eventBus.register(plugin);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        eventBus.unregister(plugin);
+        plugin.shutDown();
+    }
+
+    /**
+     * The whole recording, for throughput.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int wholeRecording() {
+        for (Object step : steps) {
+            replayStep(step);
+        }
+        return steps.size();
+    }
+
+    /**
+     * Everything up to and including the next game tick, for the latency distribution of a tick.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int nextTick() {
+        while (true) {
+            Object step = steps.get(nextStep);
+            nextStep = (nextStep + 1) % steps.size();
+            replayStep(step);
+            if (step instanceof ReplayFile.Frame) {
+                return nextStep;
+            }
+        }
+    }
+
+    private void replayStep(Object step) {
+        if (step instanceof ReplayFile.Frame) {
+            apply((ReplayFile.Frame) step);
+            eventBus.post(new GameTick());
+            return;
+        }
+
+        if (step instanceof VarbitChanged) {
+            VarbitChanged event = (VarbitChanged) step;
+            if (event.getVarbitId() >= 0) {
+                state.varbits[event.getVarbitId()] = event.getValue();
+            } else if (event.getVarpId() >= 0 && event.getVarpId() < state.varps.length) {
+                state.varps[event.getVarpId()] = event.getValue();
+            }
+        } else if (step instanceof GameStateChanged) {
+            state.gameState = ((GameStateChanged) step).getGameState();
+        }
+        eventBus.post(step);
+    }
+
+    private void apply(ReplayFile.Frame frame) {
+        state.tickCount = frame.tickCount;
+        state.world = frame.world;
+        state.energy = frame.energy;
+        state.playerName = frame.playerName;
+        if (state.location.getX() != frame.x || state.location.getY() != frame.y || state.location.getPlane() != frame.plane) {
+            state.location = new WorldPoint(frame.x, frame.y, frame.plane);
+        }
+        state.animation = frame.animation;
+        state.poseAnimation = frame.poseAnimation;
+        state.idlePoseAnimation = frame.idlePoseAnimation;
+        state.interacting = frame.interacting;
+        System.arraycopy(frame.boostedSkills, 0, state.boostedSkills, 0, state.boostedSkills.length);
+        System.arraycopy(frame.realSkills, 0, state.realSkills, 0, state.realSkills.length);
+    }
+
+    /**
+     * An hour of play: fighting with changing health, prayer and run energy, walking, daily varbits changing and the
+     * occasional collection log message.
+     */
+    private static File generateSession() throws IOException {
+        File file = File.createTempFile("homeassistant-replay", ".bin.gz");
+        file.deleteOnExit();
+
+        try (ReplayFile.Writer writer = new ReplayFile.Writer(new FileOutputStream(file))) {
+            writer.writeSnapshot(new int[4096], new int[0], new int[0]);
+
+            GameStateChanged loggedIn = new GameStateChanged();
+            loggedIn.setGameState(GameState.LOGGED_IN);
+            writer.writeGameStateChanged(loggedIn);
+
+            ReplayFile.Frame frame = new ReplayFile.Frame();
+            frame.playerName = "Iron Man_ 2";
+            frame.world = 302;
+            frame.x = 3222;
+            frame.y = 3218;
+            Arrays.fill(frame.boostedSkills, 70);
+            Arrays.fill(frame.realSkills, 70);
+            frame.realSkills[Skill.HITPOINTS.ordinal()] = 99;
+            for (int tick = 0; tick < GENERATED_TICKS; tick++) {
+                frame.tickCount = tick;
+                frame.energy = 10000 - (tick % 100) * 100;
+                frame.boostedSkills[Skill.HITPOINTS.ordinal()] = 99 - (tick / 5) % 30;
+                frame.boostedSkills[Skill.PRAYER.ordinal()] = 70 - (tick / 20) % 70;
+                frame.animation = tick % 4 == 0 ? 390 : -1;
+                frame.interacting = tick % 200 < 150;
+                if (tick % 2 == 0) {
+                    frame.x = 3222 + (tick / 2) % 20;
+                }
+                writer.writeGameTick(frame);
+
+                if (tick % 50 == 0) {
+                    VarbitChanged varbitChanged = new VarbitChanged();
+                    varbitChanged.setVarbitId(VarbitID.SEERS_FREE_FLAX);
+                    varbitChanged.setValue((tick / 50) % 2);
+                    writer.writeVarbitChanged(varbitChanged);
+                }
+                if (tick % 500 == 0) {
+                    ChatMessage chatMessage = new ChatMessage();
+                    chatMessage.setType(ChatMessageType.GAMEMESSAGE);
+                    chatMessage.setName("");
+                    chatMessage.setMessage("New item added to your collection log: Abyssal whip");
+                    writer.writeChatMessage(chatMessage);
+                }
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,159 @@
+package com.homeassistant.classes;
+
+import com.homeassistant.replay.ReplayFile;
+import net.runelite.api.Skill;
+import net.runelite.api.events.ChatMessage;
+import net.runelite.client.util.Text;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+/**
+ * One chat message through `ruleCount` chat rules, with {@link ChatRuleMatcher} and with every rule's regex run on
+ * every message the way a tracker per rule would. Messages come from the chat in a recording, pass one with
+ * -PjmhInclude=ChatRuleMatcherBenchmark -PjmhArgs="-p replay=/path/to/file", without one a generated chat log of
+ * mostly skilling and combat spam is used.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatRuleMatcherBenchmark {
+    private static final int GENERATED_MESSAGES = 5000;
+    private static final String[] BOSSES = {
+            "Vorkath", "Zulrah", "General Graardor", "Kree'arra", "Commander Zilyana", "K'ril Tsutsaroth", "Cerberus",
+            "Alchemical Hydra", "The Nightmare", "Nex", "Corporeal Beast", "Kraken", "Thermonuclear smoke devil",
+            "Abyssal Sire", "Grotesque Guardians", "Phantom Muspah", "Duke Sucellus", "Vardorvis", "The Leviathan",
+            "The Whisperer", "Sarachnis", "Scorpia", "Vet'ion", "Callisto", "Venenatis"
+    };
+    private static final String[] ITEMS = {
+            "Abyssal whip", "Dragon warhammer", "Twisted bow", "Draconic visage", "Tanzanite fang", "Magic fang",
+            "Serpentine visage", "Primordial crystal", "Pegasian crystal", "Eternal crystal", "Smouldering stone",
+            "Hydra's claw", "Dragon pickaxe", "Armadyl crossbow", "Bandos chestplate", "Bandos tassets",
+            "Saradomin sword", "Zamorakian spear", "Staff of the dead", "Elysian sigil", "Spectral sigil",
+            "Arcane sigil", "Kraken tentacle", "Occult necklace", "Zenyte shard"
+    };
+    private static final String[] SPAM = {
+            "You catch some shrimps.", "You swing your pick at the rock.", "You manage to mine some iron.",
+            "You get some willow logs.", "The fire catches and the logs begin to burn.", "You cook a lobster.",
+            "You accidentally burn the lobster.", "Your inventory is too full to hold any more logs.",
+            "You eat the shark. It heals some health.", "You drink some of your super combat potion.",
+            "You have 3 doses of potion left.", "Your Ring of dueling has 4 uses left.",
+            "You feel the effects of the antifire potion wearing off.", "You are poisoned!", "Oh dear, you are dead!",
+            "Your reward is: 12 x Nature rune.", "Your Slayer task is to kill 150 more Abyssal demons.",
+            "You've completed 24 tasks in a row and received 15 points; return to a Slayer master.",
+            "You have a sudden urge to check your bank.", "Welcome to Old School RuneScape."
+    };
+
+    @Param({"10", "100"})
+    public int ruleCount;
+
+    @Param({""})
+    public String replay;
+
+    private ChatRuleMatcher matcher;
+    private List<ChatRuleMatcher.Rule> rules;
+    private String[] messages;
+    private int next = 0;
+    private int matched = 0;
+    private final ChatRuleMatcher.Listener listener = (rule, ruleMatcher, message) -> matched++;
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder config = new StringBuilder();
+        for (int i = 0; i < ruleCount; i++) {
+            switch (i % 4) {
+                case 0:
+                    config.append(String.format("trigger_kc_%d -> Your %s kill count is: (?<count>\\d+)%n", i, BOSSES[i / 4 % BOSSES.length]));
+                    break;
+                case 1:
+                    config.append(String.format("trigger_drop_%d -> Valuable drop: %s \\((?<value>[\\d,]+) coins\\)%n", i, ITEMS[i / 4 % ITEMS.length]));
+                    break;
+                case 2:
+                    Skill skill = Skill.values()[i / 4 % 23];
+                    config.append(String.format("trigger_level_%d -> Congratulations, you've just advanced your %s level\\. You are now level (?<level>\\d+)\\.%n", i, skill.getName()));
+                    break;
+                default:
+                    config.append(String.format("trigger_untradeable_%d -> Untradeable drop: %s%n", i, ITEMS[(i / 4 + 7) % ITEMS.length]));
+            }
+        }
+        matcher = ChatRuleMatcher.parse(config.toString());
+        rules = matcher.getRules();
+
+        List<String> log = replay.isEmpty() ? generateLog() : readLog(replay);
+        if (log.isEmpty()) {
+            throw new IllegalStateException("No chat messages in " + replay);
+        }
+        messages = log.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public int automaton() {
+        matcher.match(nextMessage(), listener);
+        return matched;
+    }
+
+    @Benchmark
+    public int everyRule() {
+        String message = nextMessage();
+        for (ChatRuleMatcher.Rule rule : rules) {
+            Matcher ruleMatcher = rule.getPattern().matcher(message);
+            if (ruleMatcher.find()) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private String nextMessage() {
+        String message = messages[next];
+        next = next + 1 == messages.length ? 0 : next + 1;
+        return message;
+    }
+
+    private static List<String> readLog(String file) throws Exception {
+        List<String> log = new ArrayList<>();
+        try (InputStream in = new FileInputStream(file)) {
+            ReplayFile.read(in, new ReplayFile.Visitor() {
+                @Override
+                public void onChatMessage(ChatMessage event) {
+                    log.add(Text.removeTags(event.getMessage()));
+                }
+            });
+        }
+        return log;
+    }
+
+    /**
+     * Mostly spam, with a kill count, drop or level up every 50 messages or so.
+     */
+    private static List<String> generateLog() {
+        Random random = new Random(1);
+        List<String> log = new ArrayList<>(GENERATED_MESSAGES);
+        for (int i = 0; i < GENERATED_MESSAGES; i++) {
+            if (random.nextInt(50) != 0) {
+                log.add(SPAM[random.nextInt(SPAM.length)]);
+                continue;
+            }
+
+            switch (random.nextInt(3)) {
+                case 0:
+                    log.add(String.format("Your %s kill count is: %d.", BOSSES[random.nextInt(BOSSES.length)], random.nextInt(2000)));
+                    break;
+                case 1:
+                    log.add(String.format("Valuable drop: %s (%,d coins)", ITEMS[random.nextInt(ITEMS.length)], random.nextInt(50_000_000)));
+                    break;
+                default:
+                    log.add(String.format("Congratulations, you've just advanced your %s level. You are now level %d.",
+                            Skill.values()[random.nextInt(23)].getName(), 2 + random.nextInt(98)));
+            }
+        }
+        return log;
+    }
+}
@@ -0,0 +1,43 @@
+package com.homeassistant.classes;
+
+import com.homeassistant.benchmark.Stubs;
+import net.runelite.api.Client;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The username slug uncached through {@link Utils#GetUserName}, and the per login copy {@link PlayerIdentity} gives the
+ * trackers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilsBenchmark {
+    @Param({"zezima", "Iron Man_ 2", "__A  b--C__"})
+    public String playerName;
+
+    private Client client;
+    private PlayerIdentity playerIdentity;
+
+    @Setup
+    public void setup() {
+        Stubs.ClientState state = new Stubs.ClientState();
+        state.playerName = playerName;
+        client = Stubs.client(state);
+        playerIdentity = new PlayerIdentity(client);
+    }
+
+    @Benchmark
+    public String getUserName() {
+        return Utils.GetUserName(client);
+    }
+
+    @Benchmark
+    public String playerIdentityEntityIdPrefix() {
+        return playerIdentity.getEntityIdPrefix();
+    }
+}
@@ -0,0 +1,116 @@
+package com.homeassistant.network;
+
+import com.google.gson.Gson;
+import net.runelite.api.Skill;
+import okio.ByteString;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What gzipping a login burst costs next to serializing it, at the deflate levels worth considering.
+ * `player` is what the player data tracker sends when logging in, `full` adds farming, birdhouses and dailies.
+ * The sizes before and after are printed after each trial, so the time can be weighed against the bytes saved.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+    private static final String PREFIX = "sensor.runelite_zezima_";
+    private static final String[] FARMING_TABS = {
+            "herb", "tree", "fruit_tree", "special", "flower", "allotment", "bush", "grape", "hops", "mushroom"
+    };
+    private static final String[] DAILIES = {
+            "herb_boxes", "staves", "essence", "runes", "sand", "flax", "arrows", "dynamite"
+    };
+
+    @Param({"player", "full"})
+    public String burst;
+
+    @Param({"1", "6", "9"})
+    public int level;
+
+    private PayloadSerializer serializer;
+    private Map<String, Object> payload;
+    private ByteString serialized;
+
+    @Setup
+    public void setup() {
+        serializer = new PayloadSerializer(new Gson());
+
+        List<Map<String, Object>> entities = new ArrayList<>();
+        entities.add(entity("health", "current_health", 99));
+        entities.add(entity("prayer", "current_prayer", 77));
+        entities.add(entity("special_attack", "current_special_attack", 100));
+        entities.add(entity("run_energy", "current_run_energy", 100));
+        entities.add(entity("status_effects", "current_status_effects", Collections.emptyList()));
+        for (Skill skill : Skill.values()) {
+            if (skill.getName().equals("Overall")) {
+                continue;
+            }
+            entities.add(entity("skill_" + skill.getName().toLowerCase().replaceAll(" ", "_"), "virtual_level", 90 + skill.ordinal() % 10));
+        }
+        Map<String, Object> status = entity("player_status", "is_online", true);
+        status.put("world", 302);
+        entities.add(status);
+
+        if (burst.equals("full")) {
+            for (int i = 0; i < FARMING_TABS.length; i++) {
+                Map<String, Object> patch = entity(FARMING_TABS[i] + "_patch", "status", i % 3 == 0 ? "ready" : "in_progress");
+                patch.put("completion_time", "2026-10-18T1" + i % 10 + ":25:00Z");
+                entities.add(patch);
+            }
+            Map<String, Object> contract = entity("farming_contract", "status", "in_progress");
+            contract.put("patch_type", "herb");
+            contract.put("crop_type", "Snapdragon");
+            contract.put("completion_time", "2026-10-18T13:45:00Z");
+            entities.add(contract);
+            entities.add(entity("farming_tick_offset", "farming_tick_offset", 123));
+
+            Map<String, Object> birdhouses = entity("birdhouses", "status", "in_progress");
+            birdhouses.put("completion_time", "2026-10-18T12:50:00Z");
+            entities.add(birdhouses);
+            for (String daily : DAILIES) {
+                entities.add(entity("daily_" + daily, "state", daily.length() % 2 == 0));
+            }
+        }
+
+        payload = new HashMap<>();
+        payload.put("entities", entities);
+        serialized = serializer.serialize(payload);
+    }
+
+    @TearDown
+    public void tearDown() {
+        int compressed = PayloadCompression.gzip(serialized, level).size();
+        System.out.printf("%n%s burst, level %d: %d bytes, %d gzipped, %d%% saved, compressed by default: %b%n",
+                burst, level, serialized.size(), compressed, 100 - compressed * 100 / serialized.size(),
+                PayloadCompression.shouldCompress(serialized));
+    }
+
+    @Benchmark
+    public ByteString serialize() {
+        return serializer.serialize(payload);
+    }
+
+    @Benchmark
+    public ByteString serializeAndGzip() {
+        return PayloadCompression.gzip(serializer.serialize(payload), level);
+    }
+
+    @Benchmark
+    public ByteString gzip() {
+        return PayloadCompression.gzip(serialized, level);
+    }
+
+    private static Map<String, Object> entity(String suffix, String attribute, Object value) {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("entity_id", PREFIX + suffix);
+        attributes.put(attribute, value);
+        return attributes;
+    }
+}
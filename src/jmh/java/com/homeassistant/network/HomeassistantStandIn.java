@@ -0,0 +1,270 @@
+package com.homeassistant.network;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import okio.GzipSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stands in for homeassistant with the endpoints the plugin uses: /api/ and /api/services for the token check,
+ * /api/services/runelite/{service} for entities and events, and /api/websocket for the websocket transport. Every
+ * response can be delayed, answered with an error or dropped by closing the connection, so load tests can check how
+ * the plugin copes. Over the websocket an error is a failed result and a drop closes the socket.
+ * Gzipped bodies are accepted like the companion integration does, see docs/request-compression.md.
+ * Run it on its own with `./gradlew homeassistantStandIn` and point the plugin at it.
+ */
+@Slf4j
+public class HomeassistantStandIn {
+    public static final String TOKEN = "stand-in";
+
+    private static final String SERVICES = "[{\"domain\":\"homeassistant\",\"services\":{}},"
+            + "{\"domain\":\"runelite\",\"services\":{\"set_multi_entity_data\":{},\"trigger_multi_event\":{}}}]";
+    private static final String WEBSOCKET_PATH = "/api/websocket";
+
+    private final MockWebServer server = new MockWebServer();
+    private final long latencyMs;
+    private final double errorRate;
+    private final double dropRate;
+    private final Random random;
+    // Delays the websocket results, the socket's reader thread must not block
+    private final ScheduledExecutorService resultScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @Getter
+    private final AtomicLong requests = new AtomicLong();
+    // Connections the plugin opened, a websocket is one connection for all its calls
+    @Getter
+    private final AtomicLong connections = new AtomicLong();
+    @Getter
+    private final AtomicLong entities = new AtomicLong();
+    @Getter
+    private final AtomicLong events = new AtomicLong();
+    @Getter
+    private final AtomicLong errors = new AtomicLong();
+    @Getter
+    private final AtomicLong drops = new AtomicLong();
+    @Getter
+    private final AtomicLong compressedRequests = new AtomicLong();
+
+    /**
+     * `errorRate` and `dropRate` are the fractions of requests answered with a 503 and dropped, `seed` makes which
+     * ones repeatable.
+     */
+    public HomeassistantStandIn(long latencyMs, double errorRate, double dropRate, long seed) {
+        this.latencyMs = latencyMs;
+        this.errorRate = errorRate;
+        this.dropRate = dropRate;
+        this.random = new Random(seed);
+
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return respond(request);
+            }
+        });
+    }
+
+    public void start(int port) throws IOException {
+        server.start(port);
+        log.info("Homeassistant stand-in listening on {}", getUrl());
+    }
+
+    /**
+     * The base url to configure in the plugin, without a trailing slash.
+     */
+    public String getUrl() {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    public void shutdown() throws IOException {
+        resultScheduler.shutdownNow();
+        server.shutdown();
+    }
+
+    private MockResponse respond(RecordedRequest request) {
+        if (request.getSequenceNumber() == 0) {
+            connections.incrementAndGet();
+        }
+        // The websocket authenticates with a message after connecting, like homeassistant's
+        if (WEBSOCKET_PATH.equals(request.getPath())) {
+            return new MockResponse().withWebSocketUpgrade(new WebSocketHandler());
+        }
+
+        requests.incrementAndGet();
+        if (!("Bearer " + TOKEN).equals(request.getHeader("Authorization"))) {
+            return new MockResponse().setResponseCode(401);
+        }
+
+        double roll = roll();
+        if (roll < dropRate) {
+            drops.incrementAndGet();
+            return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+        }
+        if (roll < dropRate + errorRate) {
+            errors.incrementAndGet();
+            return delayed(new MockResponse().setResponseCode(503));
+        }
+
+        String path = request.getPath();
+        if ("/api/".equals(path)) {
+            return delayed(json("{\"message\":\"API running.\"}"));
+        }
+        if ("/api/services".equals(path)) {
+            return delayed(json(SERVICES));
+        }
+        if (path != null && path.startsWith("/api/services/runelite/") && "POST".equals(request.getMethod())) {
+            String encoding = request.getHeader("Content-Encoding");
+            if (encoding != null && !PayloadCompression.CONTENT_ENCODING.equals(encoding)) {
+                return new MockResponse().setResponseCode(415);
+            }
+            try {
+                String service = path.substring("/api/services/runelite/".length());
+                received(service, encoding != null ? gunzip(request.getBody()) : request.getBody().readUtf8());
+            } catch (IOException e) {
+                return new MockResponse().setResponseCode(400);
+            }
+            return delayed(json("[]"));
+        }
+        return new MockResponse().setResponseCode(404);
+    }
+
+    private double roll() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+
+    private String gunzip(Buffer body) throws IOException {
+        compressedRequests.incrementAndGet();
+        return Okio.buffer(new GzipSource(body)).readUtf8();
+    }
+
+    private void received(String service, String body) {
+        JsonElement payload = new JsonParser().parse(body);
+        if (!payload.isJsonObject()) {
+            return;
+        }
+
+        if (service.equals(EventBatcher.MULTI_EVENT_SERVICE)) {
+            JsonElement batch = payload.getAsJsonObject().get("events");
+            events.addAndGet(batch != null && batch.isJsonArray() ? batch.getAsJsonArray().size() : 0);
+            return;
+        }
+        if (!service.equals(OutboundQueue.ENTITY_SERVICE)) {
+            events.incrementAndGet();
+            return;
+        }
+
+        JsonElement list = payload.getAsJsonObject().get("entities");
+        if (list == null || !list.isJsonArray()) {
+            return;
+        }
+
+        entities.addAndGet(list.getAsJsonArray().size());
+    }
+
+    /**
+     * The websocket api's side of the call_service messages: auth_required on connect, then auth_ok or auth_invalid
+     * for the token, then a result for every call.
+     */
+    private class WebSocketHandler extends WebSocketListener {
+        private boolean authenticated = false;
+
+        @Override
+        public void onOpen(WebSocket socket, Response response) {
+            socket.send("{\"type\":\"auth_required\",\"ha_version\":\"stand-in\"}");
+        }
+
+        @Override
+        public void onMessage(WebSocket socket, String text) {
+            JsonObject message = new JsonParser().parse(text).getAsJsonObject();
+            String type = message.has("type") ? message.get("type").getAsString() : "";
+            if (type.equals("auth")) {
+                JsonElement token = message.get("access_token");
+                authenticated = token != null && TOKEN.equals(token.getAsString());
+                if (authenticated) {
+                    socket.send("{\"type\":\"auth_ok\",\"ha_version\":\"stand-in\"}");
+                } else {
+                    socket.send("{\"type\":\"auth_invalid\",\"message\":\"Invalid access token\"}");
+                    socket.close(1000, null);
+                }
+                return;
+            }
+            if (!authenticated || !type.equals("call_service")) {
+                return;
+            }
+
+            requests.incrementAndGet();
+            int id = message.get("id").getAsInt();
+            double roll = roll();
+            if (roll < dropRate) {
+                drops.incrementAndGet();
+                socket.cancel();
+                return;
+            }
+
+            boolean success = roll >= dropRate + errorRate;
+            if (success) {
+                received(message.get("service").getAsString(), message.get("service_data").toString());
+            } else {
+                errors.incrementAndGet();
+            }
+            String result = success
+                    ? "{\"id\":" + id + ",\"type\":\"result\",\"success\":true,\"result\":{\"context\":{}}}"
+                    : "{\"id\":" + id + ",\"type\":\"result\",\"success\":false,\"error\":{\"code\":\"home_assistant_error\",\"message\":\"stand-in error\"}}";
+            if (latencyMs > 0) {
+                resultScheduler.schedule(() -> socket.send(result), latencyMs, TimeUnit.MILLISECONDS);
+            } else {
+                socket.send(result);
+            }
+        }
+    }
+
+    private MockResponse delayed(MockResponse response) {
+        return latencyMs > 0 ? response.setHeadersDelay(latencyMs, TimeUnit.MILLISECONDS) : response;
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+    }
+
+    /**
+     * `[port] [latency ms] [error rate] [drop rate]`, prints what it received every 10 seconds until stopped.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8123;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        double errorRate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        double dropRate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+
+        HomeassistantStandIn standIn = new HomeassistantStandIn(latencyMs, errorRate, dropRate, System.nanoTime());
+        standIn.start(port);
+        System.out.printf("Homeassistant stand-in on %s, token \"%s\"%n", standIn.getUrl(), TOKEN);
+
+        while (true) {
+            Thread.sleep(10_000);
+            System.out.printf("requests %d, connections %d, entities %d, events %d, errors %d, drops %d%n",
+                    standIn.requests.get(), standIn.connections.get(), standIn.entities.get(), standIn.events.get(),
+                    standIn.errors.get(), standIn.drops.get());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.homeassistant.network;
+
+import com.google.gson.Gson;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning an entity batch into a request body. The previous path is what the plugin did before
+ * {@link PayloadSerializer}: a new Gson from newBuilder() on every call, toJson to a String, and the String encoded
+ * again by RequestBody. Both start from the same Map entities, building those is not part of either measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadBenchmark {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    @Param({"1", "20", "200"})
+    public int entityCount;
+
+    private Gson gson;
+    private PayloadSerializer serializer;
+    private Map<String, Object> payload;
+
+    @Setup
+    public void setup() {
+        gson = new Gson();
+        serializer = new PayloadSerializer(gson);
+
+        List<Map<String, Object>> entities = new ArrayList<>();
+        for (int i = 0; i < entityCount; i++) {
+            Map<String, Object> entity = new HashMap<>();
+            entity.put("entity_id", "sensor.runelite_zezima_entity_" + i);
+            entity.put("state", i % 3 == 0 ? "in_progress" : "ready");
+            entity.put("completion_time", "2026-10-18T12:00:00Z");
+            entity.put("current_health", 99 - i);
+
+            Map<String, Object> effect = new HashMap<>();
+            effect.put("name", "Poison");
+            effect.put("number", 6);
+            effect.put("time", null);
+            entity.put("current_status_effects", Collections.singletonList(effect));
+            entities.add(entity);
+        }
+
+        payload = new HashMap<>();
+        payload.put("entities", entities);
+    }
+
+    @Benchmark
+    public RequestBody previousPath() {
+        Gson perCall = gson.newBuilder().create();
+        String jsonPayload = perCall.toJson(payload);
+        return RequestBody.create(JSON, jsonPayload);
+    }
+
+    @Benchmark
+    public RequestBody payloadSerializer() {
+        return RequestBody.create(JSON, serializer.serialize(payload));
+    }
+}
@@ -0,0 +1,124 @@
+package com.homeassistant.network;
+
+import com.google.gson.Gson;
+import com.homeassistant.benchmark.PluginHarness;
+import com.homeassistant.classes.TickMetrics;
+import com.homeassistant.enums.MetricSection;
+import com.homeassistant.enums.TransportType;
+import okio.ByteString;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Round trips of a service call over REST and over the websocket, against {@link HomeassistantStandIn} with the given
+ * latency. Every operation sends `callsPerOp` calls at once and waits until all of them are acknowledged, so more
+ * than one shows how the transports cope with a burst. The requests and the connections they took are printed after
+ * each trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class TransportBenchmark {
+    private static final String SERVICE = OutboundQueue.ENTITY_SERVICE;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Param({"REST", "WEBSOCKET"})
+    public TransportType transport;
+
+    @Param({"0", "20"})
+    public long latencyMs;
+
+    @Param({"1", "8"})
+    public int callsPerOp;
+
+    private HomeassistantStandIn standIn;
+    private HomeassistantHttpClient httpClient;
+    private WebSocketTransport webSocketTransport;
+    private HomeassistantTransport sender;
+    private TickMetrics tickMetrics;
+    private ByteString payload;
+
+    @Setup
+    public void setup() throws Exception {
+        standIn = new HomeassistantStandIn(latencyMs, 0, 0, 1L);
+        standIn.start(0);
+
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("homeassistantUrl", standIn.getUrl());
+        overrides.put("homeassistantToken", HomeassistantStandIn.TOKEN);
+        overrides.put("http2", false);
+        overrides.put("compressRequests", false);
+        PluginHarness harness = new PluginHarness(overrides);
+        httpClient = harness.getInstance(HomeassistantHttpClient.class);
+        tickMetrics = harness.getInstance(TickMetrics.class);
+        webSocketTransport = harness.getInstance(WebSocketTransport.class);
+        sender = transport == TransportType.WEBSOCKET ? webSocketTransport : harness.getInstance(RestTransport.class);
+
+        List<Map<String, Object>> entities = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Map<String, Object> entity = new HashMap<>();
+            entity.put("entity_id", "sensor.runelite_zezima_skill_" + i);
+            entity.put("state", 90 + i);
+            entity.put("virtual_level", 90 + i);
+            entities.add(entity);
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("entities", entities);
+        payload = new PayloadSerializer(new Gson()).serialize(body);
+
+        if (transport == TransportType.WEBSOCKET) {
+            // The first call goes over REST and connects the socket, the trial starts once it is authenticated
+            CountDownLatch connected = new CountDownLatch(1);
+            webSocketTransport.setOnConnected(connected::countDown);
+            webSocketTransport.send(SERVICE, payload, delivered -> {
+            });
+            if (!connected.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Websocket did not authenticate with the stand-in");
+            }
+        }
+        tickMetrics.roll();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        long connections = 0;
+        long newConnections = 0;
+        for (TickMetrics.Snapshot snapshot : tickMetrics.roll()) {
+            if (snapshot.getSection() == MetricSection.HTTP) {
+                connections = snapshot.getConnections();
+                newConnections = snapshot.getNewConnections();
+            }
+        }
+        System.out.printf("%n%s: requests %d, connections accepted %d, http connections acquired %d, opened %d%n",
+                transport, standIn.getRequests().get(), standIn.getConnections().get(), connections, newConnections);
+
+        webSocketTransport.close();
+        httpClient.close();
+        standIn.shutdown();
+    }
+
+    @Benchmark
+    public int call() throws InterruptedException {
+        CountDownLatch acknowledged = new CountDownLatch(callsPerOp);
+        AtomicInteger delivered = new AtomicInteger();
+        for (int i = 0; i < callsPerOp; i++) {
+            sender.send(SERVICE, payload, success -> {
+                if (success) {
+                    delivered.incrementAndGet();
+                }
+                acknowledged.countDown();
+            });
+        }
+        if (!acknowledged.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Calls were not acknowledged in time");
+        }
+        return delivered.get();
+    }
+}
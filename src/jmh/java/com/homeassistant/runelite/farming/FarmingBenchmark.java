@@ -0,0 +1,178 @@
+package com.homeassistant.runelite.farming;
+
+import com.google.common.collect.Multimap;
+import com.homeassistant.benchmark.Stubs;
+import net.runelite.api.Client;
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.client.Notifier;
+import net.runelite.client.config.ConfigManager;
+import net.runelite.client.config.RuneScapeProfile;
+import net.runelite.client.game.ItemManager;
+import net.runelite.client.plugins.timetracking.TimeTrackingConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The farming predictions the trackers run for every patch of every profile, with ConfigManager mocked to hold a
+ * stored value for each patch. Lives in the farming package for the package private lookups.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FarmingBenchmark
+{
+	private static final int VARBIT_VALUES = 256;
+
+	@Param({"1", "5"})
+	public int profiles;
+
+	private PatchImplementation[] implementations;
+	private FarmingWorld farmingWorld;
+	private FarmingTracker farmingTracker;
+	private List<FarmingPatch> patches;
+	private WorldPoint[] walk;
+
+	@Setup
+	public void setup()
+	{
+		implementations = PatchImplementation.values();
+		farmingWorld = new FarmingWorld();
+
+		patches = new ArrayList<>();
+		Map<String, String> stored = new HashMap<>();
+		long seen = Instant.now().getEpochSecond() - 600;
+		for (Set<FarmingPatch> tab : farmingWorld.getTabs().values())
+		{
+			for (FarmingPatch patch : tab)
+			{
+				// Spread the patches over the growth stages
+				stored.put(patch.configKey(), (patches.size() * 7) % 64 + ":" + seen);
+				patches.add(patch);
+			}
+		}
+
+		List<RuneScapeProfile> rsProfiles = new ArrayList<>();
+		for (int i = 0; i < profiles; i++)
+		{
+			RuneScapeProfile profile = mock(RuneScapeProfile.class);
+			when(profile.getKey()).thenReturn("profile" + i);
+			rsProfiles.add(profile);
+		}
+
+		ConfigManager configManager = mock(ConfigManager.class);
+		when(configManager.getRSProfileKey()).thenReturn("profile0");
+		when(configManager.getRSProfiles()).thenReturn(rsProfiles);
+		when(configManager.getConfiguration(anyString(), anyString(), anyString()))
+			.thenAnswer(invocation -> stored.get(invocation.<String>getArgument(2)));
+
+		Client client = Stubs.client(new Stubs.ClientState());
+		farmingTracker = new FarmingTracker(client, mock(ItemManager.class), configManager, Stubs.config(TimeTrackingConfig.class),
+			farmingWorld, mock(Notifier.class), new CompostTracker(client, farmingWorld, configManager),
+			new PaymentTracker(client, configManager, farmingWorld));
+
+		// Standing still for a few ticks at every patch in turn, like a farm run
+		List<WorldPoint> points = new ArrayList<>();
+		for (FarmingPatch patch : patches)
+		{
+			WorldPoint point = WorldPoint.fromRegion(patch.getRegion().getRegionID(), 32, 32, 0);
+			for (int tick = 0; tick < 10; tick++)
+			{
+				points.add(point);
+			}
+		}
+		walk = points.toArray(new WorldPoint[0]);
+	}
+
+	@Benchmark
+	public void forVarbitValue(Blackhole blackhole)
+	{
+		for (PatchImplementation implementation : implementations)
+		{
+			for (int value = 0; value < VARBIT_VALUES; value++)
+			{
+				blackhole.consume(implementation.forVarbitValue(value));
+			}
+		}
+	}
+
+	@Benchmark
+	public void patchStateTable(Blackhole blackhole)
+	{
+		for (PatchImplementation implementation : implementations)
+		{
+			for (int value = 0; value < VARBIT_VALUES; value++)
+			{
+				blackhole.consume(PatchStateTable.get(implementation, value));
+			}
+		}
+	}
+
+	@Benchmark
+	public void predictPatchCached(Blackhole blackhole)
+	{
+		for (FarmingPatch patch : patches)
+		{
+			blackhole.consume(farmingTracker.predictPatch(patch));
+		}
+	}
+
+	@Benchmark
+	public void predictPatchUncached(Blackhole blackhole)
+	{
+		// Same as right after the timetracking config changed
+		farmingTracker.invalidateProfileCache(null);
+		for (FarmingPatch patch : patches)
+		{
+			blackhole.consume(farmingTracker.predictPatch(patch));
+		}
+	}
+
+	@Benchmark
+	public void checkCompletion()
+	{
+		farmingTracker.checkCompletion();
+	}
+
+	@Benchmark
+	public void getRegionsForLocation(Blackhole blackhole)
+	{
+		for (WorldPoint point : walk)
+		{
+			blackhole.consume(farmingWorld.getRegionsForLocation(point));
+		}
+	}
+
+	@Benchmark
+	public void getRegionsForLocationMultimap(Blackhole blackhole)
+	{
+		// The lookup before the region index
+		Multimap<Integer, FarmingRegion> regions = farmingWorld.getRegions();
+		for (WorldPoint point : walk)
+		{
+			blackhole.consume(regions.get(point.getRegionID()).stream()
+				.filter(region -> region.isInBounds(point))
+				.collect(Collectors.toSet()));
+		}
+	}
+
+	@Benchmark
+	public void getRegionArrayForLocation(Blackhole blackhole)
+	{
+		for (WorldPoint point : walk)
+		{
+			blackhole.consume(farmingWorld.getRegionArrayForLocation(point));
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.homeassistant.trackers;
+
+import com.homeassistant.enums.PatchStatus;
+import com.homeassistant.runelite.farming.Tab;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The farming patch part of checkEntities, with the tab plan and long arrays against the EnumMaps that went through
+ * every tab and built the entity ids with String.format. Every operation switches `changedTabs` tabs between two
+ * completion times. Lives in the trackers package for the package private tab plan.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FarmingTrackerBenchmark {
+    private static final String USER_NAME = "zezima";
+    private static final Set<Tab> IGNORE_TABS = EnumSet.of(
+            Tab.GRAPE,
+            Tab.TIME_OFFSET,
+            Tab.ANIMA,
+            Tab.SPECIAL,
+            Tab.BELLADONNA,
+            Tab.CALQUAT,
+            Tab.CELASTRUS,
+            Tab.CRYSTAL,
+            Tab.BIRD_HOUSE,
+            Tab.OVERVIEW,
+            Tab.HOPS,
+            Tab.CLOCK
+    );
+    private static final long NOW = 1_700_000_000L;
+
+    // 0 is the tick without any change, the most common one
+    @Param({"0", "1", "8"})
+    public int changedTabs;
+
+    private FarmingTracker.TabPlan plan;
+    private final long[][] rounds = new long[2][];
+    private long[] previous;
+
+    private final List<Map<Tab, Long>> roundMaps = new ArrayList<>();
+    private Map<Tab, Long> previousTimes;
+    private Map<Tab, Long> currentTimes;
+
+    private int round = 0;
+
+    @Setup
+    public void setup() {
+        plan = new FarmingTracker.TabPlan("sensor.runelite_" + USER_NAME + "_", true);
+        Tab[] tabs = Tab.values();
+        for (int r = 0; r < rounds.length; r++) {
+            long[] times = new long[tabs.length];
+            Map<Tab, Long> map = new EnumMap<>(Tab.class);
+            int changed = 0;
+            for (Tab tab : tabs) {
+                long time = NOW + tab.ordinal() * 60L;
+                if (!IGNORE_TABS.contains(tab) && changed < changedTabs) {
+                    // Ready in one round, growing in the other
+                    time = r == 0 ? 0L : NOW + 3_600L;
+                    changed++;
+                }
+                times[tab.ordinal()] = time;
+                if (!IGNORE_TABS.contains(tab)) {
+                    map.put(tab, time);
+                }
+            }
+            rounds[r] = times;
+            roundMaps.add(map);
+        }
+
+        previous = rounds[1].clone();
+        previousTimes = new EnumMap<>(roundMaps.get(1));
+        currentTimes = new EnumMap<>(roundMaps.get(1));
+    }
+
+    @Benchmark
+    public void tabPlan(Blackhole blackhole) {
+        long[] current = rounds[round];
+        round ^= 1;
+
+        List<Map<String, Object>> entities = new ArrayList<>();
+        FarmingTracker.addPatchEntities(plan, previous, current, entities);
+        blackhole.consume(entities);
+    }
+
+    @Benchmark
+    public void enumMaps(Blackhole blackhole) {
+        currentTimes.putAll(roundMaps.get(round));
+        round ^= 1;
+
+        blackhole.consume(previousEntities(previousTimes, currentTimes));
+        // resetPrevious
+        previousTimes.putAll(currentTimes);
+    }
+
+    /**
+     * The farming patch part of checkEntities before the tab plan.
+     */
+    private static List<Map<String, Object>> previousEntities(Map<Tab, Long> previousFarmingCompletionTimes, Map<Tab, Long> farmingCompletionTimes) {
+        List<Map<String, Object>> entities = new ArrayList<>();
+        for (Tab tab : Tab.values()) {
+            if (!Objects.equals(previousFarmingCompletionTimes.get(tab), farmingCompletionTimes.get(tab))) {
+                if (IGNORE_TABS.contains(tab)) {
+                    continue;
+                }
+                String entityId = tab == Tab.BIG_COMPOST
+                        ? String.format("sensor.runelite_%s_compost_bin", USER_NAME)
+                        : String.format("sensor.runelite_%s_%s_patch", USER_NAME, tab.name().toLowerCase());
+
+                Map<String, Object> attributes = new HashMap<>();
+                attributes.put("entity_id", entityId);
+
+                long completionTime = farmingCompletionTimes.get(tab);
+                PatchStatus patchStatus = PatchStatus.READY;
+
+                if (completionTime > 0) {
+                    patchStatus = PatchStatus.IN_PROGRESS;
+                    attributes.put("completion_time", Instant.ofEpochSecond(completionTime).toString());
+                } else if (completionTime == -1) {
+                    patchStatus = PatchStatus.NEVER_PLANTED;
+                }
+
+                attributes.put("status", patchStatus.getName());
+
+                entities.add(attributes);
+                previousFarmingCompletionTimes.put(tab, farmingCompletionTimes.get(tab));
+            }
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,51 @@
+package com.homeassistant.trackers;
+
+import com.homeassistant.HomeassistantConfig;
+import com.homeassistant.benchmark.Stubs;
+import com.homeassistant.classes.PlayerIdentity;
+import net.runelite.api.Client;
+import net.runelite.api.Skill;
+import net.runelite.client.eventbus.EventBus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One game tick of {@link PlayerDataTracker}, with nothing changed and with health, prayer and every skill boost
+ * changed, which builds the largest entity list. The posted events go to an EventBus without subscribers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerDataBenchmark {
+    private final Stubs.ClientState state = new Stubs.ClientState();
+    private PlayerDataTracker tracker;
+
+    @Setup
+    public void setup() {
+        Client client = Stubs.client(state);
+        tracker = new PlayerDataTracker(client, new EventBus(), Stubs.config(HomeassistantConfig.class), new PlayerIdentity(client));
+        tracker.onGameTick(null);
+    }
+
+    @Benchmark
+    public void unchangedTick() {
+        // Stays off the ping interval
+        state.tickCount = 1;
+        tracker.onGameTick(null);
+    }
+
+    @Benchmark
+    public void everythingChangedTick() {
+        state.tickCount = 1;
+        int[] boosted = state.boostedSkills;
+        int level = boosted[Skill.HITPOINTS.ordinal()] == 99 ? 1 : 99;
+        for (int i = 0; i < boosted.length; i++) {
+            boosted[i] = level;
+        }
+        tracker.onGameTick(null);
+    }
+}
@@ -1,5 +1,6 @@
 package com.homeassistant;
 
+import com.homeassistant.enums.TransportType;
 import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
 import net.runelite.client.config.ConfigItem;
@@ -85,6 +86,54 @@ public interface HomeassistantConfig extends Config
 		return false;
 	}
 
+	@ConfigItem(
+			keyName = "transport",
+			name = "Connection type",
+			description = "REST sends a request per update, WebSocket keeps one connection open and falls back to REST while it is down",
+			section = homeassistantSection,
+			position = 104
+	)
+	default TransportType transport()
+	{
+		return TransportType.REST;
+	}
+
+	@ConfigItem(
+			keyName = "http2",
+			name = "HTTP/2",
+			description = "Uses HTTP/2 for REST requests, over TLS for https urls and h2c for http urls. Only turn on when homeassistant is behind a proxy that supports it",
+			section = homeassistantSection,
+			position = 105
+	)
+	default boolean http2()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+			keyName = "compress_requests",
+			name = "Compress large requests",
+			description = "Gzips REST requests over 1 KiB, like the updates after logging in. Needs a version of the homeassistant integration that accepts them",
+			section = homeassistantSection,
+			position = 106
+	)
+	default boolean compressRequests()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+			keyName = "batch_events",
+			name = "Batch events",
+			description = "Sends the events of a game tick in one request at the end of the tick instead of a request per event. Needs a version of the homeassistant integration with the trigger_multi_event service",
+			section = homeassistantSection,
+			position = 107
+	)
+	default boolean batchEvents()
+	{
+		return false;
+	}
+
 	/*
 		Entities section
 	 */
@@ -221,6 +270,17 @@ public interface HomeassistantConfig extends Config
 		return false;
 	}
 
+	@ConfigItem(
+			keyName = "stat_history",
+			name = "Stat history",
+			description = "Sends the health, prayer, run energy and special attack of every tick once a minute, as the min, max and last value of every 6 seconds. Needs a version of the homeassistant integration with the set_entity_history service",
+			section = entitiesSection,
+			position = 211
+	)
+	default boolean statHistory() {
+		return false;
+	}
+
 	/*
 		Events section
 	 */
@@ -300,6 +360,30 @@ public interface HomeassistantConfig extends Config
 	)
 	default void varbitInfo() {}
 
+	@ConfigItem(
+			keyName = "chat_rules",
+			name = "Chat rules",
+			description = "One rule per line, service -> regex. Calls the service with the named groups of the regex and the message when a game message matches, for example: trigger_pet_notify -> You have a funny feeling like (?<detail>.+)",
+			section = eventsSection,
+			position = 308
+	)
+	default String chatRules()
+	{
+		return "";
+	}
+
+	@ConfigItem(
+			keyName = "stat_thresholds",
+			name = "Stat thresholds",
+			description = "One rule per line, stat below|above threshold [clear at], for example: health below 50% 70%. Sends an event when a threshold is crossed and when it clears, the stat entities can be turned off when only these are needed. Stats are health, prayer, run_energy, special_attack and skill names",
+			section = eventsSection,
+			position = 309
+	)
+	default String statThresholds()
+	{
+		return "";
+	}
+
 
 	/*
 		Miscellaneous section
@@ -341,7 +425,7 @@ public interface HomeassistantConfig extends Config
 	@ConfigItem(
 			keyName = "global_update_throttle",
 			name = "Global tick throttle",
-			description = "Only updates homeassistant every x ticks. 0 for every tick",
+			description = "Minimum ticks entities wait before they are sent, health and prayer are always sent right away. 0 to leave it to the priorities",
 			section = miscellaneousSection,
 			position = 404
 	)
@@ -397,4 +481,37 @@ public interface HomeassistantConfig extends Config
 		return false;
 	}
 
+	@ConfigItem(
+			keyName = "plugin_metrics",
+			name = "Plugin metrics entity",
+			description = "Sends how long every tracker takes per tick and the request latency as a plugin_metrics entity, once a minute",
+			section = DebugSection,
+			position = 505
+	)
+	default boolean pluginMetrics() {
+		return false;
+	}
+
+	@ConfigItem(
+			keyName = "plugin_metrics_overlay",
+			name = "Show plugin metrics",
+			description = "Shows how long every tracker takes per tick in an overlay",
+			section = DebugSection,
+			position = 506
+	)
+	default boolean pluginMetricsOverlay() {
+		return false;
+	}
+
+	@ConfigItem(
+			keyName = "record_replay",
+			name = "Record replay",
+			description = "Records the game events and client values the trackers use to .runelite/homeassistant-replays, for replaying them offline",
+			section = DebugSection,
+			position = 507
+	)
+	default boolean recordReplay() {
+		return false;
+	}
+
 }
@@ -4,13 +4,30 @@ import com.google.gson.Gson;
 import com.google.inject.Provides;
 import javax.inject.Inject;
 
-import com.homeassistant.classes.Utils;
+import com.homeassistant.classes.ChatDispatcher;
+import com.homeassistant.classes.PlayerIdentity;
+import com.homeassistant.classes.TickMetrics;
+import com.homeassistant.enums.EntityPriority;
+import com.homeassistant.enums.MetricSection;
+import com.homeassistant.enums.TransportType;
+import com.homeassistant.network.EntityStateStore;
+import com.homeassistant.network.EventBatcher;
+import com.homeassistant.network.FlushScheduler;
+import com.homeassistant.network.HomeassistantHttpClient;
+import com.homeassistant.network.HomeassistantTransport;
+import com.homeassistant.network.OutboundQueue;
+import com.homeassistant.network.PayloadSerializer;
+import com.homeassistant.network.RestTransport;
+import com.homeassistant.network.WebSocketTransport;
 import com.homeassistant.overlays.AggressionOverlay;
+import com.homeassistant.overlays.MetricsOverlay;
+import com.homeassistant.replay.ReplayRecorder;
 import com.homeassistant.trackers.*;
 import com.homeassistant.trackers.FarmingTracker;
 import com.homeassistant.trackers.events.HomeassistantEvents;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.*;
+import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.GameTick;
 import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
@@ -19,11 +36,15 @@ import net.runelite.client.eventbus.Subscribe;
 import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
+import net.runelite.client.task.Schedule;
 import net.runelite.client.ui.overlay.OverlayManager;
 import okhttp3.*;
 
 import java.io.IOException;
+import java.time.Clock;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Slf4j
 @PluginDescriptor(
@@ -43,7 +64,7 @@ public class HomeassistantPlugin extends Plugin
 	@Inject
 	private Gson gson;
 	@Inject
-	private OkHttpClient okHttpClient;
+	private HomeassistantHttpClient homeassistantHttpClient;
 	@Inject
 	private EventBus eventBus;
 	@Inject
@@ -61,32 +82,76 @@ public class HomeassistantPlugin extends Plugin
 	@Inject
 	private CombatTaskTracker combatTaskTracker;
 	@Inject
+	private ChatRuleTracker chatRuleTracker;
+	@Inject
+	private StatHistoryTracker statHistoryTracker;
+	@Inject
 	private AchievementDiaryTracker  achievementDiaryTracker;
 	@Inject
 	private IdleTracker idleTracker;
 	@Inject
 	private VarbitTracker varbitTracker;
 	@Inject
+	private PredictionExecutor predictionExecutor;
+	@Inject
+	private OutboundQueue outboundQueue;
+	@Inject
+	private EntityStateStore entityStateStore;
+	@Inject
+	private EventBatcher eventBatcher;
+	@Inject
+	private FlushScheduler flushScheduler;
+	@Inject
+	private PayloadSerializer payloadSerializer;
+	@Inject
+	private RestTransport restTransport;
+	@Inject
+	private WebSocketTransport webSocketTransport;
+	@Inject
 	private AggressionOverlay aggressionOverlay;
 	@Inject
+	private MetricsOverlay metricsOverlay;
+	@Inject
+	private TickMetrics tickMetrics;
+	@Inject
+	private PlayerIdentity playerIdentity;
+	@Inject
+	private ReplayRecorder replayRecorder;
+	@Inject
+	private ChatDispatcher chatDispatcher;
+	@Inject
 	OverlayManager overlayManager;
 
-	private final Map<String,Map<String, Object>> updateSortedEntities = new HashMap<>();
+	// Counts game ticks for the flush scheduler, the client's own tick count resets on login
+	private int tickCount = 0;
 
-	private int currentDelayCount = -5;
+	// Roughly once a minute
+	private static final int METRICS_WINDOW_TICKS = 100;
+	// The trackers' tick handlers, called in this order by onGameTick so each one can be timed
+	private final Map<MetricSection, Consumer<GameTick>> tickHandlers = new EnumMap<>(MetricSection.class);
 
 	@Override
 	protected void startUp() throws Exception
 	{
 		log.debug("Homeassistant started!");
-		currentDelayCount = -5;
-		updateSortedEntities.clear();
+		entityStateStore.load();
+		outboundQueue.load();
+		if (entityStateStore.hasChanges()) {
+			flushScheduler.reschedule();
+		}
+		// A restart of homeassistant closes the websocket, what it had of the entities may be gone
+		webSocketTransport.setOnConnected(this::resendEntities);
 		registerTrackers();
+		replayRecorder.startIfEnabled();
 
 		overlayManager.add(aggressionOverlay);
+		overlayManager.add(metricsOverlay);
 	}
 
 	private void registerTrackers(){
+		eventBus.register(playerIdentity);
+		eventBus.register(replayRecorder);
+		eventBus.register(chatDispatcher);
 		eventBus.register(playerDataTracker);
 		eventBus.register(aggressionTracker);
 		eventBus.register(dailyTracker);
@@ -95,13 +160,28 @@ public class HomeassistantPlugin extends Plugin
 		eventBus.register(collectionTracker);
 		eventBus.register(achievementDiaryTracker);
 		eventBus.register(combatTaskTracker);
+		eventBus.register(chatRuleTracker);
+		eventBus.register(statHistoryTracker);
 		eventBus.register(idleTracker);
 		eventBus.register(varbitTracker);
+
+		// The trackers' onGameTick methods are not subscribed, onGameTick calls them so every tracker is timed on its own
+		tickHandlers.clear();
+		tickHandlers.put(MetricSection.PLAYER_DATA, playerDataTracker::onGameTick);
+		tickHandlers.put(MetricSection.AGGRESSION, aggressionTracker::onGameTick);
+		tickHandlers.put(MetricSection.VARBITS, varbitTracker::onGameTick);
+		tickHandlers.put(MetricSection.IDLE, idleTracker::onGameTick);
+		tickHandlers.put(MetricSection.FARMING, farmingTracker::onGameTick);
+		tickHandlers.put(MetricSection.BIRDHOUSES, birdhouseTracker::onGameTick);
+		tickHandlers.put(MetricSection.STAT_HISTORY, statHistoryTracker::onGameTick);
 	}
 
 	@Override
 	protected void shutDown() throws Exception
 	{
+		eventBus.unregister(playerIdentity);
+		eventBus.unregister(replayRecorder);
+		eventBus.unregister(chatDispatcher);
 		eventBus.unregister(playerDataTracker);
 		eventBus.unregister(aggressionTracker);
 		eventBus.unregister(dailyTracker);
@@ -110,14 +190,45 @@ public class HomeassistantPlugin extends Plugin
 		eventBus.unregister(collectionTracker);
 		eventBus.unregister(achievementDiaryTracker);
 		eventBus.unregister(combatTaskTracker);
+		eventBus.unregister(chatRuleTracker);
+		eventBus.unregister(statHistoryTracker);
 		eventBus.unregister(idleTracker);
 		eventBus.unregister(varbitTracker);
 
+		tickHandlers.clear();
 		overlayManager.remove(aggressionOverlay);
+		overlayManager.remove(metricsOverlay);
+		predictionExecutor.shutdown();
+		replayRecorder.stop();
+		OutboundQueue.PendingRequest batch = eventBatcher.drain();
+		if (batch != null) {
+			// Kept with the undelivered events, so it goes out after the next start
+			outboundQueue.offer(batch);
+		}
+		outboundQueue.save();
+		entityStateStore.save();
+		webSocketTransport.close();
+		homeassistantHttpClient.close();
 		log.info("Homeassistant stopped!");
 	}
 
 
+	/**
+	 * Writes what is still undelivered to disk, off the client thread. Only read after a restart, so once a minute and
+	 * on shutdown is enough.
+	 */
+	@Schedule(period = 1, unit = ChronoUnit.MINUTES, asynchronous = true)
+	public void savePending() {
+		outboundQueue.save();
+		entityStateStore.save();
+	}
+
+	@Provides
+	Clock provideClock()
+	{
+		return Clock.systemUTC();
+	}
+
 	@Provides
 	HomeassistantConfig provideConfig(ConfigManager configManager)
 	{
@@ -125,28 +236,56 @@ public class HomeassistantPlugin extends Plugin
 	}
 
 /*
-	This event can be called from any tracker. It will overwrite any previous object with the same entity_id. So if a throttle is active it will always update the latest
-	getEntities() returns List<Map<String, Object>>
+	This event can be called from any tracker. It will overwrite any previous object with the same entity_id. So until it is flushed it will always update the latest
+	Only the attributes that changed since the last update that was sent end up in the request, see EntityStateStore
+	getEntities() returns List<Map<String, Object>>, getPriority() decides how long it may wait, see FlushScheduler
  */
 	@Subscribe
 	public void onUpdateEntities(HomeassistantEvents.UpdateEntities event){
+		if (event.getEntities().isEmpty()) {
+			return;
+		}
 		for(Map<String, Object> map : event.getEntities()){
-			if(map.containsKey("entity_id")){
-				String entityId = (String) map.get("entity_id");
-				updateSortedEntities.put(entityId, map);
-			}
+			entityStateStore.update(map, false);
 		}
-		log.info("update entities received, total: {}", updateSortedEntities);
+		tickMetrics.entitiesEmitted(event.getEntities().size());
+		flushScheduler.scheduled(event.getPriority(), tickCount);
+		log.debug("update entities received, pending: {}", entityStateStore.size());
 	}
 	/**
-	 * This event can be called from any tracker. IT will immediately send a request to homeassistant, for example when a collection log notification is sent.
+	 * This event can be called from any tracker, for example when a collection log notification is sent.
+	 * With batching on the events of a tick go out together at the end of it, unless the event is urgent or the
+	 * player is not logged in. Otherwise it immediately sends a request to homeassistant.
 	 * `String getService()` returns name of the service in homeassistant, this is everything after domain/api/services/runelite/
 	 * `Map<String, Object> getEventObj()` data to be serialized and sent to homeassistant
      */
 	@Subscribe
+	@SuppressWarnings("unchecked")
 	public void onSendEvent(HomeassistantEvents.SendEvent event){
 		log.info("send event:{}, {}", event.getService(), event.getEventObj());
-		sendEventToHomeAssistant(event.getService(), event.getEventObj());
+		Object entities = event.getEventObj().get("entities");
+		if (event.getService().equals(OutboundQueue.ENTITY_SERVICE) && entities instanceof List) {
+			// Entity updates that have to go out right away (logout, ping) still go through the store, so it knows what homeassistant has
+			for (Object entity : (List<?>) entities) {
+				if (entity instanceof Map) {
+					entityStateStore.update((Map<String, Object>) entity, true);
+				}
+			}
+			flushEntities(false);
+			return;
+		}
+		// Without game ticks nothing would send the batch
+		if (event.isUrgent() || !config.batchEvents() || client.getGameState() != GameState.LOGGED_IN) {
+			if (!event.isUrgent()) {
+				// Whatever was batched before logging out goes first
+				flushEvents();
+			}
+			sendEventToHomeAssistant(event.getService(), event.getEventObj());
+			return;
+		}
+		if (eventBatcher.add(event.getService(), event.getEventObj())) {
+			flushEvents();
+		}
 	}
 
 	@Subscribe
@@ -159,6 +298,27 @@ public class HomeassistantPlugin extends Plugin
 		{
 			testHomeAssistant();
         }
+		if (event.getKey().equals("transport") || event.getKey().equals("homeassistant_url") || event.getKey().equals("homeassistant_token") || event.getKey().equals("http2"))
+		{
+			// Reconnects with the new settings on the next update
+			webSocketTransport.close();
+		}
+		if (event.getKey().equals("compress_requests") || event.getKey().equals("homeassistant_url"))
+		{
+			// Gives compression another go after homeassistant turned it down
+			restTransport.close();
+		}
+	}
+
+	@Subscribe
+	public void onGameStateChanged(GameStateChanged event) {
+		if (event.getGameState() == GameState.LOGGING_IN) {
+			resendEntities();
+		}
+		if (event.getGameState() == GameState.LOGIN_SCREEN || event.getGameState() == GameState.CONNECTION_LOST) {
+			// No more ticks until logging in again
+			flushEvents();
+		}
 	}
 
 	@Subscribe
@@ -170,74 +330,183 @@ public class HomeassistantPlugin extends Plugin
 				runDebug15Tick();
 			}
 		}
-		// If the user has a global throttled setup, it will only update once every x ticks
-		currentDelayCount++;
-		if(currentDelayCount >= config.globalUpdateThrottle()){
-			currentDelayCount = 0;
-			if(Utils.GetUserName(client) != null && !updateSortedEntities.isEmpty()){
-				log.debug("Updating sorted entities: {}", updateSortedEntities);
-				List<Map<String, Object>> entities = new ArrayList<>();
-				for(Map.Entry<String, Map<String, Object>> entry : updateSortedEntities.entrySet()){
-					entities.add(entry.getValue());
-				}
+		for (Map.Entry<MetricSection, Consumer<GameTick>> handler : tickHandlers.entrySet()) {
+			long start = tickMetrics.start(handler.getKey());
+			handler.getValue().accept(event);
+			tickMetrics.stop(handler.getKey(), start);
+		}
 
-				Map<String, Object> payload = new HashMap<>();
-				payload.put("entities", entities);
+		// Flushes everything pending once the most urgent update is due
+		long start = tickMetrics.start(MetricSection.FLUSH);
+		tickCount++;
+		webSocketTransport.failExpired();
+		flushEvents();
+		if(flushScheduler.isDue(tickCount) && playerIdentity.getUserName() != null){
+			flushEntities(false);
+		}
+
+		if(outboundQueue.isReplayDue()){
+			replayOutboundQueue();
+		}
+		tickMetrics.stop(MetricSection.FLUSH, start);
 
-				Gson gson = this.gson.newBuilder().create();
-				String jsonPayload = gson.toJson(payload);
+		if(tickCount % METRICS_WINDOW_TICKS == 0){
+			publishMetrics();
+		}
+	}
 
-				updateSortedEntities.clear();
+	/**
+	 * Rolls the metrics window over, and sends it as the plugin_metrics entity when enabled. Times are in microseconds.
+	 */
+	private void publishMetrics() {
+		TickMetrics.Snapshot[] snapshots = tickMetrics.roll();
+		String entityId = playerIdentity.entityId("plugin_metrics");
+		if (!config.pluginMetrics() || entityId == null) {
+			return;
+		}
 
-				sendPayloadToHomeAssistant(jsonPayload);
+		Map<String, Object> attributes = new HashMap<>();
+		attributes.put("entity_id", entityId);
+		attributes.put("window_ticks", METRICS_WINDOW_TICKS);
+		for (TickMetrics.Snapshot snapshot : snapshots) {
+			String prefix = snapshot.getSection().getId();
+			attributes.put(prefix + "_count", snapshot.getCount());
+			attributes.put(prefix + "_p50_us", snapshot.getP50() / 1000);
+			attributes.put(prefix + "_p99_us", snapshot.getP99() / 1000);
+			attributes.put(prefix + "_max_us", snapshot.getMax() / 1000);
+			if (snapshot.getSection() != MetricSection.HTTP) {
+				attributes.put(prefix + "_allocated_bytes", snapshot.getAllocatedBytes());
+				attributes.put(prefix + "_entities", snapshot.getEntities());
+			} else {
+				attributes.put(prefix + "_connections", snapshot.getConnections());
+				attributes.put(prefix + "_new_connections", snapshot.getNewConnections());
+				if (snapshot.getConnections() > 0) {
+					// Share of the calls that got a pooled connection, in percent
+					attributes.put(prefix + "_connection_reuse", 100 * (snapshot.getConnections() - snapshot.getNewConnections()) / snapshot.getConnections());
+				}
 			}
 		}
+
+		List<Map<String, Object>> entities = new ArrayList<>();
+		entities.add(attributes);
+		eventBus.post(new HomeassistantEvents.UpdateEntities(entities, EntityPriority.LOW));
 	}
 
-	private void sendEventToHomeAssistant(String service, Map<String, Object> event){
-		Gson gson = this.gson.newBuilder().create();
-		String jsonPayload = gson.toJson(event);
+	/**
+	 * Sends every entity that changed since the last flush in one request. While homeassistant is unreachable they
+	 * stay in the store, so only the latest state is sent once it is back. `replay` sends them during the backoff,
+	 * after the queued events, and ends the backoff when they are delivered.
+	 */
+	private void flushEntities(boolean replay) {
+		if (!replay && outboundQueue.isBackingOff()) {
+			return;
+		}
 
-		sendPayloadToHomeAssistant(jsonPayload, String.format("/services/runelite/%s", service));
+		List<Map<String, Object>> entities = entityStateStore.drain();
+		flushScheduler.flushed(!entities.isEmpty());
+		if (entities.isEmpty()) {
+			if (replay) {
+				endBackoff();
+			}
+			return;
+		}
+		log.debug("Updating entities: {}", entities);
+
+		Map<String, Object> payload = new HashMap<>();
+		payload.put("entities", entities);
+
+		sendPayloadToHomeAssistant(new OutboundQueue.PendingRequest(OutboundQueue.ENTITY_SERVICE, payload), delivered -> {
+			flushScheduler.completed();
+			if (delivered) {
+				endBackoff();
+			} else {
+				entityStateStore.reject(entities);
+				flushScheduler.reschedule();
+				outboundQueue.failed();
+			}
+		});
 	}
 
-	private void sendPayloadToHomeAssistant(String jsonPayload) {
-		sendPayloadToHomeAssistant(jsonPayload, "/services/runelite/set_multi_entity_data");
+	/**
+	 * Sends the events batched since the last tick in one request.
+	 */
+	private void flushEvents() {
+		OutboundQueue.PendingRequest batch = eventBatcher.drain();
+		if (batch != null) {
+			sendToHomeAssistant(batch);
+		}
 	}
 
-	private void sendPayloadToHomeAssistant(String jsonPayload, String url) {
-		String homeAssistantUrl = config.homeassistantUrl();
-		String accessToken = config.homeassistantToken();
+	private void sendEventToHomeAssistant(String service, Map<String, Object> event){
+		sendToHomeAssistant(new OutboundQueue.PendingRequest(service, event));
+	}
 
-		if (homeAssistantUrl.isEmpty() || accessToken.isEmpty()) {
-			log.warn("Home Assistant URL or Access Token not configured.");
+	/**
+	 * Sends the request right away, or queues it behind the requests that are still waiting for homeassistant to come back.
+	 */
+	private void sendToHomeAssistant(OutboundQueue.PendingRequest request) {
+		if (outboundQueue.isBackingOff()) {
+			outboundQueue.offer(request);
 			return;
 		}
 
-		String apiUrl = homeAssistantUrl + "/api" + url;
-		RequestBody requestBody = RequestBody.create(MediaType.parse("application/json; charset=utf-8"), jsonPayload);
-		log.debug("Sending payload to home assistant, {}: {}", apiUrl, jsonPayload);
-		Request request = new Request.Builder()
-				.url(Objects.requireNonNull(HttpUrl.parse(apiUrl)))
-				.header("Authorization", "Bearer " + accessToken)
-				.header("Content-Type", "application/json")
-				.post(requestBody)
-				.build();
-
-		okHttpClient.newCall(request).enqueue(new Callback() {
-			@Override
-			public void onFailure(Call call, IOException e) {
-				log.error("Error submitting the entity to homeassistant ", e);
+		sendPayloadToHomeAssistant(request, delivered -> {
+			if (!delivered) {
+				outboundQueue.offerFailed(request);
 			}
+		});
+	}
 
-			@Override
-			public void onResponse(Call call, Response response) throws IOException {
-				log.info("Successfully created/updated entity {}.", jsonPayload);
-				response.close();
+	/**
+	 * Sends the queued events one at a time so they arrive in the same order, stops at the first failure.
+	 * The entities that waited in the store are flushed after that, and end the backoff once they are delivered.
+	 */
+	private void replayOutboundQueue() {
+		OutboundQueue.PendingRequest request = outboundQueue.poll();
+		if (request == null) {
+			// Homeassistant may have restarted while it was unreachable
+			entityStateStore.resendAll();
+			flushEntities(true);
+			return;
+		}
+
+		sendPayloadToHomeAssistant(request, delivered -> {
+			if (delivered) {
+				replayOutboundQueue();
+			} else {
+				outboundQueue.retry(request);
 			}
 		});
 	}
 
+	/**
+	 * Sends every entity in full on the next tick.
+	 */
+	private void resendEntities() {
+		entityStateStore.resendAll();
+		if (entityStateStore.hasChanges()) {
+			flushScheduler.reschedule();
+		}
+	}
+
+	private void endBackoff() {
+		if (outboundQueue.delivered()) {
+			log.info("Homeassistant reachable again, outbound queue drained");
+		}
+	}
+
+	private void sendPayloadToHomeAssistant(OutboundQueue.PendingRequest request, Consumer<Boolean> onDelivered) {
+		long start = System.nanoTime();
+		getTransport().send(request.getService(), payloadSerializer.serialize(request.getPayload()), delivered -> {
+			tickMetrics.requestCompleted(System.nanoTime() - start);
+			onDelivered.accept(delivered);
+		});
+	}
+
+	private HomeassistantTransport getTransport() {
+		return config.transport() == TransportType.WEBSOCKET ? webSocketTransport : restTransport;
+	}
+
 	private void testHomeAssistant()
 	{
 		String homeAssistantUrl = config.homeassistantUrl();
@@ -260,7 +529,7 @@ public class HomeassistantPlugin extends Plugin
 
 		log.info("Testing Home Assistant connection with URL: {}", apiUrl);
 
-		okHttpClient.newCall(request).enqueue(new Callback()
+		homeassistantHttpClient.get().newCall(request).enqueue(new Callback()
 		{
 			@Override
 			public void onFailure(Call call, IOException e)
@@ -303,7 +572,7 @@ public class HomeassistantPlugin extends Plugin
 							.build();
 
 					log.info("Listing home assistant services: {}", apiUrl);
-					okHttpClient.newCall(request).enqueue(new Callback()
+					homeassistantHttpClient.get().newCall(request).enqueue(new Callback()
 					{
 						@Override
 						public void onFailure(Call call, IOException e)
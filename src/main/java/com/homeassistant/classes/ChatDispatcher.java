@@ -0,0 +1,176 @@
+package com.homeassistant.classes;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.ChatMessageType;
+import net.runelite.api.events.ChatMessage;
+import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.util.Text;
+
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The one ChatMessage subscriber for every chat triggered event. Rules are registered with the literal text their
+ * message starts with, those prefixes go in a trie. Most messages are turned away on their first character without
+ * stripping tags, the rest have their tags stripped once and only run the patterns whose prefix they start with.
+ * A new chat event is another {@link #register} call, it doesn't add another pass over every message.
+ * Scanners see every message of their types, for rules that can't be told apart by how the message starts.
+ */
+@Slf4j
+@Singleton
+public class ChatDispatcher {
+    private final Node root = new Node();
+    private final List<Scanner> scanners = new ArrayList<>();
+    private final Set<ChatMessageType> types = EnumSet.noneOf(ChatMessageType.class);
+
+    /**
+     * Calls `handler` with the matcher when a message of one of the `types` starts with `prefix` and its tag-stripped
+     * text matches `pattern` as a whole, while `enabled` says so. `prefix` can't be empty. It is compared ignoring case,
+     * like the CASE_INSENSITIVE patterns of the trackers, so it only narrows down which patterns run.
+     */
+    public synchronized void register(String prefix, Pattern pattern, Set<ChatMessageType> types, BooleanSupplier enabled, Consumer<Matcher> handler) {
+        if (prefix.isEmpty()) {
+            throw new IllegalArgumentException("Chat rule " + pattern + " needs a prefix");
+        }
+
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.getOrAdd(Character.toLowerCase(prefix.charAt(i)));
+        }
+        node.rules.add(new Rule(pattern, EnumSet.copyOf(types), enabled, handler));
+        this.types.addAll(types);
+    }
+
+    /**
+     * Calls `scanner` with the tag-stripped text of every message of one of the `types` while `enabled` says so.
+     */
+    public synchronized void registerScanner(Set<ChatMessageType> types, BooleanSupplier enabled, Consumer<String> scanner) {
+        scanners.add(new Scanner(EnumSet.copyOf(types), enabled, scanner));
+        this.types.addAll(types);
+    }
+
+    @Subscribe
+    public void onChatMessage(ChatMessage event) {
+        ChatMessageType type = event.getType();
+        if (!types.contains(type)) {
+            return;
+        }
+
+        String message = event.getMessage();
+        if (message == null || message.isEmpty()) {
+            return;
+        }
+        boolean scan = false;
+        for (Scanner scanner : scanners) {
+            scan |= scanner.wants(type);
+        }
+        // Stripping tags only removes text starting with '<', so any other first character is already final
+        char first = message.charAt(0);
+        if (!scan && first != '<' && root.next(Character.toLowerCase(first)) == null) {
+            return;
+        }
+
+        message = Text.removeTags(message);
+        if (scan) {
+            for (Scanner scanner : scanners) {
+                if (scanner.wants(type)) {
+                    scanner.scanner.accept(message);
+                }
+            }
+        }
+
+        Node node = root;
+        for (int i = 0; i < message.length(); i++) {
+            node = node.next(Character.toLowerCase(message.charAt(i)));
+            if (node == null) {
+                return;
+            }
+            for (Rule rule : node.rules) {
+                rule.dispatch(type, message);
+            }
+        }
+    }
+
+    private static final class Rule {
+        private final Pattern pattern;
+        private final Set<ChatMessageType> types;
+        private final BooleanSupplier enabled;
+        private final Consumer<Matcher> handler;
+
+        private Rule(Pattern pattern, Set<ChatMessageType> types, BooleanSupplier enabled, Consumer<Matcher> handler) {
+            this.pattern = pattern;
+            this.types = types;
+            this.enabled = enabled;
+            this.handler = handler;
+        }
+
+        private void dispatch(ChatMessageType type, String message) {
+            if (!types.contains(type) || !enabled.getAsBoolean()) {
+                return;
+            }
+
+            Matcher matcher = pattern.matcher(message);
+            if (!matcher.matches()) {
+                return;
+            }
+            try {
+                handler.accept(matcher);
+            } catch (RuntimeException e) {
+                // Don't let one handler keep the others from seeing the message
+                log.warn("Chat rule {} failed", pattern, e);
+            }
+        }
+    }
+
+    private static final class Scanner {
+        private final Set<ChatMessageType> types;
+        private final BooleanSupplier enabled;
+        private final Consumer<String> scanner;
+
+        private Scanner(Set<ChatMessageType> types, BooleanSupplier enabled, Consumer<String> scanner) {
+            this.types = types;
+            this.enabled = enabled;
+            this.scanner = scanner;
+        }
+
+        private boolean wants(ChatMessageType type) {
+            return types.contains(type) && enabled.getAsBoolean();
+        }
+    }
+
+    /**
+     * A trie node, children are kept in small arrays since each node only has a few. Labels are lower case.
+     */
+    private static final class Node {
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private final List<Rule> rules = new ArrayList<>(0);
+
+        private Node next(char c) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node getOrAdd(char c) {
+            Node child = next(c);
+            if (child != null) {
+                return child;
+            }
+
+            child = new Node();
+            labels = Arrays.copyOf(labels, labels.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            labels[labels.length - 1] = c;
+            children[children.length - 1] = child;
+            return child;
+        }
+    }
+}
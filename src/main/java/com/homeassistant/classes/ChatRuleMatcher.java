@@ -0,0 +1,426 @@
+package com.homeassistant.classes;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The chat rules from the config compiled into one automaton. Every rule's regex has a literal that any match has to
+ * contain, those literals go in an Aho-Corasick automaton that finds all of them in one pass over the message.
+ * Only the rules whose literal showed up run their regex, so the cost of a message hardly grows with the number of
+ * rules. Rules without a usable literal run their regex on every message.
+ * Literals are matched ignoring case, the regex decides in the end. Not thread safe, used from the client thread.
+ */
+@Slf4j
+public final class ChatRuleMatcher {
+    public static final ChatRuleMatcher EMPTY = new ChatRuleMatcher(Collections.emptyList());
+
+    private static final String SEPARATOR = "->";
+    private static final Pattern SERVICE = Pattern.compile("[a-z0-9_]+");
+    private static final Pattern GROUP_NAME = Pattern.compile("\\(\\?<([a-zA-Z][a-zA-Z0-9]*)>");
+    private static final Pattern COMMENTS_FLAG = Pattern.compile("\\(\\?[a-zA-Z]*x");
+    // Shorter literals show up in too many messages to be worth it
+    private static final int MIN_LITERAL_LENGTH = 3;
+
+    private final List<Rule> rules;
+    private final int[] alwaysRun;
+
+    // Aho-Corasick automaton with the failure links folded into the transitions
+    private final int[] asciiSymbols = new int[128];
+    private final Map<Character, Integer> otherSymbols = new HashMap<>();
+    private final int symbolCount;
+    private final int[] transitions;
+    // state -> the rules whose literal ends there, null for most states
+    private final int[][] outputs;
+
+    // rule -> the stamp of the last message it was run for, so a literal found twice runs the rule once
+    private final int[] seen;
+    private int stamp = 0;
+
+    public interface Listener {
+        void onMatch(Rule rule, Matcher matcher, String message);
+    }
+
+    /**
+     * One rule, calls `service` with the named groups of `pattern` when a message contains a match.
+     */
+    public static final class Rule {
+        @Getter
+        private final String service;
+        @Getter
+        private final Pattern pattern;
+        private final String[] groupNames;
+        private final String literal;
+
+        public Rule(String service, Pattern pattern) {
+            this.service = service;
+            this.pattern = pattern;
+            this.literal = requiredLiteral(pattern.pattern());
+
+            List<String> names = new ArrayList<>();
+            Matcher matcher = GROUP_NAME.matcher(pattern.pattern());
+            while (matcher.find()) {
+                names.add(matcher.group(1));
+            }
+            this.groupNames = names.toArray(new String[0]);
+        }
+
+        /**
+         * The event data for a match, the named groups by name or the numbered groups as group_1, group_2... when
+         * there are none, and the whole message.
+         */
+        public Map<String, Object> payload(Matcher matcher, String message) {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("message", message);
+            if (groupNames.length > 0) {
+                for (String name : groupNames) {
+                    payload.put(name, matcher.group(name));
+                }
+            } else {
+                for (int i = 1; i <= matcher.groupCount(); i++) {
+                    payload.put("group_" + i, matcher.group(i));
+                }
+            }
+            return payload;
+        }
+    }
+
+    public ChatRuleMatcher(List<Rule> rules) {
+        this.rules = new ArrayList<>(rules);
+        this.seen = new int[rules.size()];
+
+        // Symbol 0 stands for every character that is in no literal
+        int symbols = 1;
+        List<Integer> always = new ArrayList<>();
+        for (int i = 0; i < rules.size(); i++) {
+            String literal = rules.get(i).literal;
+            if (literal.length() < MIN_LITERAL_LENGTH) {
+                always.add(i);
+                continue;
+            }
+            for (int j = 0; j < literal.length(); j++) {
+                char c = literal.charAt(j);
+                if (symbol(c) == 0) {
+                    if (c < 128) {
+                        asciiSymbols[c] = symbols++;
+                    } else {
+                        otherSymbols.put(c, symbols++);
+                    }
+                }
+            }
+        }
+        this.symbolCount = symbols;
+        this.alwaysRun = always.stream().mapToInt(Integer::intValue).toArray();
+
+        // The trie of literals, -1 for missing edges
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        trie.add(newState(symbols));
+        ends.add(null);
+        for (int i = 0; i < rules.size(); i++) {
+            String literal = rules.get(i).literal;
+            if (literal.length() < MIN_LITERAL_LENGTH) {
+                continue;
+            }
+
+            int state = 0;
+            for (int j = 0; j < literal.length(); j++) {
+                int symbol = symbol(literal.charAt(j));
+                if (trie.get(state)[symbol] < 0) {
+                    trie.get(state)[symbol] = trie.size();
+                    trie.add(newState(symbols));
+                    ends.add(null);
+                }
+                state = trie.get(state)[symbol];
+            }
+            if (ends.get(state) == null) {
+                ends.set(state, new ArrayList<>());
+            }
+            ends.get(state).add(i);
+        }
+
+        // Breadth first, so a state's failure link is done before the states below it
+        int states = trie.size();
+        int[] fail = new int[states];
+        transitions = new int[states * symbols];
+        outputs = new int[states][];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < symbols; symbol++) {
+            int next = trie.get(0)[symbol];
+            transitions[symbol] = Math.max(next, 0);
+            if (next > 0) {
+                queue.add(next);
+            }
+        }
+        outputs[0] = toArray(ends.get(0), null);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = toArray(ends.get(state), outputs[fail[state]]);
+            for (int symbol = 0; symbol < symbols; symbol++) {
+                int next = trie.get(state)[symbol];
+                int fallback = transitions[fail[state] * symbols + symbol];
+                if (next < 0) {
+                    transitions[state * symbols + symbol] = fallback;
+                } else {
+                    transitions[state * symbols + symbol] = next;
+                    fail[next] = fallback;
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one rule per line as `service -> regex`. Empty lines and lines starting with # are skipped, invalid
+     * lines are logged and skipped.
+     */
+    public static ChatRuleMatcher parse(String config) {
+        if (config == null || config.isBlank()) {
+            return EMPTY;
+        }
+
+        List<Rule> rules = new ArrayList<>();
+        for (String line : config.split("\\R")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            int separator = line.indexOf(SEPARATOR);
+            if (separator < 0) {
+                log.warn("Chat rule without a service: {}", line);
+                continue;
+            }
+            String service = line.substring(0, separator).trim();
+            String regex = line.substring(separator + SEPARATOR.length()).trim();
+            if (!SERVICE.matcher(service).matches() || regex.isEmpty()) {
+                log.warn("Invalid chat rule: {}", line);
+                continue;
+            }
+
+            try {
+                rules.add(new Rule(service, Pattern.compile(regex)));
+            } catch (PatternSyntaxException e) {
+                log.warn("Invalid chat rule pattern: {}", e.getMessage());
+            }
+        }
+        log.debug("Parsed {} chat rules", rules.size());
+        return rules.isEmpty() ? EMPTY : new ChatRuleMatcher(rules);
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    public List<Rule> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
+    /**
+     * Calls `listener` for every rule with a match in `message`, which has its tags stripped already.
+     */
+    public void match(String message, Listener listener) {
+        if (rules.isEmpty()) {
+            return;
+        }
+        if (++stamp == 0) {
+            Arrays.fill(seen, 0);
+            stamp = 1;
+        }
+
+        for (int rule : alwaysRun) {
+            run(rule, message, listener);
+        }
+
+        int state = 0;
+        for (int i = 0; i < message.length(); i++) {
+            state = transitions[state * symbolCount + symbol(Character.toLowerCase(message.charAt(i)))];
+            int[] ended = outputs[state];
+            if (ended == null) {
+                continue;
+            }
+            for (int rule : ended) {
+                if (seen[rule] != stamp) {
+                    seen[rule] = stamp;
+                    run(rule, message, listener);
+                }
+            }
+        }
+    }
+
+    private void run(int index, String message, Listener listener) {
+        Rule rule = rules.get(index);
+        Matcher matcher = rule.pattern.matcher(message);
+        if (matcher.find()) {
+            listener.onMatch(rule, matcher, message);
+        }
+    }
+
+    private int symbol(char c) {
+        if (c < 128) {
+            return asciiSymbols[c];
+        }
+        Integer symbol = otherSymbols.get(c);
+        return symbol != null ? symbol : 0;
+    }
+
+    private static int[] newState(int symbols) {
+        int[] state = new int[symbols];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    private static int[] toArray(List<Integer> own, int[] inherited) {
+        if (own == null) {
+            return inherited;
+        }
+
+        int[] merged = new int[own.size() + (inherited != null ? inherited.length : 0)];
+        for (int i = 0; i < own.size(); i++) {
+            merged[i] = own.get(i);
+        }
+        if (inherited != null) {
+            System.arraycopy(inherited, 0, merged, own.size(), inherited.length);
+        }
+        return merged;
+    }
+
+    /**
+     * The longest run of literal characters that every match of `regex` contains, lower cased, or "" when there is
+     * none. Groups, classes and anything optional end a run. Classes may nest, like [a-z&&[^aeiou]]. When unsure, like
+     * with an alternative at the top level, it gives up on the rest of the pattern.
+     */
+    static String requiredLiteral(String regex) {
+        if (COMMENTS_FLAG.matcher(regex).find()) {
+            // Whitespace doesn't mean itself in comments mode
+            return "";
+        }
+
+        StringBuilder best = new StringBuilder();
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        // Nested classes count as well, the class ends when this is back at 0
+        int classDepth = 0;
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regex.length()) {
+                    break;
+                }
+                char escaped = regex.charAt(i + 1);
+                i += 2;
+                if (escaped == 'Q' && (depth > 0 || classDepth > 0)) {
+                    // Quoted up to \E, brackets in there don't count
+                    int end = regex.indexOf("\\E", i);
+                    i = end < 0 ? regex.length() : end + 2;
+                    continue;
+                }
+                if (depth == 0 && classDepth == 0) {
+                    if (Character.isLetterOrDigit(escaped)) {
+                        // A class like \d, a back reference or \Q, not worth following. The escapes that take an
+                        // argument, like \x41 or \k<name>, would leave it behind as literal characters
+                        if ("QxuckpPN".indexOf(escaped) >= 0 || Character.isDigit(escaped)) {
+                            break;
+                        }
+                        endRun(run, best);
+                    } else {
+                        run.append(escaped);
+                    }
+                }
+                continue;
+            }
+            i++;
+
+            if (classDepth > 0) {
+                if (c == '[') {
+                    classDepth++;
+                    i = skipClassStart(regex, i);
+                } else if (c == ']') {
+                    classDepth--;
+                }
+                continue;
+            }
+            if (c == '[') {
+                classDepth = 1;
+                endRun(run, best);
+                i = skipClassStart(regex, i);
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+                endRun(run, best);
+                continue;
+            }
+            if (c == ')') {
+                depth--;
+                if (depth < 0) {
+                    break;
+                }
+                continue;
+            }
+            if (depth > 0) {
+                continue;
+            }
+
+            switch (c) {
+                case '|':
+                    return "";
+                case '?':
+                case '*':
+                    dropLast(run);
+                    endRun(run, best);
+                    break;
+                case '{':
+                    dropLast(run);
+                    endRun(run, best);
+                    int close = regex.indexOf('}', i);
+                    i = close < 0 ? regex.length() : close + 1;
+                    break;
+                case '+':
+                case '.':
+                case '^':
+                case '$':
+                    endRun(run, best);
+                    break;
+                default:
+                    run.append(c);
+            }
+        }
+        endRun(run, best);
+        return best.toString().toLowerCase(Locale.ROOT);
+    }
+
+    // A ] right after [ or [^ is part of the class
+    private static int skipClassStart(String regex, int i) {
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        return i;
+    }
+
+    private static void dropLast(StringBuilder run) {
+        if (run.length() > 0) {
+            run.setLength(run.length() - 1);
+        }
+    }
+
+    private static void endRun(StringBuilder run, StringBuilder best) {
+        if (run.length() > best.length()) {
+            best.setLength(0);
+            best.append(run);
+        }
+        run.setLength(0);
+    }
+}
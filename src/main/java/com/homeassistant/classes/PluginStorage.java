@@ -0,0 +1,76 @@
+package com.homeassistant.classes;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.RuneLite;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Files in .runelite/homeassistant for what has to survive a client restart but doesn't belong in the profile config.
+ * A config write is synced with the profile and posts a ConfigChanged to every subscriber, on whatever thread wrote it.
+ */
+@Slf4j
+@Singleton
+public class PluginStorage {
+    private final File directory;
+
+    @Inject
+    public PluginStorage() {
+        this(new File(RuneLite.RUNELITE_DIR, "homeassistant"));
+    }
+
+    public PluginStorage(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The content of the file, or null when there is none or it can't be read.
+     */
+    @Nullable
+    public String read(String name) {
+        File file = new File(directory, name);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try {
+            return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Could not read {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the file with `content`, or deletes it when `content` is null. The file is replaced in one move, so a
+     * crash halfway leaves the previous content.
+     */
+    public void write(String name, @Nullable String content) {
+        File file = new File(directory, name);
+        try {
+            if (content == null) {
+                Files.deleteIfExists(file.toPath());
+                return;
+            }
+
+            directory.mkdirs();
+            File temporary = new File(directory, name + ".tmp");
+            Files.write(temporary.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Could not write {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.homeassistant.classes;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.Skill;
+
+import java.util.*;
+
+/**
+ * Threshold rules on the player's stats, with hysteresis so a value going back and forth around the threshold only
+ * fires once. `health below 20 30` is crossed when health drops under 20 and cleared again once it is back at 30 or
+ * more. Thresholds ending in % are relative to the real level, or to 100 for run energy and special attack.
+ * Stats are indexed by Skill.ordinal(), followed by {@link #RUN_ENERGY} and {@link #SPECIAL_ATTACK}.
+ * Only used from the client thread.
+ */
+@Slf4j
+public final class StatThresholds {
+    private static final Skill[] SKILLS = Skill.values();
+    public static final int RUN_ENERGY = SKILLS.length;
+    public static final int SPECIAL_ATTACK = SKILLS.length + 1;
+    public static final int STAT_COUNT = SKILLS.length + 2;
+
+    public static final StatThresholds EMPTY = new StatThresholds(Collections.emptyList());
+
+    private static final byte UNKNOWN = 0;
+    private static final byte CLEAR = 1;
+    private static final byte CROSSED = 2;
+
+    private final Rule[] rules;
+    // Every stat a rule is on, once
+    @Getter
+    private final int[] stats;
+    private final boolean[] used = new boolean[STAT_COUNT];
+
+    public interface Listener {
+        void onChange(Rule rule, int value, boolean crossed);
+    }
+
+    @Getter
+    public static final class Rule {
+        private final String statName;
+        private final int stat;
+        private final boolean below;
+        private final int threshold;
+        private final int clearAt;
+        private final boolean percent;
+        @Getter(AccessLevel.NONE)
+        private byte state = UNKNOWN;
+
+        public Rule(String statName, int stat, boolean below, int threshold, int clearAt, boolean percent) {
+            this.statName = statName;
+            this.stat = stat;
+            this.below = below;
+            this.threshold = threshold;
+            this.clearAt = clearAt;
+            this.percent = percent;
+        }
+
+        /**
+         * Compares `value` to `limit`, scaled to a percentage of `maximum` for percent rules without rounding.
+         */
+        private int compare(int value, int limit, int maximum) {
+            return percent ? Long.compare(value * 100L, (long) limit * maximum) : Integer.compare(value, limit);
+        }
+
+        private byte next(int value, int maximum) {
+            boolean crossed = below ? compare(value, threshold, maximum) < 0 : compare(value, threshold, maximum) > 0;
+            if (crossed) {
+                return CROSSED;
+            }
+            if (state != CROSSED) {
+                return CLEAR;
+            }
+            boolean cleared = below ? compare(value, clearAt, maximum) >= 0 : compare(value, clearAt, maximum) <= 0;
+            return cleared ? CLEAR : CROSSED;
+        }
+    }
+
+    public StatThresholds(List<Rule> rules) {
+        this.rules = rules.toArray(new Rule[0]);
+        for (Rule rule : rules) {
+            used[rule.stat] = true;
+        }
+
+        int count = 0;
+        for (boolean stat : used) {
+            count += stat ? 1 : 0;
+        }
+        stats = new int[count];
+        for (int stat = 0, i = 0; stat < STAT_COUNT; stat++) {
+            if (used[stat]) {
+                stats[i++] = stat;
+            }
+        }
+    }
+
+    /**
+     * Reads one rule per line as `stat below|above threshold [clear at]`, for example `health below 50% 70%` or
+     * `run_energy below 10`. The stat is health, prayer, run_energy, special_attack or a skill name with underscores
+     * for spaces. Empty lines and lines starting with # are skipped, invalid lines are logged and skipped.
+     */
+    public static StatThresholds parse(String config) {
+        if (config == null || config.isBlank()) {
+            return EMPTY;
+        }
+
+        List<Rule> rules = new ArrayList<>();
+        for (String line : config.split("\\R")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            Rule rule = parseRule(line.toLowerCase(Locale.ROOT).split("\\s+"));
+            if (rule == null) {
+                log.warn("Invalid stat threshold: {}", line);
+                continue;
+            }
+            rules.add(rule);
+        }
+        return rules.isEmpty() ? EMPTY : new StatThresholds(rules);
+    }
+
+    private static Rule parseRule(String[] parts) {
+        if (parts.length < 3 || parts.length > 4 || !(parts[1].equals("below") || parts[1].equals("above"))) {
+            return null;
+        }
+
+        int stat = stat(parts[0]);
+        boolean percent = parts[2].endsWith("%");
+        Integer threshold = number(parts[2], percent);
+        Integer clearAt = parts.length == 4 ? number(parts[3], percent) : threshold;
+        if (stat < 0 || threshold == null || clearAt == null) {
+            return null;
+        }
+
+        boolean below = parts[1].equals("below");
+        // Clearing on the wrong side of the threshold would fire on every tick
+        if (below ? clearAt < threshold : clearAt > threshold) {
+            return null;
+        }
+        return new Rule(parts[0], stat, below, threshold, clearAt, percent);
+    }
+
+    private static int stat(String name) {
+        switch (name) {
+            case "health":
+                return Skill.HITPOINTS.ordinal();
+            case "run_energy":
+                return RUN_ENERGY;
+            case "special_attack":
+                return SPECIAL_ATTACK;
+            default:
+                for (Skill skill : SKILLS) {
+                    if (skill.getName().toLowerCase(Locale.ROOT).replace(' ', '_').equals(name)) {
+                        return skill.ordinal();
+                    }
+                }
+                return -1;
+        }
+    }
+
+    private static Integer number(String text, boolean percent) {
+        if (text.endsWith("%") != percent) {
+            return null;
+        }
+        try {
+            int number = Integer.parseInt(percent ? text.substring(0, text.length() - 1) : text);
+            return number >= 0 ? number : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public boolean isEmpty() {
+        return rules.length == 0;
+    }
+
+    public boolean uses(int stat) {
+        return used[stat];
+    }
+
+    /**
+     * Calls `listener` for every rule that was crossed or cleared, `values` and `maximums` are indexed by stat and
+     * only have to be filled for {@link #getStats()}. The first evaluation after a {@link #reset()} only reports the
+     * rules that are crossed.
+     */
+    public void evaluate(int[] values, int[] maximums, Listener listener) {
+        for (Rule rule : rules) {
+            int value = values[rule.stat];
+            byte next = rule.next(value, maximums[rule.stat]);
+            byte previous = rule.state;
+            rule.state = next;
+            if (next != previous && (next == CROSSED || previous == CROSSED)) {
+                listener.onChange(rule, value, next == CROSSED);
+            }
+        }
+    }
+
+    /**
+     * Forgets whether the rules were crossed, after logging out.
+     */
+    public void reset() {
+        for (Rule rule : rules) {
+            rule.state = UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.homeassistant.classes;
+
+import com.homeassistant.enums.MetricSection;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Singleton;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Records how long each tracker's tick handler and each homeassistant request takes, in histograms that are rolled
+ * over into snapshots every window. Allocated bytes are recorded when the JVM supports per thread allocation counting,
+ * entities are counted for the section that was running when they were posted.
+ */
+@Slf4j
+@Singleton
+public class TickMetrics {
+    private static final MetricSection[] SECTIONS = MetricSection.values();
+
+    private final Histogram[] histograms = new Histogram[SECTIONS.length];
+    private final com.sun.management.ThreadMXBean allocations;
+
+    // Section whose handler is running on the client thread, null outside of them
+    private MetricSection current;
+    private long allocatedAtStart;
+
+    @Getter
+    private volatile Snapshot[] snapshots = new Snapshot[0];
+
+    /**
+     * Summary of one section over the last window, times in nanoseconds. allocatedBytes is -1 when unknown.
+     * connections and newConnections are only counted for {@link MetricSection#HTTP}.
+     */
+    @Getter
+    public static final class Snapshot {
+        private final MetricSection section;
+        private final long count;
+        private final long p50;
+        private final long p99;
+        private final long max;
+        private final long allocatedBytes;
+        private final long entities;
+        private final long connections;
+        private final long newConnections;
+
+        private Snapshot(MetricSection section, long count, long p50, long p99, long max, long allocatedBytes, long entities, long connections, long newConnections) {
+            this.section = section;
+            this.count = count;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+            this.allocatedBytes = allocatedBytes;
+            this.entities = entities;
+            this.connections = connections;
+            this.newConnections = newConnections;
+        }
+    }
+
+    public TickMetrics() {
+        for (int i = 0; i < SECTIONS.length; i++) {
+            histograms[i] = new Histogram();
+        }
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocationBean = null;
+        try {
+            if (threadMXBean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()
+                    && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled()) {
+                allocationBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            }
+        } catch (LinkageError | UnsupportedOperationException e) {
+            log.debug("Allocation counting not available: {}", e.getMessage());
+        }
+        allocations = allocationBean;
+    }
+
+    /**
+     * Starts timing a handler on the client thread, pass the result to {@link #stop}.
+     */
+    public long start(MetricSection section) {
+        current = section;
+        if (allocations != null) {
+            allocatedAtStart = allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return System.nanoTime();
+    }
+
+    public void stop(MetricSection section, long start) {
+        long elapsed = System.nanoTime() - start;
+        long allocated = -1;
+        if (allocations != null) {
+            allocated = allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedAtStart;
+        }
+        current = null;
+        histograms[section.ordinal()].record(elapsed, allocated);
+    }
+
+    /**
+     * Entities posted while a handler runs are counted for its section.
+     */
+    public void entitiesEmitted(int count) {
+        MetricSection section = current;
+        if (section != null) {
+            histograms[section.ordinal()].addEntities(count);
+        }
+    }
+
+    /**
+     * Records a request to homeassistant, from whichever thread got the answer.
+     */
+    public void requestCompleted(long nanos) {
+        histograms[MetricSection.HTTP.ordinal()].record(nanos, -1);
+    }
+
+    /**
+     * A homeassistant call got a connection, pooled or new.
+     */
+    public void connectionAcquired() {
+        histograms[MetricSection.HTTP.ordinal()].addConnection(false);
+    }
+
+    /**
+     * A new connection to homeassistant was opened.
+     */
+    public void connectionOpened() {
+        histograms[MetricSection.HTTP.ordinal()].addConnection(true);
+    }
+
+    /**
+     * Turns the histograms into snapshots and starts a new window.
+     */
+    public Snapshot[] roll() {
+        Snapshot[] rolled = new Snapshot[SECTIONS.length];
+        for (int i = 0; i < SECTIONS.length; i++) {
+            rolled[i] = histograms[i].roll(SECTIONS[i]);
+        }
+        snapshots = rolled;
+        return rolled;
+    }
+
+    /**
+     * Log scale histogram with 4 buckets per power of two, so quantiles are within 25% of the real value.
+     */
+    private static final class Histogram {
+        private static final int SUB_BUCKETS = 4;
+        private static final int BUCKETS = 62 * SUB_BUCKETS;
+
+        private final long[] counts = new long[BUCKETS];
+        private long count;
+        private long max;
+        private long allocatedBytes;
+        private boolean allocationKnown;
+        private long entities;
+        private long connections;
+        private long newConnections;
+
+        private synchronized void record(long nanos, long allocated) {
+            long value = Math.max(nanos, 0);
+            counts[bucket(value)]++;
+            count++;
+            max = Math.max(max, value);
+            if (allocated >= 0) {
+                allocatedBytes += allocated;
+                allocationKnown = true;
+            }
+        }
+
+        private synchronized void addEntities(int added) {
+            entities += added;
+        }
+
+        private synchronized void addConnection(boolean opened) {
+            if (opened) {
+                newConnections++;
+            } else {
+                connections++;
+            }
+        }
+
+        private synchronized Snapshot roll(MetricSection section) {
+            Snapshot snapshot = new Snapshot(section, count, quantile(0.5), quantile(0.99), max, allocationKnown ? allocatedBytes : -1, entities, connections, newConnections);
+            Arrays.fill(counts, 0);
+            count = 0;
+            max = 0;
+            allocatedBytes = 0;
+            allocationKnown = false;
+            entities = 0;
+            connections = 0;
+            newConnections = 0;
+            return snapshot;
+        }
+
+        private long quantile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    // Upper bound of the bucket, never more than what was actually seen
+                    return Math.min(lowerBound(i + 1) - 1, max);
+                }
+            }
+            return max;
+        }
+
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+            return Math.min((exponent - 1) * SUB_BUCKETS + subBucket, BUCKETS - 1);
+        }
+
+        private static long lowerBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + 1;
+            return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 2);
+        }
+    }
+}
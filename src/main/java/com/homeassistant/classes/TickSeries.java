@@ -0,0 +1,151 @@
+package com.homeassistant.classes;
+
+import lombok.Getter;
+
+/**
+ * A fixed ring of per tick samples of a few int channels, kept in primitive arrays so recording a tick allocates
+ * nothing. Drained as windows of a number of ticks with the min, max and last value of every channel. When it is not
+ * drained in time the oldest samples are overwritten. Only used from the client thread.
+ */
+public final class TickSeries {
+    private final int channels;
+    private final int capacity;
+    // slot * channels + channel
+    private final int[] samples;
+    private final int[] ticks;
+    private final long[] times;
+
+    // Samples recorded and drained since the start, the slot of sample n is n % capacity
+    private long written = 0;
+    private long drained = 0;
+    @Getter
+    private long overwritten = 0;
+
+    /**
+     * Windows of samples, every array is indexed by window. The channel arrays are indexed by channel first.
+     */
+    @Getter
+    public static final class Windows {
+        private final int[] startTicks;
+        private final long[] startTimes;
+        private final int[][] min;
+        private final int[][] max;
+        private final int[][] last;
+
+        private Windows(int count, int channels) {
+            startTicks = new int[count];
+            startTimes = new long[count];
+            min = new int[channels][count];
+            max = new int[channels][count];
+            last = new int[channels][count];
+        }
+
+        public int size() {
+            return startTicks.length;
+        }
+    }
+
+    public TickSeries(int channels, int capacity) {
+        this.channels = channels;
+        this.capacity = capacity;
+        this.samples = new int[capacity * channels];
+        this.ticks = new int[capacity];
+        this.times = new long[capacity];
+    }
+
+    /**
+     * Records `sample`, one value per channel, for `tick` at `timeMillis`.
+     */
+    public void record(int tick, long timeMillis, int[] sample) {
+        int slot = (int) (written % capacity);
+        System.arraycopy(sample, 0, samples, slot * channels, channels);
+        ticks[slot] = tick;
+        times[slot] = timeMillis;
+        written++;
+
+        if (written - drained > capacity) {
+            drained++;
+            overwritten++;
+        }
+    }
+
+    public int pending() {
+        return (int) (written - drained);
+    }
+
+    public void clear() {
+        drained = written;
+    }
+
+    /**
+     * Takes the samples recorded since the last drain as windows of `windowTicks` ticks, aligned on the tick count.
+     * A tick count going back, after logging in again, starts a new window even when it lands in the same one.
+     * The window of the latest sample is left for the next drain unless `all` is set, since it can still grow.
+     * Returns null when there is nothing to take.
+     */
+    public Windows drain(int windowTicks, boolean all) {
+        if (written == drained) {
+            return null;
+        }
+
+        long end = written;
+        if (!all) {
+            int laterTick = ticks[(int) ((written - 1) % capacity)];
+            int latestWindow = Math.floorDiv(laterTick, windowTicks);
+            while (end > drained) {
+                int tick = ticks[(int) ((end - 1) % capacity)];
+                if (Math.floorDiv(tick, windowTicks) != latestWindow || tick > laterTick) {
+                    break;
+                }
+                laterTick = tick;
+                end--;
+            }
+        }
+
+        // A window starts wherever the window number changes or the ticks jump back
+        int count = 0;
+        int window = 0;
+        int previousTick = 0;
+        for (long n = drained; n < end; n++) {
+            int tick = ticks[(int) (n % capacity)];
+            int current = Math.floorDiv(tick, windowTicks);
+            if (n == drained || current != window || tick < previousTick) {
+                count++;
+                window = current;
+            }
+            previousTick = tick;
+        }
+        if (count == 0) {
+            return null;
+        }
+
+        Windows windows = new Windows(count, channels);
+        int index = -1;
+        for (long n = drained; n < end; n++) {
+            int slot = (int) (n % capacity);
+            int current = Math.floorDiv(ticks[slot], windowTicks);
+            boolean first = n == drained || current != window || ticks[slot] < previousTick;
+            previousTick = ticks[slot];
+            if (first) {
+                index++;
+                window = current;
+                windows.startTicks[index] = ticks[slot];
+                windows.startTimes[index] = times[slot];
+            }
+
+            for (int channel = 0; channel < channels; channel++) {
+                int value = samples[slot * channels + channel];
+                if (first) {
+                    windows.min[channel][index] = value;
+                    windows.max[channel][index] = value;
+                } else {
+                    windows.min[channel][index] = Math.min(windows.min[channel][index], value);
+                    windows.max[channel][index] = Math.max(windows.max[channel][index], value);
+                }
+                windows.last[channel][index] = value;
+            }
+        }
+        drained = end;
+        return windows;
+    }
+}
@@ -0,0 +1,111 @@
+package com.homeassistant.classes;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel with one slot per second. Timers are keyed, scheduling a key again replaces its timer.
+ * {@link #advance} only visits the slots of the seconds that passed since the last call, so advancing every game tick
+ * costs the same no matter how many timers are waiting.
+ */
+public class TimerWheel<K> {
+    private static final int SLOTS = 1024;
+    private static final int MASK = SLOTS - 1;
+
+    private final List<List<Timer<K>>> slots = new ArrayList<>(SLOTS);
+    private final Map<K, Timer<K>> timers = new HashMap<>();
+    private final List<K> expired = new ArrayList<>();
+
+    // Last second that was advanced to, Long.MIN_VALUE before the first advance
+    private long current = Long.MIN_VALUE;
+
+    private static final class Timer<K> {
+        private final K key;
+        private final long deadline;
+        private final int slot;
+
+        private Timer(K key, long deadline, int slot) {
+            this.key = key;
+            this.deadline = deadline;
+            this.slot = slot;
+        }
+    }
+
+    public TimerWheel() {
+        for (int i = 0; i < SLOTS; i++) {
+            slots.add(new ArrayList<>(0));
+        }
+    }
+
+    /**
+     * Fires `key` once the epoch second `deadline` has passed, replacing an earlier timer for the same key.
+     */
+    public void schedule(K key, long deadline) {
+        cancel(key);
+
+        // A deadline that already passed goes in the next slot that is visited
+        long second = current == Long.MIN_VALUE ? deadline : Math.max(deadline, current + 1);
+        Timer<K> timer = new Timer<>(key, deadline, (int) (second & MASK));
+        timers.put(key, timer);
+        slots.get(timer.slot).add(timer);
+    }
+
+    public void cancel(K key) {
+        Timer<K> timer = timers.remove(key);
+        if (timer != null) {
+            slots.get(timer.slot).remove(timer);
+        }
+    }
+
+    public void clear() {
+        timers.clear();
+        for (List<Timer<K>> slot : slots) {
+            slot.clear();
+        }
+    }
+
+    public boolean isEmpty() {
+        return timers.isEmpty();
+    }
+
+    /**
+     * Moves the wheel to the epoch second `now` and calls `onExpired` for every timer that passed its deadline.
+     */
+    public void advance(long now, Consumer<K> onExpired) {
+        if (now <= current) {
+            return;
+        }
+        if (timers.isEmpty()) {
+            current = now;
+            return;
+        }
+
+        // After a long pause every slot is visited once
+        long from = current == Long.MIN_VALUE || now - current >= SLOTS ? now - SLOTS + 1 : current + 1;
+        for (long second = from; second <= now; second++) {
+            List<Timer<K>> slot = slots.get((int) (second & MASK));
+            if (slot.isEmpty()) {
+                continue;
+            }
+
+            Iterator<Timer<K>> iterator = slot.iterator();
+            while (iterator.hasNext()) {
+                Timer<K> timer = iterator.next();
+                if (timer.deadline <= now) {
+                    iterator.remove();
+                    timers.remove(timer.key);
+                    expired.add(timer.key);
+                }
+            }
+        }
+        current = now;
+
+        if (expired.isEmpty()) {
+            return;
+        }
+        // Callbacks can schedule again, so they run after the wheel is updated
+        List<K> fired = new ArrayList<>(expired);
+        expired.clear();
+        fired.forEach(onExpired);
+    }
+}
@@ -1,29 +1,17 @@
 package com.homeassistant.classes;
 
-import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.Client;
+import net.runelite.api.Player;
 
-import java.util.Objects;
-
-@Slf4j
 public  class Utils {
+    /**
+     * Slug of the local player's name, null while there is no player. Uncached, the trackers use {@link PlayerIdentity}.
+     */
     public static String GetUserName(Client client){
-
-        try {
-            String slug = Objects.requireNonNull(client.getLocalPlayer().getName()).toLowerCase();
-
-            // Replace all non a-z, 0-9, or _ with _
-            slug = slug.replaceAll("[^a-z0-9_]", "_");
-
-            // Collapse multiple underscores into one
-            slug = slug.replaceAll("_+", "_");
-
-            // Remove leading/trailing underscores
-            slug = slug.replaceAll("^_+|_+$", "");
-            return slug;
-        } catch (NullPointerException e) {
-            log.error("Error fetching username: {}", e.getMessage());
+        Player player = client.getLocalPlayer();
+        if (player == null || player.getName() == null) {
             return null;
         }
+        return PlayerIdentity.slugify(player.getName());
     }
 }
@@ -0,0 +1,19 @@
+package com.homeassistant.enums;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * How long an entity update may wait before it has to be sent, in game ticks.
+ * Everything that is pending goes out in the same request once any update is due.
+ */
+@RequiredArgsConstructor
+@Getter
+public enum EntityPriority {
+    CRITICAL("critical", 0),
+    HIGH("high", 2),
+    NORMAL("normal", 10),
+    LOW("low", 50);
+
+    private final String id;
+    private final int maxStalenessTicks;
+}
@@ -0,0 +1,23 @@
+package com.homeassistant.enums;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * What the plugin metrics are recorded for, the id is the attribute prefix in the metrics entity.
+ */
+@RequiredArgsConstructor
+@Getter
+public enum MetricSection {
+    PLAYER_DATA("player_data", "Player data"),
+    AGGRESSION("aggression", "Aggression"),
+    VARBITS("varbits", "Varbits"),
+    IDLE("idle", "Idle"),
+    FARMING("farming", "Farming"),
+    BIRDHOUSES("birdhouses", "Birdhouses"),
+    STAT_HISTORY("stat_history", "Stat history"),
+    FLUSH("flush", "Flush"),
+    HTTP("http", "HTTP round trip");
+
+    private final String id;
+    private final String name;
+}
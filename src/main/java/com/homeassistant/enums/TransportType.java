@@ -0,0 +1,17 @@
+package com.homeassistant.enums;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+@Getter
+public enum TransportType {
+    REST("REST"),
+    WEBSOCKET("WebSocket");
+
+    private final String name;
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,170 @@
+package com.homeassistant.network;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.homeassistant.classes.PluginStorage;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.*;
+
+/**
+ * Keeps the latest state of every entity the trackers posted, and the state that was last sent to homeassistant.
+ * A flush only contains the attributes that differ from what was sent, and skips entities that ended up at the
+ * value homeassistant already has (health 99 -> 98 -> 99 within one throttle window sends nothing).
+ * When the key set of an entity changes, or the last send failed, the whole entity is sent again.
+ * Homeassistant has to merge the partial entities into what it has, see docs/partial-entity-updates.md.
+ */
+@Slf4j
+@Singleton
+public class EntityStateStore {
+    private static final String FILE_NAME = "pending-entities.json";
+
+    private final PluginStorage storage;
+    private final Gson gson;
+
+    private final Map<String, Map<String, Object>> desired = new HashMap<>();
+    private final Map<String, Map<String, Object>> sent = new HashMap<>();
+    private final LinkedHashSet<String> dirty = new LinkedHashSet<>();
+    // The dirty entities changed since the last save
+    private boolean unsaved = false;
+
+    @Inject
+    public EntityStateStore(PluginStorage storage, Gson gson) {
+        this.storage = storage;
+        this.gson = gson;
+    }
+
+    /**
+     * Stores the latest state of an entity. `force` makes the next flush send every attribute again,
+     * even when homeassistant should already have them.
+     */
+    public synchronized void update(Map<String, Object> entity, boolean force) {
+        Object entityId = entity.get("entity_id");
+        if (!(entityId instanceof String)) {
+            return;
+        }
+
+        desired.put((String) entityId, entity);
+        // Move to the back, the flush keeps the order of the latest updates
+        dirty.remove(entityId);
+        dirty.add((String) entityId);
+        unsaved = true;
+        if (force) {
+            sent.remove(entityId);
+        }
+    }
+
+    public synchronized boolean hasChanges() {
+        return !dirty.isEmpty();
+    }
+
+    public synchronized int size() {
+        return dirty.size();
+    }
+
+    /**
+     * Builds the entity payloads for everything that changed since the last flush and marks them as sent.
+     */
+    public synchronized List<Map<String, Object>> drain() {
+        if (dirty.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Map<String, Object>> entities = new ArrayList<>(dirty.size());
+        for (String entityId : dirty) {
+            Map<String, Object> state = desired.get(entityId);
+            Map<String, Object> previous = sent.get(entityId);
+            if (state.equals(previous)) {
+                continue;
+            }
+
+            if (previous == null || !previous.keySet().equals(state.keySet())) {
+                entities.add(state);
+            } else {
+                Map<String, Object> delta = new HashMap<>();
+                delta.put("entity_id", entityId);
+                for (Map.Entry<String, Object> attribute : state.entrySet()) {
+                    if (!Objects.equals(attribute.getValue(), previous.get(attribute.getKey()))) {
+                        delta.put(attribute.getKey(), attribute.getValue());
+                    }
+                }
+                entities.add(delta);
+            }
+            sent.put(entityId, state);
+        }
+        dirty.clear();
+        unsaved = true;
+
+        return entities;
+    }
+
+    /**
+     * The entities could not be delivered, what homeassistant has is unknown so they are sent in full on the next flush.
+     */
+    public synchronized void reject(List<Map<String, Object>> entities) {
+        for (Map<String, Object> entity : entities) {
+            Object entityId = entity.get("entity_id");
+            if (entityId instanceof String && desired.containsKey(entityId)) {
+                sent.remove(entityId);
+                dirty.add((String) entityId);
+                unsaved = true;
+            }
+        }
+    }
+
+    /**
+     * Homeassistant may have lost the entities it had, after an outage, a reconnect or on login. The next flush sends
+     * every entity in full.
+     */
+    public synchronized void resendAll() {
+        sent.clear();
+        unsaved |= dirty.addAll(desired.keySet());
+    }
+
+    public synchronized void load() {
+        desired.clear();
+        sent.clear();
+        dirty.clear();
+
+        String stored = storage.read(FILE_NAME);
+        if (stored == null || stored.isEmpty()) {
+            return;
+        }
+
+        try {
+            JsonArray entities = gson.fromJson(stored, JsonArray.class);
+            for (JsonElement element : entities) {
+                update(OutboundQueue.toMap(element.getAsJsonObject()), true);
+            }
+            log.info("Restored {} undelivered entities for homeassistant", dirty.size());
+        } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+            log.warn("Could not restore the undelivered entities: {}", e.getMessage());
+        }
+        unsaved = false;
+    }
+
+    /**
+     * Stores the entities that still have to be delivered, so they are sent after a client restart. Only writes when
+     * they changed since the last save.
+     */
+    public synchronized void save() {
+        if (!unsaved) {
+            return;
+        }
+        unsaved = false;
+        if (dirty.isEmpty()) {
+            storage.write(FILE_NAME, null);
+            return;
+        }
+
+        List<Map<String, Object>> entities = new ArrayList<>(dirty.size());
+        for (String entityId : dirty) {
+            entities.add(desired.get(entityId));
+        }
+        storage.write(FILE_NAME, gson.toJson(entities));
+    }
+}
@@ -0,0 +1,59 @@
+package com.homeassistant.network;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Singleton;
+import java.util.*;
+
+/**
+ * Collects the events of one game tick so they go out in a single request to the trigger_multi_event service at the
+ * end of the tick, instead of a request per event. A tick with a single event sends it to its own service as before.
+ * See docs/multi-event-service.md for what the homeassistant side has to accept.
+ */
+@Slf4j
+@Singleton
+public class EventBatcher {
+    public static final String MULTI_EVENT_SERVICE = "trigger_multi_event";
+    // Sent right away once this many are waiting, so one request doesn't grow without bounds
+    public static final int MAX_EVENTS = 50;
+
+    private final List<OutboundQueue.PendingRequest> events = new ArrayList<>();
+
+    /**
+     * Adds an event to the current batch, returns true when the batch is full and should be sent now.
+     */
+    public synchronized boolean add(String service, Map<String, Object> payload) {
+        events.add(new OutboundQueue.PendingRequest(service, payload));
+        return events.size() >= MAX_EVENTS;
+    }
+
+    public synchronized boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    /**
+     * Takes the batch as one request, or null when nothing is waiting. The events keep the order they were added in.
+     */
+    public synchronized OutboundQueue.PendingRequest drain() {
+        if (events.isEmpty()) {
+            return null;
+        }
+        if (events.size() == 1) {
+            return events.remove(0);
+        }
+
+        List<Map<String, Object>> batch = new ArrayList<>(events.size());
+        for (OutboundQueue.PendingRequest event : events) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("service", event.getService());
+            entry.put("data", event.getPayload());
+            batch.add(entry);
+        }
+        log.debug("Batched {} events", events.size());
+        events.clear();
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("events", batch);
+        return new OutboundQueue.PendingRequest(MULTI_EVENT_SERVICE, payload);
+    }
+}
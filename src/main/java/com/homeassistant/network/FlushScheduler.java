@@ -0,0 +1,85 @@
+package com.homeassistant.network;
+
+import com.homeassistant.HomeassistantConfig;
+import com.homeassistant.enums.EntityPriority;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Decides on which tick the pending entities are flushed. Every update has a deadline based on its priority, the
+ * flush happens on the earliest deadline and takes everything that is pending with it.
+ * Only one flush is in flight at a time, and when homeassistant gets slow the non-critical deadlines are stretched.
+ */
+@Slf4j
+@Singleton
+public class FlushScheduler {
+    // Responses slower than this start stretching the deadlines
+    private static final long TARGET_LATENCY_MS = 200L;
+    private static final int MAX_LATENCY_FACTOR = 8;
+    // A flush that never got an answer should not block the next one forever
+    private static final long IN_FLIGHT_TIMEOUT_MS = 30_000L;
+
+    private final HomeassistantConfig config;
+
+    private int deadlineTick = Integer.MAX_VALUE;
+    private long inFlightSince = 0L;
+    private double averageLatencyMs = 0;
+
+    @Inject
+    public FlushScheduler(HomeassistantConfig config) {
+        this.config = config;
+    }
+
+    public synchronized void scheduled(EntityPriority priority, int tick) {
+        int staleness = priority.getMaxStalenessTicks();
+        if (priority != EntityPriority.CRITICAL) {
+            staleness = Math.max(staleness * getLatencyFactor(), config.globalUpdateThrottle());
+        }
+        deadlineTick = Math.min(deadlineTick, tick + staleness);
+    }
+
+    /**
+     * Entities are waiting in the store without a fresh update, after a failed flush or a restart. They are sent
+     * as soon as homeassistant can take them.
+     */
+    public synchronized void reschedule() {
+        deadlineTick = Integer.MIN_VALUE;
+    }
+
+    public synchronized boolean isDue(int tick) {
+        if (tick < deadlineTick) {
+            return false;
+        }
+        return inFlightSince == 0L || System.currentTimeMillis() - inFlightSince > IN_FLIGHT_TIMEOUT_MS;
+    }
+
+    /**
+     * Everything pending is about to be sent, or there was nothing left to send.
+     */
+    public synchronized void flushed(boolean sent) {
+        deadlineTick = Integer.MAX_VALUE;
+        if (sent) {
+            inFlightSince = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized void completed() {
+        if (inFlightSince == 0L) {
+            return;
+        }
+
+        long latency = System.currentTimeMillis() - inFlightSince;
+        inFlightSince = 0L;
+        averageLatencyMs = averageLatencyMs == 0 ? latency : averageLatencyMs * 0.8 + latency * 0.2;
+        log.debug("Flush took {} ms, average {} ms", latency, (long) averageLatencyMs);
+    }
+
+    private int getLatencyFactor() {
+        if (averageLatencyMs <= TARGET_LATENCY_MS) {
+            return 1;
+        }
+        return (int) Math.min(MAX_LATENCY_FACTOR, Math.ceil(averageLatencyMs / TARGET_LATENCY_MS));
+    }
+}
@@ -0,0 +1,110 @@
+package com.homeassistant.network;
+
+import com.homeassistant.HomeassistantConfig;
+import com.homeassistant.classes.TickMetrics;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The OkHttpClient for homeassistant traffic. Derived from RuneLite's shared client so it keeps its settings, but with
+ * its own dispatcher and connection pool, so a burst of events doesn't queue behind RuneLite's own requests and the
+ * other way around. Connections are kept alive long enough to last between flushes and the online status ping.
+ * Rebuilt when HTTP/2 is toggled or the url switches between http and https.
+ */
+@Slf4j
+@Singleton
+public class HomeassistantHttpClient {
+    // At most one entity flush is in flight, the rest are events
+    private static final int MAX_REQUESTS = 8;
+    private static final int MAX_REQUESTS_PER_HOST = 4;
+    private static final int MAX_IDLE_CONNECTIONS = 2;
+    // The online status is pinged every minute, so an idle connection lives to see the next one
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private static final List<Protocol> HTTP_1 = Collections.singletonList(Protocol.HTTP_1_1);
+    // h2c, homeassistant itself doesn't speak it but a proxy in front of it can
+    private static final List<Protocol> HTTP_2_CLEARTEXT = Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE);
+    // Negotiated with ALPN, falls back to HTTP/1.1
+    private static final List<Protocol> HTTP_2_TLS = List.of(Protocol.HTTP_2, Protocol.HTTP_1_1);
+
+    private final OkHttpClient sharedClient;
+    private final HomeassistantConfig config;
+    private final TickMetrics tickMetrics;
+
+    private OkHttpClient client;
+    private List<Protocol> clientProtocols;
+
+    /**
+     * Counts every connection a call gets and the ones that had to be opened for it, so the metrics show how often
+     * a pooled connection was reused.
+     */
+    private final EventListener connectionListener = new EventListener() {
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            tickMetrics.connectionAcquired();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            tickMetrics.connectionOpened();
+        }
+    };
+
+    @Inject
+    public HomeassistantHttpClient(OkHttpClient sharedClient, HomeassistantConfig config, TickMetrics tickMetrics) {
+        this.sharedClient = sharedClient;
+        this.config = config;
+        this.tickMetrics = tickMetrics;
+    }
+
+    public synchronized OkHttpClient get() {
+        List<Protocol> protocols = protocols();
+        if (client != null && protocols.equals(clientProtocols)) {
+            return client;
+        }
+
+        close();
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+        client = sharedClient.newBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .protocols(protocols)
+                .eventListener(connectionListener)
+                .build();
+        clientProtocols = protocols;
+        log.debug("Homeassistant http client built with {}", protocols);
+        return client;
+    }
+
+    /**
+     * Lets the calls in flight finish and closes the idle connections.
+     */
+    public synchronized void close() {
+        if (client == null) {
+            return;
+        }
+
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        client = null;
+        clientProtocols = null;
+    }
+
+    private List<Protocol> protocols() {
+        if (!config.http2()) {
+            return HTTP_1;
+        }
+        return config.homeassistantUrl().startsWith("https") ? HTTP_2_TLS : HTTP_2_CLEARTEXT;
+    }
+}
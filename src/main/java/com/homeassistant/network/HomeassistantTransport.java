@@ -0,0 +1,16 @@
+package com.homeassistant.network;
+
+import okio.ByteString;
+
+import java.util.function.Consumer;
+
+/**
+ * A way of calling a service in the runelite domain of homeassistant.
+ * `onDelivered` is called with false when the call should be retried later, see {@link OutboundQueue}.
+ */
+public interface HomeassistantTransport {
+    void send(String service, ByteString jsonPayload, Consumer<Boolean> onDelivered);
+
+    default void close() {
+    }
+}
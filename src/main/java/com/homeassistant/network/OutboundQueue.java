@@ -0,0 +1,260 @@
+package com.homeassistant.network;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.homeassistant.classes.PluginStorage;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Clock;
+import java.util.*;
+
+/**
+ * Holds the events that could not be delivered to homeassistant while it was unreachable, in the order they were sent,
+ * and the backoff for retrying them. Entities wait in the {@link EntityStateStore} instead.
+ * The queue is written to .runelite/homeassistant by {@link #save()}, which the plugin calls on a timer and on
+ * shutdown, so it survives a client restart.
+ */
+@Slf4j
+@Singleton
+public class OutboundQueue {
+    public static final String ENTITY_SERVICE = "set_multi_entity_data";
+
+    private static final String FILE_NAME = "outbound-queue.json";
+    private static final int MAX_PENDING_EVENTS = 100;
+    private static final long INITIAL_BACKOFF_MS = 1_000L;
+    private static final long MAX_BACKOFF_MS = 60_000L;
+
+    private final PluginStorage storage;
+    private final Gson gson;
+    // The backoff runs on this, tests move it along instead of waiting
+    private final Clock clock;
+
+    private final Deque<PendingRequest> pendingEvents = new ArrayDeque<>();
+
+    private int failures = 0;
+    private long nextAttemptAt = 0L;
+    private boolean replaying = false;
+    // Events dropped because the queue was full, since the client started
+    private long dropped = 0L;
+    // The queue changed since it was last saved
+    private boolean unsaved = false;
+
+    @Inject
+    public OutboundQueue(PluginStorage storage, Gson gson, Clock clock) {
+        this.storage = storage;
+        this.gson = gson;
+        this.clock = clock;
+    }
+
+    @Getter
+    public static class PendingRequest {
+        private final String service;
+        private final Map<String, Object> payload;
+
+        public PendingRequest(String service, Map<String, Object> payload) {
+            this.service = service;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * True while homeassistant is considered unreachable or the queue is being replayed, new requests should be
+     * queued instead of sent so they are delivered after everything that is already waiting.
+     */
+    public synchronized boolean isBackingOff() {
+        return failures > 0 || replaying;
+    }
+
+    public synchronized boolean isReplayDue() {
+        return failures > 0 && !replaying && clock.millis() >= nextAttemptAt;
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingEvents.isEmpty();
+    }
+
+    public synchronized int size() {
+        return pendingEvents.size();
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Queues an event behind the ones that are already waiting, the oldest is dropped when the queue is full.
+     */
+    public synchronized void offer(PendingRequest request) {
+        if (pendingEvents.size() >= MAX_PENDING_EVENTS) {
+            PendingRequest oldest = pendingEvents.pollFirst();
+            dropped++;
+            log.warn("Outbound queue full, dropping oldest event {}", oldest == null ? null : oldest.getService());
+        }
+        pendingEvents.addLast(request);
+        unsaved = true;
+    }
+
+    /**
+     * Takes the next event to replay, in the order they were sent. Returns null when the queue is empty, the backoff
+     * only ends once something was delivered, see {@link #delivered()}.
+     */
+    public synchronized PendingRequest poll() {
+        PendingRequest event = pendingEvents.pollFirst();
+        replaying = event != null;
+        unsaved |= replaying;
+        return event;
+    }
+
+    /**
+     * A request got through. Ends the backoff once nothing is waiting in the queue anymore, returns true when it did.
+     */
+    public synchronized boolean delivered() {
+        if (failures == 0 || replaying || !pendingEvents.isEmpty()) {
+            return false;
+        }
+
+        failures = 0;
+        nextAttemptAt = 0L;
+        return true;
+    }
+
+    /**
+     * Puts an event that failed to deliver back in front of the queue and schedules the next attempt.
+     */
+    public synchronized void retry(PendingRequest request) {
+        pendingEvents.addFirst(request);
+        replaying = false;
+        unsaved = true;
+        failed();
+    }
+
+    /**
+     * Queues an event that was sent directly but could not be delivered, which starts the backoff.
+     */
+    public synchronized void offerFailed(PendingRequest request) {
+        offer(request);
+        failed();
+    }
+
+    /**
+     * Something could not be delivered, wait a bit longer before the next attempt.
+     */
+    public synchronized void failed() {
+        failures++;
+        long backoff = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(failures - 1, 16));
+        nextAttemptAt = clock.millis() + backoff;
+        log.warn("Homeassistant unreachable, {} queued event(s), retrying in {} ms", size(), backoff);
+    }
+
+    public synchronized void load() {
+        pendingEvents.clear();
+        failures = 0;
+        nextAttemptAt = 0L;
+        replaying = false;
+        unsaved = false;
+
+        String stored = storage.read(FILE_NAME);
+        if (stored == null || stored.isEmpty()) {
+            return;
+        }
+
+        try {
+            JsonObject root = gson.fromJson(stored, JsonObject.class);
+            JsonArray events = root.getAsJsonArray("events");
+            if (events != null) {
+                for (JsonElement element : events) {
+                    JsonObject event = element.getAsJsonObject();
+                    pendingEvents.addLast(new PendingRequest(event.get("service").getAsString(), toMap(event.getAsJsonObject("payload"))));
+                }
+            }
+        } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+            log.warn("Could not restore the outbound queue: {}", e.getMessage());
+        }
+
+        if (!isEmpty()) {
+            // Replay on the first tick after startup
+            failures = 1;
+            log.info("Restored {} queued event(s) for homeassistant", size());
+        }
+    }
+
+    /**
+     * Writes the queue when it changed since the last save. Not called on every change, the file is only read on startup.
+     */
+    public synchronized void save() {
+        if (!unsaved) {
+            return;
+        }
+        unsaved = false;
+        if (isEmpty()) {
+            storage.write(FILE_NAME, null);
+            return;
+        }
+
+        List<Map<String, Object>> events = new ArrayList<>();
+        for (PendingRequest request : pendingEvents) {
+            Map<String, Object> event = new HashMap<>();
+            event.put("service", request.getService());
+            event.put("payload", request.getPayload());
+            events.add(event);
+        }
+
+        Map<String, Object> root = new HashMap<>();
+        root.put("events", events);
+        storage.write(FILE_NAME, gson.toJson(root));
+    }
+
+    // Whole numbers stay whole, a plain Gson map would turn every int into a double
+    static Map<String, Object> toMap(JsonObject object) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+            map.put(entry.getKey(), toValue(entry.getValue()));
+        }
+        return map;
+    }
+
+    private static Object toValue(JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            return null;
+        }
+        if (element.isJsonObject()) {
+            return toMap(element.getAsJsonObject());
+        }
+        if (element.isJsonArray()) {
+            List<Object> list = new ArrayList<>();
+            for (JsonElement item : element.getAsJsonArray()) {
+                list.add(toValue(item));
+            }
+            return list;
+        }
+        if (element.getAsJsonPrimitive().isBoolean()) {
+            return element.getAsBoolean();
+        }
+        if (element.getAsJsonPrimitive().isNumber()) {
+            return toNumber(element.getAsString());
+        }
+        return element.getAsString();
+    }
+
+    // The types the trackers post, a restored 99 has to equal the Integer 99 they post next
+    private static Number toNumber(String literal) {
+        if (literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+            try {
+                long value = Long.parseLong(literal);
+                if (value == (int) value) {
+                    return (int) value;
+                }
+                return value;
+            } catch (NumberFormatException e) {
+                // Past a long, falls through to a double
+            }
+        }
+        return Double.parseDouble(literal);
+    }
+}
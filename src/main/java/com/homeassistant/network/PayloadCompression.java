@@ -0,0 +1,51 @@
+package com.homeassistant.network;
+
+import okio.Buffer;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzips request bodies that are large enough to be worth it, like the entity batch after a login or world hop.
+ * Small updates go out as they are, compressing them costs more than the bytes it saves. See
+ * docs/request-compression.md for what the homeassistant side has to accept.
+ */
+public final class PayloadCompression {
+    public static final String CONTENT_ENCODING = "gzip";
+    // A little less than what fits in one TCP segment
+    public static final int THRESHOLD_BYTES = 1024;
+    // JSON with repeated keys already shrinks well at the fastest level, the serializing thread is the client thread
+    public static final int LEVEL = Deflater.BEST_SPEED;
+
+    private PayloadCompression() {
+    }
+
+    public static boolean shouldCompress(ByteString payload) {
+        return payload.size() >= THRESHOLD_BYTES;
+    }
+
+    public static ByteString gzip(ByteString payload) {
+        return gzip(payload, LEVEL);
+    }
+
+    public static ByteString gzip(ByteString payload, int level) {
+        Buffer buffer = new Buffer();
+        try (GZIPOutputStream gzip = new LeveledGzipOutputStream(buffer, payload.size(), level)) {
+            payload.write(gzip);
+        } catch (IOException e) {
+            // A Buffer never fails to write
+            throw new UncheckedIOException(e);
+        }
+        return buffer.readByteString();
+    }
+
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+        private LeveledGzipOutputStream(Buffer buffer, int size, int level) throws IOException {
+            super(buffer.outputStream(), Math.max(512, size));
+            def.setLevel(level);
+        }
+    }
+}
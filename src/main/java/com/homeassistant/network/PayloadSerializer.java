@@ -0,0 +1,103 @@
+package com.homeassistant.network;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import lombok.extern.slf4j.Slf4j;
+import okio.Buffer;
+import okio.ByteString;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Writes request payloads straight to UTF-8 bytes with one reused JsonWriter, without building a Gson instance or an
+ * intermediate String per request. The values the trackers post (maps, lists, int and long arrays, strings, numbers,
+ * booleans) are written by walking them, anything else falls back to the injected Gson's adapters.
+ * There are no typed writers per entity, the trackers post Map entities and {@link EntityStateStore} diffs them by
+ * attribute, so the maps are still built for every update. What this saves is the Gson and the String per request.
+ */
+@Slf4j
+@Singleton
+public class PayloadSerializer {
+    private final Gson gson;
+    private final Buffer buffer = new Buffer();
+    private JsonWriter writer;
+
+    @Inject
+    public PayloadSerializer(Gson gson) {
+        this.gson = gson;
+        this.writer = createWriter();
+    }
+
+    private JsonWriter createWriter() {
+        JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(buffer.outputStream(), StandardCharsets.UTF_8));
+        // Every payload is its own top level value on the same writer
+        jsonWriter.setLenient(true);
+        // Same output as Gson's defaults, null map values are left out
+        jsonWriter.setSerializeNulls(false);
+        return jsonWriter;
+    }
+
+    public synchronized ByteString serialize(Map<String, Object> payload) {
+        try {
+            writeValue(payload);
+            writer.flush();
+            return buffer.readByteString();
+        } catch (IOException | RuntimeException e) {
+            // The writer is halfway through a value, start over with a clean one
+            buffer.clear();
+            writer = createWriter();
+            if (e instanceof IOException) {
+                throw new UncheckedIOException((IOException) e);
+            }
+            throw (RuntimeException) e;
+        }
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else if (value instanceof String) {
+            writer.value((String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            writer.value(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            writer.value((Number) value);
+        } else if (value instanceof Boolean) {
+            writer.value((Boolean) value);
+        } else if (value instanceof Map) {
+            writer.beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writer.name(String.valueOf(entry.getKey()));
+                writeValue(entry.getValue());
+            }
+            writer.endObject();
+        } else if (value instanceof int[]) {
+            writer.beginArray();
+            for (int item : (int[]) value) {
+                writer.value(item);
+            }
+            writer.endArray();
+        } else if (value instanceof long[]) {
+            writer.beginArray();
+            for (long item : (long[]) value) {
+                writer.value(item);
+            }
+            writer.endArray();
+        } else if (value instanceof Collection) {
+            writer.beginArray();
+            for (Object item : (Collection<?>) value) {
+                writeValue(item);
+            }
+            writer.endArray();
+        } else {
+            gson.toJson(value, value.getClass(), writer);
+        }
+    }
+}
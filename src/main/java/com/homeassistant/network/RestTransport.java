@@ -0,0 +1,102 @@
+package com.homeassistant.network;
+
+import com.homeassistant.HomeassistantConfig;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+import okio.ByteString;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Calls every service with its own POST to /api/services/runelite/{service}. Large bodies are gzipped when
+ * compression is turned on, see {@link PayloadCompression}.
+ */
+@Slf4j
+@Singleton
+public class RestTransport implements HomeassistantTransport {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final int UNSUPPORTED_MEDIA_TYPE = 415;
+
+    private final HomeassistantHttpClient httpClient;
+    private final HomeassistantConfig config;
+
+    // Set when homeassistant turned down a gzipped body, everything goes out uncompressed until the settings change
+    private volatile boolean compressionRejected = false;
+
+    @Inject
+    public RestTransport(HomeassistantHttpClient httpClient, HomeassistantConfig config) {
+        this.httpClient = httpClient;
+        this.config = config;
+    }
+
+    @Override
+    public void send(String service, ByteString jsonPayload, Consumer<Boolean> onDelivered) {
+        String homeAssistantUrl = config.homeassistantUrl();
+        String accessToken = config.homeassistantToken();
+
+        if (homeAssistantUrl.isEmpty() || accessToken.isEmpty()) {
+            log.warn("Home Assistant URL or Access Token not configured.");
+            // Nothing will arrive until it is configured, don't keep it around to retry
+            onDelivered.accept(true);
+            return;
+        }
+
+        String apiUrl = homeAssistantUrl + "/api" + String.format("/services/runelite/%s", service);
+        log.debug("Sending payload to home assistant, {}: {}", apiUrl, jsonPayload);
+        Request.Builder builder = new Request.Builder()
+                .url(Objects.requireNonNull(HttpUrl.parse(apiUrl)))
+                .header("Authorization", "Bearer " + accessToken)
+                .header("Content-Type", "application/json");
+        boolean compressed = config.compressRequests() && !compressionRejected && PayloadCompression.shouldCompress(jsonPayload);
+        if (compressed) {
+            builder.header("Content-Encoding", PayloadCompression.CONTENT_ENCODING)
+                    .post(RequestBody.create(JSON, PayloadCompression.gzip(jsonPayload)));
+        } else {
+            builder.post(RequestBody.create(JSON, jsonPayload));
+        }
+        Request request = builder.build();
+
+        httpClient.get().newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                log.error("Error submitting the entity to homeassistant ", e);
+                onDelivered.accept(false);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                int code = response.code();
+                boolean successful = response.isSuccessful();
+                response.close();
+
+                if (compressed && code == UNSUPPORTED_MEDIA_TYPE) {
+                    log.warn("Homeassistant does not accept compressed requests, sending them uncompressed");
+                    compressionRejected = true;
+                    onDelivered.accept(false);
+                    return;
+                }
+                // Homeassistant restarting behind a proxy answers with 502/503, those are worth retrying. Other errors would fail again.
+                if (code >= 500) {
+                    log.warn("Homeassistant responded with {} for {}", code, service);
+                    onDelivered.accept(false);
+                    return;
+                }
+                if (!successful) {
+                    log.error("Homeassistant rejected {} with code {}", service, code);
+                } else {
+                    log.debug("Successfully created/updated entity {}.", jsonPayload);
+                }
+                onDelivered.accept(true);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        compressionRejected = false;
+    }
+}
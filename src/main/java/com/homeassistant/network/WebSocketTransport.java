@@ -0,0 +1,289 @@
+package com.homeassistant.network;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+import com.homeassistant.HomeassistantConfig;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+import okio.ByteString;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Calls services over one long lived connection to /api/websocket. The token is only sent once when connecting and
+ * every update after that is a single `call_service` message on the same connection.
+ * Anything sent while the socket is not authenticated goes through the {@link RestTransport} instead.
+ * `onConnected` runs on OkHttp's thread every time the socket is authenticated.
+ * A call that got no result within {@link #RESULT_TIMEOUT_MS} fails, see {@link #failExpired()}.
+ */
+@Slf4j
+@Singleton
+public class WebSocketTransport implements HomeassistantTransport {
+    private static final long RECONNECT_DELAY_MS = 30_000L;
+    private static final int NORMAL_CLOSURE = 1000;
+    // Same as the in flight timeout of the flush scheduler
+    private static final long RESULT_TIMEOUT_MS = 30_000L;
+
+    private final HomeassistantHttpClient httpClient;
+    private final HomeassistantConfig config;
+    private final RestTransport restTransport;
+    private final Gson gson;
+
+    // In the order they were sent, which is the order of their deadlines
+    private final Map<Integer, PendingResult> pendingResults = new LinkedHashMap<>();
+
+    private WebSocket webSocket;
+    private boolean authenticated = false;
+    private int nextMessageId = 1;
+    private long nextConnectAttempt = 0L;
+    @Setter
+    private Runnable onConnected = () -> {};
+
+    private static final class PendingResult {
+        private final Consumer<Boolean> onDelivered;
+        private final long deadline;
+
+        private PendingResult(Consumer<Boolean> onDelivered, long deadline) {
+            this.onDelivered = onDelivered;
+            this.deadline = deadline;
+        }
+    }
+
+    @Inject
+    public WebSocketTransport(HomeassistantHttpClient httpClient, HomeassistantConfig config, RestTransport restTransport, Gson gson) {
+        this.httpClient = httpClient;
+        this.config = config;
+        this.restTransport = restTransport;
+        this.gson = gson;
+    }
+
+    @Override
+    public void send(String service, ByteString jsonPayload, Consumer<Boolean> onDelivered) {
+        synchronized (this) {
+            if (authenticated && webSocket != null) {
+                int id = nextMessageId++;
+                String message = callService(id, service, jsonPayload);
+                pendingResults.put(id, new PendingResult(onDelivered, System.currentTimeMillis() + RESULT_TIMEOUT_MS));
+                if (webSocket.send(message)) {
+                    log.debug("Sent {} over websocket with id {}", service, id);
+                    return;
+                }
+                pendingResults.remove(id);
+            }
+            connect();
+        }
+
+        restTransport.send(service, jsonPayload, onDelivered);
+    }
+
+    /**
+     * The call_service message. The payload is already serialized, so it goes in as it is instead of being parsed again.
+     */
+    private static String callService(int id, String service, ByteString jsonPayload) {
+        StringWriter message = new StringWriter(jsonPayload.size() + 96);
+        try (JsonWriter writer = new JsonWriter(message)) {
+            writer.beginObject();
+            writer.name("id").value(id);
+            writer.name("type").value("call_service");
+            writer.name("domain").value("runelite");
+            writer.name("service").value(service);
+            writer.name("service_data").jsonValue(jsonPayload.utf8());
+            writer.endObject();
+        } catch (IOException e) {
+            // A StringWriter doesn't throw
+            throw new UncheckedIOException(e);
+        }
+        return message.toString();
+    }
+
+    private void connect() {
+        if (webSocket != null || System.currentTimeMillis() < nextConnectAttempt) {
+            return;
+        }
+
+        String homeAssistantUrl = config.homeassistantUrl();
+        if (homeAssistantUrl.isEmpty() || config.homeassistantToken().isEmpty()) {
+            return;
+        }
+
+        // OkHttp only accepts http(s) urls and upgrades them itself
+        HttpUrl url = HttpUrl.parse(homeAssistantUrl + "/api/websocket");
+        if (url == null) {
+            log.warn("Invalid homeassistant url for websocket: {}", homeAssistantUrl);
+            nextConnectAttempt = System.currentTimeMillis() + RECONNECT_DELAY_MS;
+            return;
+        }
+
+        log.info("Connecting to the homeassistant websocket at {}", url);
+        nextMessageId = 1;
+        authenticated = false;
+        OkHttpClient client = httpClient.get().newBuilder()
+                .pingInterval(30, TimeUnit.SECONDS)
+                .build();
+        webSocket = client.newWebSocket(new Request.Builder().url(url).build(), new Listener());
+    }
+
+    /**
+     * Fails the calls homeassistant didn't answer in time, so the outbound queue sends them again. A result that
+     * still comes in after that is ignored. Called every game tick.
+     */
+    public void failExpired() {
+        List<Consumer<Boolean>> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            Iterator<PendingResult> pending = pendingResults.values().iterator();
+            while (pending.hasNext()) {
+                PendingResult result = pending.next();
+                if (result.deadline > now) {
+                    break;
+                }
+                pending.remove();
+                expired.add(result.onDelivered);
+            }
+        }
+
+        if (!expired.isEmpty()) {
+            log.warn("No result for {} websocket call(s) within {} ms", expired.size(), RESULT_TIMEOUT_MS);
+        }
+        for (Consumer<Boolean> onDelivered : expired) {
+            onDelivered.accept(false);
+        }
+    }
+
+    @Override
+    public void close() {
+        WebSocket socket;
+        synchronized (this) {
+            socket = webSocket;
+        }
+        disconnected(socket);
+        synchronized (this) {
+            nextConnectAttempt = 0L;
+        }
+        if (socket != null) {
+            socket.close(NORMAL_CLOSURE, null);
+        }
+    }
+
+    private void disconnected(WebSocket socket) {
+        List<Consumer<Boolean>> unanswered;
+        synchronized (this) {
+            if (socket == null || socket != webSocket) {
+                return;
+            }
+
+            webSocket = null;
+            authenticated = false;
+            nextConnectAttempt = System.currentTimeMillis() + RECONNECT_DELAY_MS;
+
+            unanswered = new ArrayList<>(pendingResults.size());
+            for (PendingResult result : pendingResults.values()) {
+                unanswered.add(result.onDelivered);
+            }
+            pendingResults.clear();
+        }
+
+        // Nothing will answer these anymore, let the outbound queue retry them
+        for (Consumer<Boolean> onDelivered : unanswered) {
+            onDelivered.accept(false);
+        }
+    }
+
+    private class Listener extends WebSocketListener {
+        @Override
+        public void onMessage(WebSocket socket, String text) {
+            JsonObject message;
+            try {
+                message = gson.fromJson(text, JsonObject.class);
+            } catch (JsonParseException e) {
+                log.warn("Unreadable websocket message from homeassistant: {}", text);
+                return;
+            }
+
+            String type = message.has("type") ? message.get("type").getAsString() : "";
+            switch (type) {
+                case "auth_required":
+                    JsonObject auth = new JsonObject();
+                    auth.addProperty("type", "auth");
+                    auth.addProperty("access_token", config.homeassistantToken());
+                    socket.send(auth.toString());
+                    break;
+                case "auth_ok":
+                    synchronized (WebSocketTransport.this) {
+                        if (socket == webSocket) {
+                            authenticated = true;
+                        }
+                    }
+                    log.info("Authenticated with the homeassistant websocket");
+                    onConnected.run();
+                    break;
+                case "auth_invalid":
+                    log.error("Homeassistant websocket rejected the access token, using REST instead");
+                    disconnected(socket);
+                    socket.close(NORMAL_CLOSURE, null);
+                    break;
+                case "result":
+                    onResult(message);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void onResult(JsonObject message) {
+            JsonElement id = message.get("id");
+            if (id == null || !id.isJsonPrimitive() || !id.getAsJsonPrimitive().isNumber()) {
+                log.debug("Websocket result without an id: {}", message);
+                return;
+            }
+
+            PendingResult result;
+            synchronized (WebSocketTransport.this) {
+                result = pendingResults.remove(id.getAsInt());
+            }
+            if (result == null) {
+                // Answered after it expired, or not one of ours
+                return;
+            }
+
+            JsonElement success = message.get("success");
+            if (success == null || !success.isJsonPrimitive() || !success.getAsBoolean()) {
+                // Same as a 4xx over REST, sending it again would fail again
+                log.error("Homeassistant rejected a websocket call: {}", message.get("error"));
+            }
+            result.onDelivered.accept(true);
+        }
+
+        @Override
+        public void onClosing(WebSocket socket, int code, String reason) {
+            socket.close(NORMAL_CLOSURE, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket socket, int code, String reason) {
+            log.info("Homeassistant websocket closed: {} {}", code, reason);
+            disconnected(socket);
+        }
+
+        @Override
+        public void onFailure(WebSocket socket, Throwable t, Response response) {
+            log.warn("Homeassistant websocket failed, using REST until it reconnects: {}", t.getMessage());
+            disconnected(socket);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.homeassistant.overlays;
+
+import com.homeassistant.HomeassistantConfig;
+import com.homeassistant.classes.TickMetrics;
+import net.runelite.client.ui.overlay.OverlayPanel;
+import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.components.LineComponent;
+import net.runelite.client.ui.overlay.components.TitleComponent;
+
+import javax.inject.Inject;
+import java.awt.*;
+
+/**
+ * Shows p50 / p99 / max per tracker of the last metrics window, in microseconds.
+ */
+public class MetricsOverlay extends OverlayPanel
+{
+    private final HomeassistantConfig config;
+    private final TickMetrics tickMetrics;
+
+    @Inject
+    public MetricsOverlay(HomeassistantConfig config, TickMetrics tickMetrics)
+    {
+        this.config = config;
+        this.tickMetrics = tickMetrics;
+
+        setPosition(OverlayPosition.TOP_LEFT);
+    }
+
+    @Override
+    public Dimension render(Graphics2D graphics)
+    {
+        if (!config.pluginMetricsOverlay())
+        {
+            return null;
+        }
+
+        panelComponent.getChildren().add(TitleComponent.builder()
+                .text("Homeassistant p50 / p99 / max us")
+                .build());
+
+        TickMetrics.Snapshot[] snapshots = tickMetrics.getSnapshots();
+        if (snapshots.length == 0)
+        {
+            panelComponent.getChildren().add(LineComponent.builder()
+                    .left("Collecting...")
+                    .build());
+        }
+        for (TickMetrics.Snapshot snapshot : snapshots)
+        {
+            panelComponent.getChildren().add(LineComponent.builder()
+                    .left(snapshot.getSection().getName())
+                    .right(String.format("%d / %d / %d", snapshot.getP50() / 1000, snapshot.getP99() / 1000, snapshot.getMax() / 1000))
+                    .build());
+        }
+
+        return super.render(graphics);
+    }
+}
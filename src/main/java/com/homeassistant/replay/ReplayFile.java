@@ -0,0 +1,422 @@
+package com.homeassistant.replay;
+
+import net.runelite.api.ChatMessageType;
+import net.runelite.api.GameState;
+import net.runelite.api.Skill;
+import net.runelite.api.events.ChatMessage;
+import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.VarbitChanged;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Binary format of a recorded session. A gzipped stream of records, each a type byte followed by varints and strings.
+ * Game ticks only store the client values that changed since the previous tick, see {@link Frame}.
+ * Skills, game states and chat types are stored by their id and not their ordinal, so recordings survive RuneLite
+ * reordering those enums. Version 1 recordings have no real skill levels, they are read as the boosted ones.
+ */
+public final class ReplayFile {
+    public static final int MAGIC = 0x48415250; // "HARP"
+    public static final int VERSION = 2;
+
+    static final int SNAPSHOT = 1;
+    static final int GAME_TICK = 2;
+    static final int VARBIT_CHANGED = 3;
+    static final int CHAT_MESSAGE = 4;
+    static final int GAME_STATE_CHANGED = 5;
+
+    // Fields of a frame that changed, written before the changed values
+    private static final int TICK_COUNT = 1;
+    private static final int WORLD = 1 << 1;
+    private static final int ENERGY = 1 << 2;
+    private static final int PLAYER_NAME = 1 << 3;
+    private static final int LOCATION = 1 << 4;
+    private static final int ANIMATION = 1 << 5;
+    private static final int POSE_ANIMATION = 1 << 6;
+    private static final int IDLE_POSE_ANIMATION = 1 << 7;
+    private static final int INTERACTING = 1 << 8;
+    private static final int SKILLS = 1 << 9;
+    private static final int REAL_SKILLS = 1 << 10;
+
+    private static final Skill[] SKILL_VALUES = Skill.values();
+
+    private ReplayFile() {
+    }
+
+    /**
+     * The client values the trackers read during a game tick.
+     */
+    public static final class Frame {
+        public int tickCount;
+        public int world;
+        public int energy;
+        // null while there is no local player
+        public String playerName;
+        public int x;
+        public int y;
+        public int plane;
+        public int animation = -1;
+        public int poseAnimation = -1;
+        public int idlePoseAnimation = -1;
+        public boolean interacting;
+        // Indexed by Skill.ordinal()
+        public final int[] boostedSkills = new int[SKILL_VALUES.length];
+        public final int[] realSkills = new int[SKILL_VALUES.length];
+
+        public Frame copy() {
+            Frame copy = new Frame();
+            copy.copyFrom(this);
+            return copy;
+        }
+
+        void copyFrom(Frame other) {
+            tickCount = other.tickCount;
+            world = other.world;
+            energy = other.energy;
+            playerName = other.playerName;
+            x = other.x;
+            y = other.y;
+            plane = other.plane;
+            animation = other.animation;
+            poseAnimation = other.poseAnimation;
+            idlePoseAnimation = other.idlePoseAnimation;
+            interacting = other.interacting;
+            System.arraycopy(other.boostedSkills, 0, boostedSkills, 0, boostedSkills.length);
+            System.arraycopy(other.realSkills, 0, realSkills, 0, realSkills.length);
+        }
+    }
+
+    /**
+     * Receives the records of a recording in order. The frame passed to onGameTick is reused, copy it to keep it.
+     */
+    public interface Visitor {
+        default void onSnapshot(int[] varps, int[] varbitIds, int[] varbitValues) {
+        }
+
+        default void onGameTick(Frame frame) {
+        }
+
+        default void onVarbitChanged(VarbitChanged event) {
+        }
+
+        default void onChatMessage(ChatMessage event) {
+        }
+
+        default void onGameStateChanged(GameStateChanged event) {
+        }
+    }
+
+    /**
+     * Writes a recording, not thread safe.
+     */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final Frame previous = new Frame();
+        private boolean firstTick = true;
+
+        public Writer(OutputStream outputStream) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(outputStream)));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        /**
+         * The varps and the given varbits as they were when the recording started.
+         */
+        public void writeSnapshot(int[] varps, int[] varbitIds, int[] varbitValues) throws IOException {
+            out.writeByte(SNAPSHOT);
+            writeVarInt(out, varps.length);
+            for (int varp : varps) {
+                writeVarInt(out, varp);
+            }
+            writeVarInt(out, varbitIds.length);
+            for (int i = 0; i < varbitIds.length; i++) {
+                writeVarInt(out, varbitIds[i]);
+                writeVarInt(out, varbitValues[i]);
+            }
+        }
+
+        public void writeGameTick(Frame frame) throws IOException {
+            int changed = firstTick ? ~0 : changedFields(frame);
+            firstTick = false;
+
+            out.writeByte(GAME_TICK);
+            writeVarInt(out, changed);
+            if ((changed & TICK_COUNT) != 0) {
+                writeVarInt(out, frame.tickCount);
+            }
+            if ((changed & WORLD) != 0) {
+                writeVarInt(out, frame.world);
+            }
+            if ((changed & ENERGY) != 0) {
+                writeVarInt(out, frame.energy);
+            }
+            if ((changed & PLAYER_NAME) != 0) {
+                writeString(out, frame.playerName);
+            }
+            if ((changed & LOCATION) != 0) {
+                writeVarInt(out, frame.x);
+                writeVarInt(out, frame.y);
+                writeVarInt(out, frame.plane);
+            }
+            if ((changed & ANIMATION) != 0) {
+                writeVarInt(out, frame.animation);
+            }
+            if ((changed & POSE_ANIMATION) != 0) {
+                writeVarInt(out, frame.poseAnimation);
+            }
+            if ((changed & IDLE_POSE_ANIMATION) != 0) {
+                writeVarInt(out, frame.idlePoseAnimation);
+            }
+            if ((changed & INTERACTING) != 0) {
+                out.writeBoolean(frame.interacting);
+            }
+            if ((changed & SKILLS) != 0) {
+                writeSkills(frame.boostedSkills, previous.boostedSkills, changed == ~0);
+            }
+            if ((changed & REAL_SKILLS) != 0) {
+                writeSkills(frame.realSkills, previous.realSkills, changed == ~0);
+            }
+            previous.copyFrom(frame);
+        }
+
+        private void writeSkills(int[] levels, int[] previousLevels, boolean all) throws IOException {
+            int count = 0;
+            for (int i = 0; i < SKILL_VALUES.length; i++) {
+                if (levels[i] != previousLevels[i] || all) {
+                    count++;
+                }
+            }
+            writeVarInt(out, count);
+            for (int i = 0; i < SKILL_VALUES.length; i++) {
+                if (levels[i] != previousLevels[i] || all) {
+                    writeString(out, SKILL_VALUES[i].getName());
+                    writeVarInt(out, levels[i]);
+                }
+            }
+        }
+
+        public void writeVarbitChanged(VarbitChanged event) throws IOException {
+            out.writeByte(VARBIT_CHANGED);
+            writeVarInt(out, event.getVarpId());
+            writeVarInt(out, event.getVarbitId());
+            writeVarInt(out, event.getValue());
+        }
+
+        public void writeChatMessage(ChatMessage event) throws IOException {
+            out.writeByte(CHAT_MESSAGE);
+            writeVarInt(out, event.getType().getType());
+            writeString(out, event.getName());
+            writeString(out, event.getMessage());
+            writeString(out, event.getSender());
+            writeVarInt(out, event.getTimestamp());
+        }
+
+        public void writeGameStateChanged(GameStateChanged event) throws IOException {
+            out.writeByte(GAME_STATE_CHANGED);
+            writeVarInt(out, event.getGameState().getState());
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private int changedFields(Frame frame) {
+            int changed = 0;
+            if (frame.tickCount != previous.tickCount) {
+                changed |= TICK_COUNT;
+            }
+            if (frame.world != previous.world) {
+                changed |= WORLD;
+            }
+            if (frame.energy != previous.energy) {
+                changed |= ENERGY;
+            }
+            if (!Objects.equals(frame.playerName, previous.playerName)) {
+                changed |= PLAYER_NAME;
+            }
+            if (frame.x != previous.x || frame.y != previous.y || frame.plane != previous.plane) {
+                changed |= LOCATION;
+            }
+            if (frame.animation != previous.animation) {
+                changed |= ANIMATION;
+            }
+            if (frame.poseAnimation != previous.poseAnimation) {
+                changed |= POSE_ANIMATION;
+            }
+            if (frame.idlePoseAnimation != previous.idlePoseAnimation) {
+                changed |= IDLE_POSE_ANIMATION;
+            }
+            if (frame.interacting != previous.interacting) {
+                changed |= INTERACTING;
+            }
+            if (!Arrays.equals(frame.boostedSkills, previous.boostedSkills)) {
+                changed |= SKILLS;
+            }
+            if (!Arrays.equals(frame.realSkills, previous.realSkills)) {
+                changed |= REAL_SKILLS;
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Reads a whole recording into `visitor`.
+     */
+    public static void read(InputStream inputStream, Visitor visitor) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(inputStream)));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a replay file");
+        }
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+
+        Frame frame = new Frame();
+        int type;
+        while ((type = in.read()) != -1) {
+            switch (type) {
+                case SNAPSHOT:
+                    int[] varps = new int[readVarInt(in)];
+                    for (int i = 0; i < varps.length; i++) {
+                        varps[i] = readVarInt(in);
+                    }
+                    int varbitCount = readVarInt(in);
+                    int[] varbitIds = new int[varbitCount];
+                    int[] varbitValues = new int[varbitCount];
+                    for (int i = 0; i < varbitCount; i++) {
+                        varbitIds[i] = readVarInt(in);
+                        varbitValues[i] = readVarInt(in);
+                    }
+                    visitor.onSnapshot(varps, varbitIds, varbitValues);
+                    break;
+                case GAME_TICK:
+                    readFrame(in, frame, version);
+                    visitor.onGameTick(frame);
+                    break;
+                case VARBIT_CHANGED:
+                    VarbitChanged varbitChanged = new VarbitChanged();
+                    varbitChanged.setVarpId(readVarInt(in));
+                    varbitChanged.setVarbitId(readVarInt(in));
+                    varbitChanged.setValue(readVarInt(in));
+                    visitor.onVarbitChanged(varbitChanged);
+                    break;
+                case CHAT_MESSAGE:
+                    ChatMessage chatMessage = new ChatMessage();
+                    chatMessage.setType(ChatMessageType.of(readVarInt(in)));
+                    chatMessage.setName(readString(in));
+                    chatMessage.setMessage(readString(in));
+                    chatMessage.setSender(readString(in));
+                    chatMessage.setTimestamp(readVarInt(in));
+                    visitor.onChatMessage(chatMessage);
+                    break;
+                case GAME_STATE_CHANGED:
+                    GameStateChanged gameStateChanged = new GameStateChanged();
+                    gameStateChanged.setGameState(GameState.of(readVarInt(in)));
+                    visitor.onGameStateChanged(gameStateChanged);
+                    break;
+                default:
+                    throw new IOException("Unknown replay record " + type);
+            }
+        }
+    }
+
+    private static void readFrame(DataInputStream in, Frame frame, int version) throws IOException {
+        int changed = readVarInt(in);
+        if ((changed & TICK_COUNT) != 0) {
+            frame.tickCount = readVarInt(in);
+        }
+        if ((changed & WORLD) != 0) {
+            frame.world = readVarInt(in);
+        }
+        if ((changed & ENERGY) != 0) {
+            frame.energy = readVarInt(in);
+        }
+        if ((changed & PLAYER_NAME) != 0) {
+            frame.playerName = readString(in);
+        }
+        if ((changed & LOCATION) != 0) {
+            frame.x = readVarInt(in);
+            frame.y = readVarInt(in);
+            frame.plane = readVarInt(in);
+        }
+        if ((changed & ANIMATION) != 0) {
+            frame.animation = readVarInt(in);
+        }
+        if ((changed & POSE_ANIMATION) != 0) {
+            frame.poseAnimation = readVarInt(in);
+        }
+        if ((changed & IDLE_POSE_ANIMATION) != 0) {
+            frame.idlePoseAnimation = readVarInt(in);
+        }
+        if ((changed & INTERACTING) != 0) {
+            frame.interacting = in.readBoolean();
+        }
+        if ((changed & SKILLS) != 0) {
+            readSkills(in, frame.boostedSkills);
+            if (version == 1) {
+                System.arraycopy(frame.boostedSkills, 0, frame.realSkills, 0, frame.realSkills.length);
+            }
+        }
+        if ((changed & REAL_SKILLS) != 0 && version >= 2) {
+            readSkills(in, frame.realSkills);
+        }
+    }
+
+    private static void readSkills(DataInputStream in, int[] levels) throws IOException {
+        int count = readVarInt(in);
+        for (int i = 0; i < count; i++) {
+            String name = readString(in);
+            int level = readVarInt(in);
+            for (Skill skill : SKILL_VALUES) {
+                if (skill.getName().equals(name)) {
+                    levels[skill.ordinal()] = level;
+                    break;
+                }
+            }
+        }
+    }
+
+    // Zigzag encoded so the -1 ids and animations stay one byte
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7F) != 0) {
+            out.writeByte((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        out.writeByte(zigzag);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int zigzag = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigzag |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,205 @@
+package com.homeassistant.replay;
+
+import com.homeassistant.HomeassistantConfig;
+import com.homeassistant.trackers.VarbitTracker;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.Player;
+import net.runelite.api.Skill;
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.events.ChatMessage;
+import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.GameTick;
+import net.runelite.api.events.VarbitChanged;
+import net.runelite.client.RuneLite;
+import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Records the events the trackers consume, and the client values they read every tick, to a {@link ReplayFile} in
+ * .runelite/homeassistant-replays while the record_replay option is on. Subscribed before the trackers so the records
+ * are in the order the trackers saw them.
+ */
+@Slf4j
+@Singleton
+public class ReplayRecorder {
+    private static final File REPLAY_DIR = new File(RuneLite.RUNELITE_DIR, "homeassistant-replays");
+    private static final Skill[] SKILLS = Skill.values();
+
+    private final Client client;
+    private final HomeassistantConfig config;
+    private final VarbitTracker varbitTracker;
+
+    private final ReplayFile.Frame frame = new ReplayFile.Frame();
+    private ReplayFile.Writer writer;
+    private boolean snapshotPending;
+
+    @Inject
+    public ReplayRecorder(Client client, HomeassistantConfig config, VarbitTracker varbitTracker) {
+        this.client = client;
+        this.config = config;
+        this.varbitTracker = varbitTracker;
+    }
+
+    /**
+     * Starts recording when the option is on, called by the plugin on startup.
+     */
+    public void startIfEnabled() {
+        if (config.recordReplay()) {
+            start();
+        }
+    }
+
+    public synchronized void start() {
+        if (writer != null) {
+            return;
+        }
+
+        File file = new File(REPLAY_DIR, "replay-" + System.currentTimeMillis() + ".bin.gz");
+        try {
+            REPLAY_DIR.mkdirs();
+            writer = new ReplayFile.Writer(new FileOutputStream(file));
+            // The client is only read on the client thread, the first tick writes the snapshot
+            snapshotPending = true;
+            log.info("Recording replay to {}", file);
+        } catch (IOException e) {
+            log.warn("Could not start recording a replay to {}", file, e);
+        }
+    }
+
+    public synchronized void stop() {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Could not finish the replay recording", e);
+        }
+        writer = null;
+        log.info("Stopped recording replay");
+    }
+
+    @Subscribe
+    public void onConfigChanged(ConfigChanged event) {
+        if (!event.getGroup().equals(HomeassistantConfig.CONFIG_GROUP) || !event.getKey().equals("record_replay")) {
+            return;
+        }
+
+        if (config.recordReplay()) {
+            start();
+        } else {
+            stop();
+        }
+    }
+
+    @Subscribe(priority = 2)
+    public synchronized void onGameTick(GameTick event) {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            if (snapshotPending && client.getGameState() == GameState.LOGGED_IN) {
+                snapshotPending = false;
+                writeSnapshot();
+            }
+
+            readFrame();
+            writer.writeGameTick(frame);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    @Subscribe(priority = 2)
+    public synchronized void onVarbitChanged(VarbitChanged event) {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.writeVarbitChanged(event);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    @Subscribe(priority = 2)
+    public synchronized void onChatMessage(ChatMessage event) {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.writeChatMessage(event);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    @Subscribe(priority = 2)
+    public synchronized void onGameStateChanged(GameStateChanged event) {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.writeGameStateChanged(event);
+            // Keeps what was recorded so far readable if the client is closed without stopping
+            writer.flush();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void writeSnapshot() throws IOException {
+        int[] varbitIds = varbitTracker.getWatchedVarbitIds();
+        int[] varbitValues = new int[varbitIds.length];
+        for (int i = 0; i < varbitIds.length; i++) {
+            varbitValues[i] = client.getVarbitValue(varbitIds[i]);
+        }
+        writer.writeSnapshot(client.getVarps(), varbitIds, varbitValues);
+    }
+
+    private void readFrame() {
+        frame.tickCount = client.getTickCount();
+        frame.world = client.getWorld();
+        frame.energy = client.getEnergy();
+        for (Skill skill : SKILLS) {
+            frame.boostedSkills[skill.ordinal()] = client.getBoostedSkillLevel(skill);
+            frame.realSkills[skill.ordinal()] = client.getRealSkillLevel(skill);
+        }
+
+        Player player = client.getLocalPlayer();
+        if (player == null) {
+            frame.playerName = null;
+            return;
+        }
+
+        frame.playerName = player.getName();
+        WorldPoint location = player.getWorldLocation();
+        if (location != null) {
+            frame.x = location.getX();
+            frame.y = location.getY();
+            frame.plane = location.getPlane();
+        }
+        frame.animation = player.getAnimation();
+        frame.poseAnimation = player.getPoseAnimation();
+        frame.idlePoseAnimation = player.getIdlePoseAnimation();
+        frame.interacting = player.getInteracting() != null;
+    }
+
+    private void failed(IOException e) {
+        log.warn("Writing the replay failed, stopped recording", e);
+        stop();
+    }
+}
@@ -0,0 +1,132 @@
+package com.homeassistant.runelite.farming;
+
+import lombok.RequiredArgsConstructor;
+import net.runelite.client.config.ConfigManager;
+import net.runelite.client.plugins.timetracking.TimeTrackingConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed copy of the timetracking config of every profile, so predicting all patches of several accounts doesn't go
+ * through ConfigManager for every patch and every tick time. Not part of the upstream copy, {@link FarmingTracker}
+ * reads through it and the plugin invalidates it on ConfigChanged.
+ */
+@RequiredArgsConstructor
+class FarmingProfileCache
+{
+	private final ConfigManager configManager;
+
+	private final Map<String, Profile> profiles = new ConcurrentHashMap<>();
+
+	Profile get(String profile)
+	{
+		return profiles.computeIfAbsent(profile, this::load);
+	}
+
+	/**
+	 * Drops the cached config of one profile, or of every profile when it is null.
+	 */
+	void invalidate(String profile)
+	{
+		if (profile == null)
+		{
+			profiles.clear();
+		}
+		else
+		{
+			profiles.remove(profile);
+		}
+	}
+
+	private Profile load(String profile)
+	{
+		boolean autoweed = Integer.toString(Autoweed.ON.ordinal())
+			.equals(configManager.getConfiguration(TimeTrackingConfig.CONFIG_GROUP, profile, TimeTrackingConfig.AUTOWEED));
+		Integer offsetPrecisionMins = configManager.getConfiguration(TimeTrackingConfig.CONFIG_GROUP, profile, TimeTrackingConfig.FARM_TICK_OFFSET_PRECISION, int.class);
+		Integer offsetTimeMins = configManager.getConfiguration(TimeTrackingConfig.CONFIG_GROUP, profile, TimeTrackingConfig.FARM_TICK_OFFSET, int.class);
+
+		return new Profile(profile, autoweed, offsetPrecisionMins, offsetTimeMins);
+	}
+
+	/**
+	 * The stored varbit value of a patch and when it was seen, {@code unixTime} is 0 when nothing usable is stored.
+	 */
+	@RequiredArgsConstructor
+	static final class StoredPatch
+	{
+		static final StoredPatch UNKNOWN = new StoredPatch(0, 0L);
+
+		final int value;
+		final long unixTime;
+	}
+
+	final class Profile
+	{
+		final boolean autoweed;
+		final boolean hasOffset;
+		final int offsetPrecisionMins;
+		final int offsetTimeMins;
+
+		private final String key;
+		private final Map<FarmingPatch, StoredPatch> patches = new ConcurrentHashMap<>();
+		private final Map<FarmingPatch, Boolean> notify = new ConcurrentHashMap<>();
+
+		private Profile(String key, boolean autoweed, Integer offsetPrecisionMins, Integer offsetTimeMins)
+		{
+			this.key = key;
+			this.autoweed = autoweed;
+			this.hasOffset = offsetPrecisionMins != null && offsetTimeMins != null;
+			this.offsetPrecisionMins = hasOffset ? offsetPrecisionMins : 0;
+			this.offsetTimeMins = hasOffset ? offsetTimeMins : 0;
+		}
+
+		/**
+		 * Same offset as upstream getTickTime, in seconds, for a patch growing every {@code tickRate} minutes.
+		 */
+		long offsetSeconds(int tickRate)
+		{
+			//All offsets are negative but are stored as positive
+			if (hasOffset && (offsetPrecisionMins >= tickRate || offsetPrecisionMins >= 40))
+			{
+				return (offsetTimeMins % tickRate) * 60L;
+			}
+			return 0L;
+		}
+
+		StoredPatch getPatch(FarmingPatch patch)
+		{
+			return patches.computeIfAbsent(patch, this::loadPatch);
+		}
+
+		boolean shouldNotify(FarmingPatch patch)
+		{
+			return notify.computeIfAbsent(patch, p -> Boolean.TRUE
+				.equals(configManager.getConfiguration(TimeTrackingConfig.CONFIG_GROUP, key, p.notifyConfigKey(), Boolean.class)));
+		}
+
+		private StoredPatch loadPatch(FarmingPatch patch)
+		{
+			String storedValue = configManager.getConfiguration(TimeTrackingConfig.CONFIG_GROUP, key, patch.configKey());
+			if (storedValue == null)
+			{
+				return StoredPatch.UNKNOWN;
+			}
+
+			String[] parts = storedValue.split(":");
+			if (parts.length != 2)
+			{
+				return StoredPatch.UNKNOWN;
+			}
+
+			try
+			{
+				return new StoredPatch(Integer.parseInt(parts[0]), Long.parseLong(parts[1]));
+			}
+			catch (NumberFormatException e)
+			{
+				return StoredPatch.UNKNOWN;
+			}
+		}
+	}
+}
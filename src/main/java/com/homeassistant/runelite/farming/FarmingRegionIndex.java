@@ -0,0 +1,162 @@
+package com.homeassistant.runelite.farming;
+
+import com.google.common.collect.Multimap;
+import net.runelite.api.coords.WorldPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Region id to farming region lookup for {@link FarmingWorld#getRegionsForLocation}. Region ids are kept in an open
+ * addressing int table, and every combination of in-bounds regions of a region id is precomputed. Region ids that end
+ * up with the same set of regions share one array, so the same location, or any other location with the same regions,
+ * returns the same array instance and callers can check for a region change by identity. Only a region id with more
+ * than eight candidates would build a new array per call, none has. Not part of the upstream copy.
+ */
+final class FarmingRegionIndex
+{
+	static final FarmingRegion[] NONE = new FarmingRegion[0];
+
+	// Buckets with more candidates than this build their arrays per call, no region id comes close
+	private static final int MAX_PRECOMPUTED_CANDIDATES = 8;
+
+	private final int mask;
+	private final int[] keys;
+	private final Bucket[] buckets;
+
+	private volatile Last last;
+
+	private static final class Bucket
+	{
+		private final FarmingRegion[] candidates;
+		// Indexed by the bit mask of the candidates that are in bounds
+		private final FarmingRegion[][] results;
+
+		private Bucket(FarmingRegion[] candidates, Map<Set<FarmingRegion>, FarmingRegion[]> shared)
+		{
+			this.candidates = candidates;
+			if (candidates.length > MAX_PRECOMPUTED_CANDIDATES)
+			{
+				this.results = null;
+				return;
+			}
+
+			this.results = new FarmingRegion[1 << candidates.length][];
+			for (int inBounds = 0; inBounds < results.length; inBounds++)
+			{
+				FarmingRegion[] selected = select(candidates, inBounds);
+				results[inBounds] = shared.computeIfAbsent(new HashSet<>(Arrays.asList(selected)), regions -> selected);
+			}
+		}
+
+		private FarmingRegion[] get(WorldPoint location)
+		{
+			if (results == null)
+			{
+				List<FarmingRegion> selected = new ArrayList<>(candidates.length);
+				for (FarmingRegion region : candidates)
+				{
+					if (region.isInBounds(location))
+					{
+						selected.add(region);
+					}
+				}
+				return selected.toArray(NONE);
+			}
+
+			int inBounds = 0;
+			for (int i = 0; i < candidates.length; i++)
+			{
+				if (candidates[i].isInBounds(location))
+				{
+					inBounds |= 1 << i;
+				}
+			}
+			return results[inBounds];
+		}
+
+		private static FarmingRegion[] select(FarmingRegion[] candidates, int inBounds)
+		{
+			if (inBounds == 0)
+			{
+				return NONE;
+			}
+
+			FarmingRegion[] selected = new FarmingRegion[Integer.bitCount(inBounds)];
+			int next = 0;
+			for (int i = 0; i < candidates.length; i++)
+			{
+				if ((inBounds & (1 << i)) != 0)
+				{
+					selected[next++] = candidates[i];
+				}
+			}
+			return selected;
+		}
+	}
+
+	private static final class Last
+	{
+		private final WorldPoint location;
+		private final FarmingRegion[] regions;
+
+		private Last(WorldPoint location, FarmingRegion[] regions)
+		{
+			this.location = location;
+			this.regions = regions;
+		}
+	}
+
+	FarmingRegionIndex(Multimap<Integer, FarmingRegion> regions)
+	{
+		int capacity = Integer.highestOneBit(Math.max(regions.keySet().size(), 1) * 2 - 1) << 1;
+		this.mask = capacity - 1;
+		this.keys = new int[capacity];
+		this.buckets = new Bucket[capacity];
+
+		// One array per distinct set of regions, whichever region id or order of candidates produced it
+		Map<Set<FarmingRegion>, FarmingRegion[]> shared = new HashMap<>();
+		shared.put(new HashSet<>(), NONE);
+		for (Integer regionId : regions.keySet())
+		{
+			Collection<FarmingRegion> candidates = regions.get(regionId);
+			int slot = slot(regionId);
+			keys[slot] = regionId;
+			buckets[slot] = new Bucket(candidates.toArray(NONE), shared);
+		}
+	}
+
+	/**
+	 * The regions whose varbits are sent at the location. Never modify the returned array.
+	 */
+	FarmingRegion[] getRegions(WorldPoint location)
+	{
+		Last previous = last;
+		if (previous != null && previous.location.equals(location))
+		{
+			return previous.regions;
+		}
+
+		Bucket bucket = buckets[slot(location.getRegionID())];
+		FarmingRegion[] regions = bucket == null ? NONE : bucket.get(location);
+		last = new Last(location, regions);
+		return regions;
+	}
+
+	// Linear probing, returns the slot of the key or the empty slot it belongs in
+	private int slot(int regionId)
+	{
+		int slot = (regionId * 0x9E3779B9 >>> 16) & mask;
+		while (buckets[slot] != null && keys[slot] != regionId)
+		{
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+}
@@ -92,12 +92,14 @@ public class FarmingTracker
 	private Map<Tab, Set<FarmingPatch>> customizedTabData = null;
 
 	private boolean newRegionLoaded;
-	private Collection<FarmingRegion> lastRegions;
+	private FarmingRegion[] lastRegions;
 	private boolean firstNotifyCheck = true;
 
 	@Setter
 	private boolean ignoreFarmingGuild = false;
 
+	private FarmingProfileCache profileCache;
+
 	public FarmingTabPanel createTabPanel(Tab tab, FarmingContractManager farmingContractManager)
 	{
 		return new FarmingTabPanel(this, compostTracker, paymentTracker, itemManager, configManager, config, farmingWorld.getTabs().get(tab), farmingContractManager);
@@ -128,12 +130,12 @@ public class FarmingTracker
 			}
 		}
 
-		Collection<FarmingRegion> newRegions = farmingWorld.getRegionsForLocation(location);
+		FarmingRegion[] newRegions = farmingWorld.getRegionArrayForLocation(location);
 
-		if (!newRegions.equals(lastRegions))
+		if (newRegions != lastRegions)
 		{
 			newRegionLoaded = true;
-			log.debug("New region loaded. {} at {} ticks", newRegions.toString(), client.getTickCount());
+			log.debug("New region loaded. {} at {} ticks", Arrays.toString(newRegions), client.getTickCount());
 		}
 
 		for (FarmingRegion region : newRegions)
@@ -149,7 +151,7 @@ public class FarmingTracker
 				String strVarbit = Integer.toString(client.getVarbitValue(varbit));
 				String storedValue = configManager.getRSProfileConfiguration(TimeTrackingConfig.CONFIG_GROUP, key);
 
-				PatchState currentPatchState = patch.getImplementation().forVarbitValue(client.getVarbitValue(varbit));
+				PatchState currentPatchState = PatchStateTable.get(patch.getImplementation(), client.getVarbitValue(varbit));
 				if (currentPatchState == null)
 				{
 					continue;
@@ -178,7 +180,7 @@ public class FarmingTracker
 						}
 						else if (!newRegionLoaded && timeSinceModalClose > 1)
 						{
-							PatchState previousPatchState = patch.getImplementation().forVarbitValue(Integer.parseInt(parts[0]));
+							PatchState previousPatchState = PatchStateTable.get(patch.getImplementation(), Integer.parseInt(parts[0]));
 
 							if (previousPatchState == null)
 							{
@@ -299,42 +301,26 @@ public class FarmingTracker
 	@Nullable
 	public PatchPrediction predictPatch(FarmingPatch patch, String profile)
 	{
-		long unixNow = Instant.now().getEpochSecond();
-
-		boolean autoweed = Integer.toString(Autoweed.ON.ordinal())
-			.equals(configManager.getConfiguration(TimeTrackingConfig.CONFIG_GROUP, profile, TimeTrackingConfig.AUTOWEED));
+		return predictPatch(patch, getProfileCache().get(profile));
+	}
 
-		String key = patch.configKey();
-		String storedValue = configManager.getConfiguration(TimeTrackingConfig.CONFIG_GROUP, profile, key);
+	@Nullable
+	private PatchPrediction predictPatch(FarmingPatch patch, FarmingProfileCache.Profile profile)
+	{
+		long unixNow = Instant.now().getEpochSecond();
 
-		if (storedValue == null)
-		{
-			return null;
-		}
+		boolean autoweed = profile.autoweed;
 
-		long unixTime = 0;
-		int value = 0;
-		{
-			String[] parts = storedValue.split(":");
-			if (parts.length == 2)
-			{
-				try
-				{
-					value = Integer.parseInt(parts[0]);
-					unixTime = Long.parseLong(parts[1]);
-				}
-				catch (NumberFormatException e)
-				{
-				}
-			}
-		}
+		FarmingProfileCache.StoredPatch storedPatch = profile.getPatch(patch);
+		long unixTime = storedPatch.unixTime;
+		int value = storedPatch.value;
 
 		if (unixTime <= 0)
 		{
 			return null;
 		}
 
-		PatchState state = patch.getImplementation().forVarbitValue(value);
+		PatchState state = PatchStateTable.get(patch.getImplementation(), value);
 
 		if (state == null)
 		{
@@ -384,15 +370,13 @@ public class FarmingTracker
 
 	public long getTickTime(int tickRate, int ticks, long requestedTime, String profile)
 	{
-		Integer offsetPrecisionMins = configManager.getConfiguration(TimeTrackingConfig.CONFIG_GROUP, profile, TimeTrackingConfig.FARM_TICK_OFFSET_PRECISION, int.class);
-		Integer offsetTimeMins = configManager.getConfiguration(TimeTrackingConfig.CONFIG_GROUP, profile, TimeTrackingConfig.FARM_TICK_OFFSET, int.class);
+		return getTickTime(tickRate, ticks, requestedTime, getProfileCache().get(profile));
+	}
 
+	private long getTickTime(int tickRate, int ticks, long requestedTime, FarmingProfileCache.Profile profile)
+	{
 		//All offsets are negative but are stored as positive
-		long calculatedOffsetTime = 0L;
-		if (offsetPrecisionMins != null && offsetTimeMins != null && (offsetPrecisionMins >= tickRate || offsetPrecisionMins >= 40))
-		{
-			calculatedOffsetTime = (offsetTimeMins % tickRate) * 60;
-		}
+		long calculatedOffsetTime = profile.offsetSeconds(tickRate);
 
 		//Calculate "now" as +offset seconds in the future so we calculate the correct ticks
 		long unixNow = requestedTime + calculatedOffsetTime;
@@ -444,6 +428,7 @@ public class FarmingTracker
 	 */
 	public void updateCompletionTime()
 	{
+		FarmingProfileCache.Profile profile = getProfileCache().get(configManager.getRSProfileKey());
 		for (Map.Entry<Tab, Set<FarmingPatch>> tab : getTabData())
 		{
 			long extremumCompletionTime = config.preferSoonest() ? Long.MAX_VALUE : 0;
@@ -458,7 +443,7 @@ public class FarmingTracker
 					continue;
 				}
 
-				PatchPrediction prediction = predictPatch(patch);
+				PatchPrediction prediction = predictPatch(patch, profile);
 				if (prediction == null || prediction.getProduce().getItemID() < 0)
 				{
 					continue; // unknown state
@@ -549,8 +534,9 @@ public class FarmingTracker
 
 		for (RuneScapeProfile profile : rsProfiles)
 		{
-			Integer offsetPrecisionMins = configManager.getConfiguration(TimeTrackingConfig.CONFIG_GROUP, profile.getKey(), TimeTrackingConfig.FARM_TICK_OFFSET_PRECISION, int.class);
-			Integer offsetTimeMins = configManager.getConfiguration(TimeTrackingConfig.CONFIG_GROUP, profile.getKey(), TimeTrackingConfig.FARM_TICK_OFFSET, int.class);
+			FarmingProfileCache.Profile cachedProfile = getProfileCache().get(profile.getKey());
+			Integer offsetPrecisionMins = cachedProfile.hasOffset ? cachedProfile.offsetPrecisionMins : null;
+			Integer offsetTimeMins = cachedProfile.hasOffset ? cachedProfile.offsetTimeMins : null;
 
 			for (Map.Entry<Tab, Set<FarmingPatch>> tab : getTabData())
 			{
@@ -558,10 +544,8 @@ public class FarmingTracker
 				{
 					ProfilePatch profilePatch = new ProfilePatch(patch, profile.getKey());
 					boolean patchNotified = wasNotified.getOrDefault(profilePatch, false);
-					String configKey = patch.notifyConfigKey();
-					boolean shouldNotify = Boolean.TRUE
-						.equals(configManager.getConfiguration(TimeTrackingConfig.CONFIG_GROUP, profile.getKey(), configKey, Boolean.class));
-					PatchPrediction prediction = predictPatch(patch, profile.getKey());
+					boolean shouldNotify = cachedProfile.shouldNotify(patch);
+					PatchPrediction prediction = predictPatch(patch, cachedProfile);
 
 					if (prediction == null)
 					{
@@ -588,6 +572,23 @@ public class FarmingTracker
 		firstNotifyCheck = false;
 	}
 
+	/**
+	 * Drops the parsed timetracking config of a profile, or of all profiles when it is null, after it changed.
+	 */
+	public void invalidateProfileCache(@Nullable String profile)
+	{
+		getProfileCache().invalidate(profile);
+	}
+
+	private FarmingProfileCache getProfileCache()
+	{
+		if (profileCache == null)
+		{
+			profileCache = new FarmingProfileCache(configManager);
+		}
+		return profileCache;
+	}
+
 	private Set<Map.Entry<Tab, Set<FarmingPatch>>> getTabData() {
 		if (customizedTabData == null) {
 			customizedTabData = buildCustomTabData();
@@ -30,17 +30,18 @@ package com.homeassistant.runelite.farming;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
+import lombok.AccessLevel;
 import lombok.Getter;
 import net.runelite.api.NpcID;
 import net.runelite.api.Varbits;
 import net.runelite.api.coords.WorldPoint;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class FarmingWorld
 {
 	@SuppressWarnings("PMD.ImmutableField")
+	@Getter(AccessLevel.PACKAGE)
 	private Multimap<Integer, FarmingRegion> regions = HashMultimap.create();
 
 	@Getter
@@ -54,6 +55,8 @@ public class FarmingWorld
 	@Getter
 	private final FarmingRegion farmingGuildRegion;
 
+	private final FarmingRegionIndex regionIndex;
+
 	public FarmingWorld()
 	{
 		// Some of these patches get updated in multiple regions.
@@ -313,6 +316,7 @@ public class FarmingWorld
 
 		// Finalize
 		this.regions = Multimaps.unmodifiableMultimap(this.regions);
+		this.regionIndex = new FarmingRegionIndex(this.regions);
 		Map<Tab, Set<FarmingPatch>> umtabs = new TreeMap<>();
 		for (Map.Entry<Tab, Set<FarmingPatch>> e : tabs.entrySet())
 		{
@@ -338,8 +342,16 @@ public class FarmingWorld
 
 	Collection<FarmingRegion> getRegionsForLocation(WorldPoint location)
 	{
-		return this.regions.get(location.getRegionID()).stream()
-			.filter(region -> region.isInBounds(location))
-			.collect(Collectors.toSet());
+		// The array is shared, callers must not be able to write through to it
+		return Collections.unmodifiableList(Arrays.asList(getRegionArrayForLocation(location)));
+	}
+
+	/**
+	 * Same regions as {@link #getRegionsForLocation}, as a shared array that stays the same instance while the regions
+	 * don't change.
+	 */
+	FarmingRegion[] getRegionArrayForLocation(WorldPoint location)
+	{
+		return regionIndex.getRegions(location);
 	}
 }
@@ -0,0 +1,49 @@
+package com.homeassistant.runelite.farming;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link PatchImplementation#forVarbitValue} evaluated once for every 8 bit varbit value of every implementation.
+ * A lookup is an array index and returns a shared instance instead of a new PatchState, equal states of different
+ * implementations are the same instance. Not part of the upstream copy, values outside the table still go through
+ * forVarbitValue.
+ */
+final class PatchStateTable
+{
+	private static final int SIZE = 256;
+	private static final PatchState[][] STATES;
+
+	static
+	{
+		PatchImplementation[] implementations = PatchImplementation.values();
+		Map<PatchState, PatchState> interned = new HashMap<>();
+
+		STATES = new PatchState[implementations.length][];
+		for (PatchImplementation implementation : implementations)
+		{
+			PatchState[] states = new PatchState[SIZE];
+			for (int value = 0; value < SIZE; value++)
+			{
+				PatchState state = implementation.forVarbitValue(value);
+				states[value] = state == null ? null : interned.computeIfAbsent(state, s -> s);
+			}
+			STATES[implementation.ordinal()] = states;
+		}
+	}
+
+	private PatchStateTable()
+	{
+	}
+
+	@Nullable
+	static PatchState get(PatchImplementation implementation, int value)
+	{
+		if (value < 0 || value >= SIZE)
+		{
+			return implementation.forVarbitValue(value);
+		}
+		return STATES[implementation.ordinal()][value];
+	}
+}
@@ -1,19 +1,19 @@
 package com.homeassistant.trackers;
 
 import com.homeassistant.HomeassistantConfig;
+import com.homeassistant.classes.ChatDispatcher;
 import com.homeassistant.trackers.events.HomeassistantEvents;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.ChatMessageType;
 import net.runelite.api.Client;
-import net.runelite.api.events.ChatMessage;
 import net.runelite.client.callback.ClientThread;
 import net.runelite.client.eventbus.EventBus;
 import net.runelite.client.eventbus.Subscribe;
 import net.runelite.client.events.ConfigChanged;
-import net.runelite.client.util.Text;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -30,6 +30,7 @@ public class AchievementDiaryTracker {
 
     private boolean currentSendTestRequest;
 
+    private static final String DIARY_PREFIX = "Well done! You have completed a";
     private static final Pattern DIARY_PATTERN = Pattern.compile(
             "Well done! You have completed an? (?<tier>easy|medium|hard|elite) task in the (?<region>.+?) area\\. Your Achievement Diary has been updated\\.",
             Pattern.CASE_INSENSITIVE
@@ -37,33 +38,27 @@ public class AchievementDiaryTracker {
 
 
     @Inject
-    public AchievementDiaryTracker(EventBus eventBus, HomeassistantConfig config, Client client, ClientThread clientThread) {
+    public AchievementDiaryTracker(EventBus eventBus, HomeassistantConfig config, Client client, ClientThread clientThread, ChatDispatcher chatDispatcher) {
         this.eventBus = eventBus;
         this.config = config;
         this.currentSendTestRequest = config.testDiaryEvent();
         this.client = client;
         this.clientThread = clientThread;
-    }
-
-    @Subscribe
-    public void onChatMessage(ChatMessage event) {
-        if (!config.sendDiaryEvents()) return;
-        if (event.getType() != ChatMessageType.GAMEMESSAGE) return;
 
-        String msg = Text.removeTags(event.getMessage());
-        Matcher matcher = DIARY_PATTERN.matcher(msg);
+        chatDispatcher.register(DIARY_PREFIX, DIARY_PATTERN, EnumSet.of(ChatMessageType.GAMEMESSAGE),
+                config::sendDiaryEvents, this::onDiaryTask);
+    }
 
-        if (matcher.matches()) {
-            String region = matcher.group("region");
-            String tier = matcher.group("tier");
+    private void onDiaryTask(Matcher matcher) {
+        String region = matcher.group("region");
+        String tier = matcher.group("tier");
 
-            log.debug("Detected diary completion: {} (tier: {})", region, tier);
+        log.debug("Detected diary completion: {} (tier: {})", region, tier);
 
-            Map<String, Object> thisEvent = new HashMap<>();
-            thisEvent.put("task_name", region);
-            thisEvent.put("tier", tier);
-            eventBus.post(new HomeassistantEvents.SendEvent(thisEvent, "trigger_achievement_diary_notify"));
-        }
+        Map<String, Object> thisEvent = new HashMap<>();
+        thisEvent.put("task_name", region);
+        thisEvent.put("tier", tier);
+        eventBus.post(new HomeassistantEvents.SendEvent(thisEvent, "trigger_achievement_diary_notify"));
     }
 
     @Subscribe
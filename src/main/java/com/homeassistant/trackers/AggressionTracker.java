@@ -1,8 +1,9 @@
 package com.homeassistant.trackers;
 
 import com.homeassistant.HomeassistantConfig;
-import com.homeassistant.classes.Utils;
+import com.homeassistant.classes.PlayerIdentity;
 import com.homeassistant.enums.AggressionStatus;
+import com.homeassistant.enums.EntityPriority;
 import com.homeassistant.trackers.events.HomeassistantEvents;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -31,6 +32,7 @@ public class AggressionTracker
     private final Client client;
     private final HomeassistantConfig config;
     private final ConfigManager configManager;
+    private final PlayerIdentity playerIdentity;
 
     @Getter
     private int ticksLeft = 0;
@@ -51,12 +53,13 @@ public class AggressionTracker
     public int previousFiredEvent;
 
     @Inject
-    public AggressionTracker(Client client, EventBus eventBus, HomeassistantConfig config, ConfigManager configManager)
+    public AggressionTracker(Client client, EventBus eventBus, HomeassistantConfig config, ConfigManager configManager, PlayerIdentity playerIdentity)
     {
         this.client = client;
         this.eventBus = eventBus;
         this.config = config;
         this.configManager = configManager;
+        this.playerIdentity = playerIdentity;
 
         this.previousFiredEvent = 0;
     }
@@ -150,7 +153,6 @@ public class AggressionTracker
     }
 
 
-    @Subscribe
     public void onGameTick(GameTick event)
     {
         if (!config.aggressionTimer())
@@ -260,7 +262,7 @@ public class AggressionTracker
 
         int seconds = (int) (ticksLeft * 0.6f);
 
-        String entityId = String.format("sensor.runelite_%s_aggression", Utils.GetUserName(client));
+        String entityId = playerIdentity.entityId("aggression");
         Map<String, Object> attributes = new HashMap<>();
         attributes.put("entity_id", entityId);
         attributes.put("status", AggressionStatus.ACTIVE.getId());
@@ -268,7 +270,7 @@ public class AggressionTracker
         attributes.put("ticks", ticksLeft);
         entities.add(attributes);
 
-        eventBus.post(new HomeassistantEvents.UpdateEntities(entities));
+        eventBus.post(new HomeassistantEvents.UpdateEntities(entities, EntityPriority.HIGH));
     }
 
     private void aggroEnded()
@@ -278,7 +280,7 @@ public class AggressionTracker
 
         List<Map<String, Object>> entities = new ArrayList<>();
 
-        String entityId = String.format("sensor.runelite_%s_aggression", Utils.GetUserName(client));
+        String entityId = playerIdentity.entityId("aggression");
         Map<String, Object> attributes = new HashMap<>();
         attributes.put("entity_id", entityId);
         attributes.put("status", AggressionStatus.SAFE.getId());
@@ -286,7 +288,7 @@ public class AggressionTracker
         attributes.put("ticks", 0);
         entities.add(attributes);
 
-        eventBus.post(new HomeassistantEvents.UpdateEntities(entities));
+        eventBus.post(new HomeassistantEvents.UpdateEntities(entities, EntityPriority.HIGH));
     }
 
     @Subscribe
@@ -5,15 +5,18 @@ import java.util.*;
 
 import com.homeassistant.HomeassistantConfig;
 
-import com.homeassistant.classes.Utils;
+import com.homeassistant.classes.TimerWheel;
+import com.homeassistant.classes.PlayerIdentity;
 import com.homeassistant.enums.PatchStatus;
 import com.homeassistant.runelite.hunter.BirdHouseTracker;
+import com.homeassistant.enums.EntityPriority;
 import com.homeassistant.trackers.events.HomeassistantEvents;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.*;
 import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.GameTick;
 import net.runelite.client.Notifier;
+import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.EventBus;
 import net.runelite.client.eventbus.Subscribe;
@@ -30,6 +33,9 @@ public class BirdhouseTracker {
 
     private final EventBus eventBus;
     private final Client client;
+    private final ClientThread clientThread;
+    private final PredictionExecutor predictionExecutor;
+    private final PlayerIdentity playerIdentity;
     private final HomeassistantConfig config;
     private final ConfigManager configManager;
     private final ItemManager itemManager;
@@ -40,11 +46,20 @@ public class BirdhouseTracker {
     private long birdhouseCompletionTime = -2L;
     private long previousBirdhouseCompletionTime = -2L;
     private boolean hasChecked = false;
+    // Counts the loads started by checkAll, only the latest one is applied
+    private int checkCount = 0;
+
+    // Flips the birdhouses to ready when they are done, without loading the config again
+    private static final String BIRDHOUSE_TIMER = "birdhouses";
+    private final TimerWheel<String> readyTimers = new TimerWheel<>();
 
     @Inject
     public BirdhouseTracker(
             EventBus eventBus,
             Client client,
+            ClientThread clientThread,
+            PredictionExecutor predictionExecutor,
+            PlayerIdentity playerIdentity,
             HomeassistantConfig config,
             ConfigManager configManager,
             ItemManager itemManager,
@@ -52,6 +67,9 @@ public class BirdhouseTracker {
     ) {
         this.eventBus = eventBus;
         this.client = client;
+        this.clientThread = clientThread;
+        this.predictionExecutor = predictionExecutor;
+        this.playerIdentity = playerIdentity;
         this.config = config;
         this.configManager = configManager;
         this.itemManager = itemManager;
@@ -79,41 +97,79 @@ public class BirdhouseTracker {
             return;
         }
         String group = event.getGroup();
-        if (!group.equals(TimeTrackingConfig.CONFIG_GROUP) && !group.equals(HomeassistantConfig.CONFIG_GROUP)) {
+        // Only the birdhouses option of this plugin's own group matters, the plugin writes other keys of it as well
+        if (!group.equals(TimeTrackingConfig.CONFIG_GROUP) && !(group.equals(HomeassistantConfig.CONFIG_GROUP) && event.getKey().equals("birdhouses"))) {
             return;
         }
 
         checkAll();
     }
 
-    @Subscribe
     public void onGameTick(GameTick event){
         if(!config.birdHouses()){
             return;
         }
-        if(!hasChecked && Utils.GetUserName(client) != null){
+        if(!hasChecked && playerIdentity.getUserName() != null){
             hasChecked = true;
             checkAll();
         }
+
+        if(!readyTimers.isEmpty() && playerIdentity.getUserName() != null){
+            readyTimers.advance(Instant.now().getEpochSecond(), timer -> {
+                birdhouseCompletionTime = 0L;
+                checkEntities();
+            });
+        }
     }
 
     private void checkAll() {
-        if(Utils.GetUserName(client) == null || !config.birdHouses()){
+        String entityIdPrefix = playerIdentity.getEntityIdPrefix();
+        if(entityIdPrefix == null || !config.birdHouses()){
             hasChecked = false;
             return;
         }
 
-        birdHouseTracker.loadFromConfig();
-        birdhouseCompletionTime = birdHouseTracker.getCompletionTime();
+        int check = ++checkCount;
+        // Loading parses the config of every space, that happens on the prediction thread
+        predictionExecutor.execute(() -> {
+            birdHouseTracker.loadFromConfig();
+            long completionTime = birdHouseTracker.getCompletionTime();
+            clientThread.invoke(() -> applyCompletionTime(check, entityIdPrefix, completionTime));
+        });
+    }
+
+    private void applyCompletionTime(int check, String entityIdPrefix, long completionTime) {
+        if (!config.birdHouses()) {
+            return;
+        }
+        if (check != checkCount || !entityIdPrefix.equals(playerIdentity.getEntityIdPrefix())) {
+            // Loaded for the previous account or before the config changed, a newer load is on its way
+            return;
+        }
+
+        birdhouseCompletionTime = completionTime;
+        if (birdhouseCompletionTime > 0) {
+            readyTimers.schedule(BIRDHOUSE_TIMER, birdhouseCompletionTime);
+        } else {
+            readyTimers.cancel(BIRDHOUSE_TIMER);
+        }
+
+        checkEntities();
+    }
 
+    private void checkEntities() {
         List<Map<String, Object>> entities = new ArrayList<>();
         if (previousBirdhouseCompletionTime != birdhouseCompletionTime) {
             String entityId = generateBirdhouseEntityId();
             if (entityId != null) {
                 Map<String, Object> attributes = new HashMap<>();
                 attributes.put("entity_id", entityId);
-                attributes.put("status", PatchStatus.IN_PROGRESS.getName());
-                attributes.put("completion_time", Instant.ofEpochSecond(birdhouseCompletionTime).toString());
+                if (birdhouseCompletionTime == 0) {
+                    attributes.put("status", PatchStatus.READY.getName());
+                } else {
+                    attributes.put("status", PatchStatus.IN_PROGRESS.getName());
+                    attributes.put("completion_time", Instant.ofEpochSecond(birdhouseCompletionTime).toString());
+                }
 
                 entities.add(attributes); // ✅ add to array
                 previousBirdhouseCompletionTime = birdhouseCompletionTime;
@@ -125,12 +181,13 @@ public class BirdhouseTracker {
             return;
         }
 
-        eventBus.post(new HomeassistantEvents.UpdateEntities(entities));
+        eventBus.post(new HomeassistantEvents.UpdateEntities(entities, EntityPriority.LOW));
     }
 
     private void reset() {
         birdhouseCompletionTime = -1L;
         resetPrevious();
+        readyTimers.clear();
 
         TimeTrackingConfig timeTrackingConfig = configManager.getConfig(TimeTrackingConfig.class);
 
@@ -148,12 +205,6 @@ public class BirdhouseTracker {
     }
 
     private String generateBirdhouseEntityId() {
-        try{
-            return String.format("sensor.runelite_%s_birdhouses", Utils.GetUserName(client));
-        }catch (NullPointerException e){
-            log.error("Error generating entity id for birdhouses: {}", e.getMessage());
-            return null;
-        }
-
+        return playerIdentity.entityId("birdhouses");
     }
 }
\ No newline at end of file
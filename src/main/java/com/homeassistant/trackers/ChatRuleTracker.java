@@ -0,0 +1,59 @@
+package com.homeassistant.trackers;
+
+import com.homeassistant.HomeassistantConfig;
+import com.homeassistant.classes.ChatDispatcher;
+import com.homeassistant.classes.ChatRuleMatcher;
+import com.homeassistant.trackers.events.HomeassistantEvents;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.ChatMessageType;
+import net.runelite.client.eventbus.EventBus;
+import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.EnumSet;
+
+/**
+ * Calls the service of every chat rule from the config that matches a game message, with the groups it captured.
+ * The rules are compiled into one {@link ChatRuleMatcher} whenever they change.
+ */
+@Slf4j
+@Singleton
+public class ChatRuleTracker {
+    private final EventBus eventBus;
+    private final HomeassistantConfig config;
+
+    private volatile ChatRuleMatcher matcher;
+
+    private final ChatRuleMatcher.Listener listener = (rule, ruleMatcher, message) -> {
+        log.debug("Chat rule {} matched: {}", rule.getService(), message);
+        eventBus.post(new HomeassistantEvents.SendEvent(rule.payload(ruleMatcher, message), rule.getService()));
+    };
+
+    @Inject
+    public ChatRuleTracker(EventBus eventBus, HomeassistantConfig config, ChatDispatcher chatDispatcher) {
+        this.eventBus = eventBus;
+        this.config = config;
+        this.matcher = ChatRuleMatcher.parse(config.chatRules());
+
+        chatDispatcher.registerScanner(EnumSet.of(ChatMessageType.GAMEMESSAGE, ChatMessageType.SPAM),
+                () -> !matcher.isEmpty(), this::onMessage);
+    }
+
+    private void onMessage(String message) {
+        try {
+            matcher.match(message, listener);
+        } catch (RuntimeException e) {
+            log.warn("Chat rules failed on: {}", message, e);
+        }
+    }
+
+    @Subscribe
+    public void onConfigChanged(ConfigChanged event) {
+        if (event.getGroup().equals(HomeassistantConfig.CONFIG_GROUP) && event.getKey().equals("chat_rules")) {
+            matcher = ChatRuleMatcher.parse(config.chatRules());
+            log.info("Watching chat rules: {}", matcher.size());
+        }
+    }
+}
@@ -1,53 +1,53 @@
 package com.homeassistant.trackers;
 
 import com.homeassistant.HomeassistantConfig;
+import com.homeassistant.classes.ChatDispatcher;
 import com.homeassistant.trackers.events.HomeassistantEvents;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.*;
-import net.runelite.api.events.ChatMessage;
 import net.runelite.client.eventbus.EventBus;
 import net.runelite.client.eventbus.Subscribe;
 import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.plugins.timetracking.TimeTrackingConfig;
-import net.runelite.client.util.Text;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Slf4j
 @Singleton
 public class CollectionTracker {
+    private static final String COLLECTION_LOG_PREFIX = "New item added to your collection log:";
+    private static final Pattern COLLECTION_LOG_PATTERN = Pattern.compile(Pattern.quote(COLLECTION_LOG_PREFIX) + "(?<item>.*)");
+
     private final HomeassistantConfig config;
     private final EventBus eventBus;
 
     private boolean currentSendTestRequest = false;
 
     @Inject
-    public CollectionTracker(EventBus eventBus, HomeassistantConfig config)
+    public CollectionTracker(EventBus eventBus, HomeassistantConfig config, ChatDispatcher chatDispatcher)
     {
         this.eventBus = eventBus;
         this.config = config;
 
         this.currentSendTestRequest = config.testCollectionLogEvent();
-    }
 
-    @Subscribe
-    public void onChatMessage(ChatMessage event) {
-        if(!config.sendCollectionLogEvents()) return;
-        if (event.getType() != ChatMessageType.GAMEMESSAGE) return;
+        chatDispatcher.register(COLLECTION_LOG_PREFIX, COLLECTION_LOG_PATTERN, EnumSet.of(ChatMessageType.GAMEMESSAGE),
+                config::sendCollectionLogEvents, this::onCollectionLog);
+    }
 
-        String msg = Text.removeTags(event.getMessage());
-        String prefix = "New item added to your collection log:";
-        if (msg.startsWith(prefix)) {
-            String item = msg.substring(prefix.length()).trim();
-            log.debug("Detected collection log unlock: {}", item);
+    private void onCollectionLog(Matcher matcher) {
+        String item = matcher.group("item").trim();
+        log.debug("Detected collection log unlock: {}", item);
 
-            Map<String, Object> thisEvent = new HashMap<>();
-            thisEvent.put("item_name", item);
-            eventBus.post(new HomeassistantEvents.SendEvent(thisEvent, "trigger_collection_log_notify"));
-        }
+        Map<String, Object> thisEvent = new HashMap<>();
+        thisEvent.put("item_name", item);
+        eventBus.post(new HomeassistantEvents.SendEvent(thisEvent, "trigger_collection_log_notify"));
     }
 
     @Subscribe
@@ -1,19 +1,19 @@
 package com.homeassistant.trackers;
 
 import com.homeassistant.HomeassistantConfig;
+import com.homeassistant.classes.ChatDispatcher;
 import com.homeassistant.trackers.events.HomeassistantEvents;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.ChatMessageType;
 import net.runelite.api.Client;
-import net.runelite.api.events.ChatMessage;
 import net.runelite.client.callback.ClientThread;
 import net.runelite.client.eventbus.EventBus;
 import net.runelite.client.eventbus.Subscribe;
 import net.runelite.client.events.ConfigChanged;
-import net.runelite.client.util.Text;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -30,40 +30,35 @@ public class CombatTaskTracker {
 
     private boolean currentSendTestRequest;
 
+    private static final String COMBAT_TASK_PREFIX = "Congratulations, you've completed a";
     private static final Pattern COMBAT_TASK_PATTERN = Pattern.compile(
             "Congratulations, you've completed an? (?<tier>easy|medium|hard|elite|master|grandmaster) combat task:(?<task>.+?)",
             Pattern.CASE_INSENSITIVE
     );
 
     @Inject
-    public CombatTaskTracker(EventBus eventBus, HomeassistantConfig config, Client client, ClientThread clientThread) {
+    public CombatTaskTracker(EventBus eventBus, HomeassistantConfig config, Client client, ClientThread clientThread, ChatDispatcher chatDispatcher) {
         this.eventBus = eventBus;
         this.config = config;
         this.client = client;
         this.clientThread = clientThread;
 
         this.currentSendTestRequest = config.testCombatTaskEvent();
-    }
-
-    @Subscribe
-    public void onChatMessage(ChatMessage event) {
-        if (!config.sendCombatTaskEvents()) return;
-        if (event.getType() != ChatMessageType.GAMEMESSAGE) return;
 
-        String msg = Text.removeTags(event.getMessage());
-        Matcher matcher = COMBAT_TASK_PATTERN.matcher(msg);
+        chatDispatcher.register(COMBAT_TASK_PREFIX, COMBAT_TASK_PATTERN, EnumSet.of(ChatMessageType.GAMEMESSAGE),
+                config::sendCombatTaskEvents, this::onCombatTask);
+    }
 
-        if (matcher.matches()) {
-            String task = matcher.group("task");
-            String tier = matcher.group("tier");
+    private void onCombatTask(Matcher matcher) {
+        String task = matcher.group("task");
+        String tier = matcher.group("tier");
 
-            log.debug("Detected combat task completion: {} (tier: {})", task, tier);
+        log.debug("Detected combat task completion: {} (tier: {})", task, tier);
 
-            Map<String, Object> thisEvent = new HashMap<>();
-            thisEvent.put("task_name", task);
-            thisEvent.put("tier", tier);
-            eventBus.post(new HomeassistantEvents.SendEvent(thisEvent, "trigger_combat_task_notify"));
-        }
+        Map<String, Object> thisEvent = new HashMap<>();
+        thisEvent.put("task_name", task);
+        thisEvent.put("tier", tier);
+        eventBus.post(new HomeassistantEvents.SendEvent(thisEvent, "trigger_combat_task_notify"));
     }
 
     @Subscribe
@@ -3,7 +3,7 @@ package com.homeassistant.trackers;
 import java.util.*;
 
 import com.homeassistant.HomeassistantConfig;
-import com.homeassistant.classes.Utils;
+import com.homeassistant.classes.PlayerIdentity;
 import com.homeassistant.enums.DailyTask;
 
 import com.homeassistant.trackers.events.HomeassistantEvents;
@@ -39,11 +39,13 @@ public class DailyTracker extends BaseTracker {
 
     private final Map<DailyTask, Integer> dailyStatuses = new EnumMap<>(DailyTask.class);
     private final Map<DailyTask, Integer> previousDailyStatuses = new EnumMap<>(DailyTask.class);
+    private final PlayerIdentity playerIdentity;
 
     @Inject
-    public DailyTracker(Client client, EventBus eventBus, HomeassistantConfig config, VarbitTracker varbitTracker)
+    public DailyTracker(Client client, EventBus eventBus, HomeassistantConfig config, VarbitTracker varbitTracker, PlayerIdentity playerIdentity)
     {
         super(client, eventBus, config, varbitTracker);
+        this.playerIdentity = playerIdentity;
         reset();
     }
 
@@ -250,11 +252,6 @@ public class DailyTracker extends BaseTracker {
     }
 
     private String generateDailyEntityId(String str){
-        try {
-            return String.format("sensor.runelite_%s_daily_%s", Utils.GetUserName(client), str.toLowerCase());
-        }catch (NullPointerException e){
-            log.error("Error generating entity id for daily {}: {}", str, e.getMessage());
-            return null;
-        }
+        return playerIdentity.entityId("daily_" + str.toLowerCase());
     }
 }
\ No newline at end of file
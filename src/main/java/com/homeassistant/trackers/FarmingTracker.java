@@ -5,15 +5,18 @@ import java.util.*;
 
 import com.homeassistant.HomeassistantConfig;
 
-import com.homeassistant.classes.Utils;
+import com.homeassistant.classes.TimerWheel;
+import com.homeassistant.classes.PlayerIdentity;
 import com.homeassistant.enums.PatchStatus;
 import com.homeassistant.runelite.farming.*;
+import com.homeassistant.enums.EntityPriority;
 import com.homeassistant.trackers.events.HomeassistantEvents;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.*;
 import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.GameTick;
 import net.runelite.client.Notifier;
+import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.EventBus;
 import net.runelite.client.eventbus.Subscribe;
@@ -32,11 +35,14 @@ public class FarmingTracker {
     private FarmingContractManager farmingContractManager;
     private final EventBus eventBus;
     private final Client client;
+    private final ClientThread clientThread;
+    private final PredictionExecutor predictionExecutor;
+    private final PlayerIdentity playerIdentity;
     private final HomeassistantConfig config;
     private final ConfigManager configManager;
     private final ItemManager itemManager;
     private final Notifier notifier;
-    private static final List<Tab> IGNORE_TABS = List.of(
+    private static final Set<Tab> IGNORE_TABS = EnumSet.of(
             Tab.GRAPE,
             Tab.TIME_OFFSET,
             Tab.ANIMA,
@@ -50,20 +56,77 @@ public class FarmingTracker {
             Tab.HOPS,
             Tab.CLOCK
     );
+    // The keys of HomeassistantConfig the predictions depend on, the plugin writes other keys of that group as well
+    private static final Set<String> CONFIG_KEYS = new HashSet<>(Arrays.asList(
+            "farmingpatches", "farmingcontract", "ignorefarmingguild", "farming_tick_offset"));
+    private static final Tab[] TABS = Tab.values();
+    private static final Tab[] TRACKED_TABS = EnumSet.complementOf(EnumSet.copyOf(IGNORE_TABS)).toArray(new Tab[0]);
     private int farmingTickOffset = 0;
     private int previousFarmingTickOffset = 0;
 
-    private final Map<Tab, Long> farmingCompletionTimes = new EnumMap<>(Tab.class);
+    // Indexed by Tab ordinal
+    private final long[] farmingCompletionTimes = new long[TABS.length];
     private long farmingContractCompletionTime = -2L;
     private long previousFarmingContractCompletionTime = -2L;
+    private String farmingContractName;
+    private Tab farmingContractTab;
 
-    private final Map<Tab, Long> previousFarmingCompletionTimes = new EnumMap<>(Tab.class);
+    private final long[] previousFarmingCompletionTimes = new long[TABS.length];
     private boolean hasChecked = false;
+    private TabPlan tabPlan;
+
+    // Flips a tab or the contract to ready when its completion time passes, keyed by tab name or CONTRACT_TIMER
+    private static final String CONTRACT_TIMER = "contract";
+    private final TimerWheel<String> readyTimers = new TimerWheel<>();
+    private boolean readyTimerFired = false;
+
+    /**
+     * What checkAll and checkEntities go through, built once per login and when the config changes.
+     */
+    static final class TabPlan {
+        private final String entityIdPrefix;
+        private final Set<Tab> activeTabs;
+        private final Tab[] tabs;
+        // Indexed by Tab ordinal, null for tabs that are not active
+        private final String[] entityIds = new String[TABS.length];
+        private final String contractEntityId;
+        private final String tickOffsetEntityId;
+
+        TabPlan(String entityIdPrefix, boolean farmingPatches) {
+            this.entityIdPrefix = entityIdPrefix;
+            this.activeTabs = farmingPatches ? EnumSet.complementOf(EnumSet.copyOf(IGNORE_TABS)) : EnumSet.noneOf(Tab.class);
+            this.tabs = activeTabs.toArray(new Tab[0]);
+            for (Tab tab : tabs) {
+                entityIds[tab.ordinal()] = tab == Tab.BIG_COMPOST
+                        ? entityIdPrefix + "compost_bin"
+                        : entityIdPrefix + tab.name().toLowerCase() + "_patch";
+            }
+            this.contractEntityId = entityIdPrefix + "farming_contract";
+            this.tickOffsetEntityId = entityIdPrefix + "farming_tick_offset";
+        }
+    }
+
+    /**
+     * Everything checkAll loaded on the prediction thread, applied on the client thread.
+     */
+    private static final class FarmingPrediction {
+        // Indexed by Tab ordinal, only the tabs of the plan are set
+        private final long[] completionTimes = new long[TABS.length];
+        private boolean contractLoaded;
+        private long contractCompletionTime;
+        private String contractName;
+        private Tab contractTab;
+        private boolean tickOffsetLoaded;
+        private int tickOffset;
+    }
 
     @Inject
     public FarmingTracker(
             EventBus eventBus,
             Client client,
+            ClientThread clientThread,
+            PredictionExecutor predictionExecutor,
+            PlayerIdentity playerIdentity,
             HomeassistantConfig config,
             ConfigManager configManager,
             ItemManager itemManager,
@@ -71,6 +134,9 @@ public class FarmingTracker {
     ) {
         this.eventBus = eventBus;
         this.client = client;
+        this.clientThread = clientThread;
+        this.predictionExecutor = predictionExecutor;
+        this.playerIdentity = playerIdentity;
         this.config = config;
         this.configManager = configManager;
         this.itemManager = itemManager;
@@ -96,89 +162,119 @@ public class FarmingTracker {
             return;
         }
 
+        if (group.equals(TimeTrackingConfig.CONFIG_GROUP)) {
+            farmingTracker.invalidateProfileCache(event.getProfile());
+        } else if (CONFIG_KEYS.contains(event.getKey())) {
+            tabPlan = null;
+        } else {
+            return;
+        }
         checkAll();
     }
 
-    @Subscribe
     public void onGameTick(GameTick event){
-        if(!hasChecked && Utils.GetUserName(client) != null){
+        if(!hasChecked && playerIdentity.getUserName() != null){
             hasChecked = true;
             checkAll();
         }
+
+        if(!readyTimers.isEmpty() && playerIdentity.getUserName() != null){
+            readyTimers.advance(Instant.now().getEpochSecond(), this::onReady);
+            if(readyTimerFired){
+                readyTimerFired = false;
+                checkEntities();
+            }
+        }
+    }
+
+    /**
+     * The completion time of a tab or the contract passed, only that entity changes to ready.
+     */
+    private void onReady(String timer){
+        if(timer.equals(CONTRACT_TIMER)){
+            farmingContractCompletionTime = 0L;
+        } else {
+            farmingCompletionTimes[Tab.valueOf(timer).ordinal()] = 0L;
+        }
+        readyTimerFired = true;
+    }
+
+    private void scheduleReadyTimers(TabPlan plan){
+        // Disabled entities get their timers cancelled
+        for (Tab tab : TRACKED_TABS) {
+            scheduleReadyTimer(tab.name(), plan.activeTabs.contains(tab) ? farmingCompletionTimes[tab.ordinal()] : 0L);
+        }
+        // Long.MAX_VALUE is a contract that will never finish on its own
+        boolean contractFinishes = config.farmingContract() && farmingContractCompletionTime != Long.MAX_VALUE;
+        scheduleReadyTimer(CONTRACT_TIMER, contractFinishes ? farmingContractCompletionTime : 0L);
+    }
+
+    private void scheduleReadyTimer(String timer, long completionTime){
+        if(completionTime > 0){
+            readyTimers.schedule(timer, completionTime);
+        } else {
+            readyTimers.cancel(timer);
+        }
     }
     
+    /**
+     * Returns the plan for the logged in user, building it after a login or a config change.
+     */
+    private TabPlan getTabPlan(){
+        String entityIdPrefix = playerIdentity.getEntityIdPrefix();
+        if(entityIdPrefix == null){
+            return null;
+        }
+        if(tabPlan == null || !tabPlan.entityIdPrefix.equals(entityIdPrefix)){
+            tabPlan = new TabPlan(entityIdPrefix, config.farmingPatches());
+        }
+        return tabPlan;
+    }
+
     private void checkEntities(){
+        TabPlan plan = getTabPlan();
+        if(plan == null){
+            return;
+        }
         List<Map<String, Object>> entities = new ArrayList<>();
 
         try {
             // Farming Patches
-            if(config.farmingPatches()) {
-                for (Tab tab : Tab.values()) {
-                    if (!Objects.equals(previousFarmingCompletionTimes.get(tab), farmingCompletionTimes.get(tab))) {
-                        if(IGNORE_TABS.contains(tab)){
-                            continue;
-                        }
-                        String entityId = generateFarmingPatchEntityId(tab);
-                        if (entityId == null) continue;
+            addPatchEntities(plan, previousFarmingCompletionTimes, farmingCompletionTimes, entities);
 
-                        Map<String, Object> attributes = new HashMap<>();
-                        attributes.put("entity_id", entityId);
+            // Farming Contract
+            if(config.farmingContract()) {
+                if (previousFarmingContractCompletionTime != farmingContractCompletionTime) {
+                    Map<String, Object> attributes = new HashMap<>();
+                    attributes.put("entity_id", plan.contractEntityId);
+                    attributes.put("status", PatchStatus.IN_PROGRESS.getName());
+                    String contractName = farmingContractName;
+                    Tab tab = farmingContractTab;
+                    if (tab != null){
+                        try {
+                            attributes.put("patch_type", tab.name().toLowerCase());
+                            attributes.put("crop_type", contractName);
+                        }catch (NullPointerException e){
+                            log.debug("Error getting contract name or tab: {}", e.getMessage());
+                        }
 
-                        long completionTime = farmingCompletionTimes.get(tab);
+                        log.info("Farming contract completion time: {}", farmingContractCompletionTime);
                         PatchStatus patchStatus = PatchStatus.READY;
-
-                        if (completionTime > 0) {
+                        if (farmingContractCompletionTime > 0) {
                             patchStatus = PatchStatus.IN_PROGRESS;
-                            attributes.put("completion_time", Instant.ofEpochSecond(completionTime).toString());
-                        } else if (completionTime == -1) {
+                            if(farmingContractCompletionTime == Long.MAX_VALUE){
+                                patchStatus = PatchStatus.OTHER;
+                            } else {
+                                //				log.info("Farming contract completion time: {}", Instant.ofEpochSecond(completionTime).toString());
+                                attributes.put("completion_time", Instant.ofEpochSecond(farmingContractCompletionTime).toString());
+                            }
+                        }else if(farmingContractCompletionTime == -1){
                             patchStatus = PatchStatus.NEVER_PLANTED;
                         }
-
                         attributes.put("status", patchStatus.getName());
 
                         entities.add(attributes);
-                        previousFarmingCompletionTimes.put(tab, farmingCompletionTimes.get(tab));
-                    }
-                }
-            }
-
-            // Farming Contract
-            if(config.farmingContract()) {
-                if (previousFarmingContractCompletionTime != farmingContractCompletionTime) {
-                    String entityId = generateFarmingContractEntityId();
-                    if (entityId != null) {
-
-                        Map<String, Object> attributes = new HashMap<>();
-                        attributes.put("entity_id", entityId);
-                        attributes.put("status", PatchStatus.IN_PROGRESS.getName());
-                        String contractName = farmingContractManager.getContractName();
-                        Tab tab = farmingContractManager.getContractTab();
-                        if (tab != null){
-                            try {
-                                attributes.put("patch_type", tab.name().toLowerCase());
-                                attributes.put("crop_type", contractName);
-                            }catch (NullPointerException e){
-                                log.debug("Error getting contract name or tab: {}", e.getMessage());
-                            }
-
-                            log.info("Farming contract completion time: {}", farmingContractCompletionTime);
-                            PatchStatus patchStatus = PatchStatus.READY;
-                            if (farmingContractCompletionTime > 0) {
-                                patchStatus = PatchStatus.IN_PROGRESS;
-                                if(farmingContractCompletionTime == Long.MAX_VALUE){
-                                    patchStatus = PatchStatus.OTHER;
-                                } else {
-                                    //				log.info("Farming contract completion time: {}", Instant.ofEpochSecond(completionTime).toString());
-                                    attributes.put("completion_time", Instant.ofEpochSecond(farmingContractCompletionTime).toString());
-                                }
-                            }else if(farmingContractCompletionTime == -1){
-                                patchStatus = PatchStatus.NEVER_PLANTED;
-                            }
-                            attributes.put("status", patchStatus.getName());
-
-                            entities.add(attributes);
-                            previousFarmingContractCompletionTime = farmingContractCompletionTime;
-                        }
+                        previousFarmingContractCompletionTime = farmingContractCompletionTime;
                     }
                 }
             }
@@ -188,7 +284,7 @@ public class FarmingTracker {
 
         if(farmingTickOffset != previousFarmingTickOffset){
             Map<String, Object> farmingTickAttributes = new HashMap<>();
-            farmingTickAttributes.put("entity_id", GenerateFarmingTickEntityId());
+            farmingTickAttributes.put("entity_id", plan.tickOffsetEntityId);
             farmingTickAttributes.put("farming_tick_offset", farmingTickOffset);
 
             entities.add(farmingTickAttributes);
@@ -200,41 +296,111 @@ public class FarmingTracker {
             return;
         }
 
-        eventBus.post(new HomeassistantEvents.UpdateEntities(entities));
+        eventBus.post(new HomeassistantEvents.UpdateEntities(entities, EntityPriority.LOW));
     }
 
+    /**
+     * Adds an entity for every patch of the plan whose completion time changed, and moves its previous time along.
+     * Both arrays are indexed by Tab ordinal.
+     */
+    static void addPatchEntities(TabPlan plan, long[] previous, long[] current, List<Map<String, Object>> entities){
+        for (Tab tab : plan.tabs) {
+            int i = tab.ordinal();
+            if (previous[i] != current[i]) {
+                Map<String, Object> attributes = new HashMap<>();
+                attributes.put("entity_id", plan.entityIds[i]);
+
+                long completionTime = current[i];
+                PatchStatus patchStatus = PatchStatus.READY;
+
+                if (completionTime > 0) {
+                    patchStatus = PatchStatus.IN_PROGRESS;
+                    attributes.put("completion_time", Instant.ofEpochSecond(completionTime).toString());
+                } else if (completionTime == -1) {
+                    patchStatus = PatchStatus.NEVER_PLANTED;
+                }
+
+                attributes.put("status", patchStatus.getName());
+
+                entities.add(attributes);
+                previous[i] = completionTime;
+            }
+        }
+    }
 
+    /**
+     * Loads the completion times on the prediction thread, the config and the plan are read here on the client thread.
+     */
     private void checkAll() {
-        if(Utils.GetUserName(client) == null){
+        TabPlan plan = getTabPlan();
+        if(plan == null){
             return;
         }
 
-        resetPrevious();
-        if(config.farmingPatches()) {
-            farmingTracker.setIgnoreFarmingGuild(config.ignoreFarmingGuild());
+        boolean ignoreFarmingGuild = config.ignoreFarmingGuild();
+        boolean farmingContract = config.farmingContract();
+        boolean farmingTickOffset = config.farmingTickOffset();
+
+        predictionExecutor.execute(() -> {
+            FarmingPrediction prediction = predict(plan, ignoreFarmingGuild, farmingContract, farmingTickOffset);
+            clientThread.invoke(() -> applyPrediction(plan, prediction));
+        });
+    }
+
+    /**
+     * Runs on the prediction thread, only reads the config. The runelite trackers are only used from this thread.
+     */
+    private FarmingPrediction predict(TabPlan plan, boolean ignoreFarmingGuild, boolean farmingContract, boolean farmingTickOffset) {
+        FarmingPrediction prediction = new FarmingPrediction();
+        if(plan.tabs.length > 0) {
+            farmingTracker.setIgnoreFarmingGuild(ignoreFarmingGuild);
             farmingTracker.loadCompletionTimes();
-            for (Tab tab : Tab.values()) {
-                if(IGNORE_TABS.contains(tab)){
-                    continue;
-                }
-                farmingCompletionTimes.put(tab, farmingTracker.getCompletionTime(tab));
+            for (Tab tab : plan.tabs) {
+                prediction.completionTimes[tab.ordinal()] = farmingTracker.getCompletionTime(tab);
             }
         }
 
-        if (config.farmingContract()) {
+        if (farmingContract) {
             farmingContractManager.loadContractFromConfig();
-            farmingContractCompletionTime = farmingContractManager.getCompletionTime();
+            prediction.contractLoaded = true;
+            prediction.contractCompletionTime = farmingContractManager.getCompletionTime();
+            prediction.contractName = farmingContractManager.getContractName();
+            prediction.contractTab = farmingContractManager.getContractTab();
         }
 
-        if(config.farmingTickOffset()) {
-            int offset = configManager.getRSProfileConfiguration(TimeTrackingConfig.CONFIG_GROUP, TimeTrackingConfig.FARM_TICK_OFFSET, int.class);
-            offset = offset * -1;
-
-            if (offset != farmingTickOffset) {
-                farmingTickOffset = offset;
+        if(farmingTickOffset) {
+            Integer offset = configManager.getRSProfileConfiguration(TimeTrackingConfig.CONFIG_GROUP, TimeTrackingConfig.FARM_TICK_OFFSET, int.class);
+            if (offset != null) {
+                prediction.tickOffsetLoaded = true;
+                prediction.tickOffset = offset * -1;
             }
         }
 
+        return prediction;
+    }
+
+    private void applyPrediction(TabPlan plan, FarmingPrediction prediction) {
+        if(plan != tabPlan){
+            // Logged in on another account or the config changed, a newer prediction is on its way
+            return;
+        }
+
+        resetPrevious();
+        for (Tab tab : plan.tabs) {
+            farmingCompletionTimes[tab.ordinal()] = prediction.completionTimes[tab.ordinal()];
+        }
+
+        if (prediction.contractLoaded) {
+            farmingContractCompletionTime = prediction.contractCompletionTime;
+            farmingContractName = prediction.contractName;
+            farmingContractTab = prediction.contractTab;
+        }
+
+        if (prediction.tickOffsetLoaded) {
+            farmingTickOffset = prediction.tickOffset;
+        }
+
+        scheduleReadyTimers(plan);
         checkEntities();
     }
 
@@ -275,59 +441,19 @@ public class FarmingTracker {
                 farmingTracker
         );
 
-        for (Tab tab : Tab.values()) {
-            if(IGNORE_TABS.contains(tab)){
-                continue;
-            }
-            farmingCompletionTimes.put(tab, -2L);
-        }
+        Arrays.fill(farmingCompletionTimes, -2L);
         farmingContractCompletionTime = -2L;
         farmingTickOffset = 0;
         hasChecked = false;
+        tabPlan = null;
+        readyTimers.clear();
 
         resetPrevious();
     }
 
     public void resetPrevious(){
-        for (Tab tab : Tab.values()) {
-            if(IGNORE_TABS.contains(tab)){
-                continue;
-            }
-            previousFarmingCompletionTimes.put(tab, farmingCompletionTimes.get(tab));
-        }
+        System.arraycopy(farmingCompletionTimes, 0, previousFarmingCompletionTimes, 0, TABS.length);
         previousFarmingContractCompletionTime = farmingContractCompletionTime;
         previousFarmingTickOffset = farmingTickOffset;
     }
-
-
-
-    private String generateFarmingPatchEntityId(Tab tab) {
-        try {
-            if(tab == Tab.BIG_COMPOST){
-                return String.format("sensor.runelite_%s_compost_bin", Utils.GetUserName(client));
-            }
-            return String.format("sensor.runelite_%s_%s_patch", Utils.GetUserName(client), tab.name().toLowerCase());
-        }catch (NullPointerException e){
-            log.error("Error generating entity id for {}: {}", tab.name(), e.getMessage());
-            return null;
-        }
-    }
-
-    private String generateFarmingContractEntityId() {
-        try{
-            return String.format("sensor.runelite_%s_farming_contract", Utils.GetUserName(client));
-        }catch (NullPointerException e){
-            log.error("Error generating entity id for farming contract: {}", e.getMessage());
-            return null;
-        }
-    }
-
-    private String GenerateFarmingTickEntityId() {
-        try{
-            return String.format("sensor.runelite_%s_farming_tick_offset", Utils.GetUserName(client));
-        }catch (NullPointerException e){
-            log.error("Error generating entity id for farming tick offset: {}", e.getMessage());
-            return null;
-        }
-    }
 }
@@ -36,7 +36,6 @@ public class IdleTracker {
         reset();
     }
 
-    @Subscribe
     public void onGameTick(GameTick tick) {
         if (!config.sendIdleEvents()) return;
 
@@ -1,11 +1,12 @@
 package com.homeassistant.trackers;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 import com.homeassistant.HomeassistantConfig;
+import com.homeassistant.classes.StatThresholds;
 import com.homeassistant.classes.StatusEffect;
-import com.homeassistant.classes.Utils;
+import com.homeassistant.classes.PlayerIdentity;
+import com.homeassistant.enums.EntityPriority;
 import com.homeassistant.trackers.events.HomeassistantEvents;
 
 import lombok.extern.slf4j.Slf4j;
@@ -17,6 +18,7 @@ import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.GameTick;
 import net.runelite.client.eventbus.EventBus;
 import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -24,9 +26,26 @@ import javax.inject.Singleton;
 @Slf4j
 @Singleton
 public class PlayerDataTracker {
+    private static final Skill[] SKILLS = Skill.values();
+
+    private static final int HEALTH = 1;
+    private static final int PRAYER = 1 << 1;
+    private static final int SPECIAL_ATTACK = 1 << 2;
+    private static final int RUN_ENERGY = 1 << 3;
+    private static final int STATUS_EFFECTS = 1 << 4;
+    private static final int ONLINE_STATUS = 1 << 5;
+    private static final int SKILL_BOOSTS = 1 << 6;
+
+    public static final String THRESHOLD_SERVICE = "trigger_threshold_notify";
+
+    private static final int NO_STATUS_EFFECT = 0;
+    private static final int POISON = 1;
+    private static final int VENOM = 2;
+
     private final EventBus eventBus;
     private final Client client;
     private final HomeassistantConfig config;
+    private final PlayerIdentity playerIdentity;
     private final int PING_TICK_INTERVAL = 100;
 
 
@@ -34,40 +53,65 @@ public class PlayerDataTracker {
     private int currentPrayer = 0;
     private int currentSpecialAttack = 0;
     private int currentRunEnergy = 0;
-    private List<StatusEffect> currentStatusEffects = new ArrayList<>();
+    private int currentStatusEffect = NO_STATUS_EFFECT;
+    private int currentStatusEffectDamage = 0;
     private int previousHealth = 0;
     private int previousPrayer = 0;
     private int previousSpecialAttack = 0;
     private int previousRunEnergy = 0;
-    private List<StatusEffect> previousStatusEffects = new ArrayList<>();
-    private final Map<Skill, Integer> boostedSkills = new EnumMap<>(Skill.class);
-    private final Map<Skill, Integer> previousBoostedSkills = new EnumMap<>(Skill.class);
+    private int previousStatusEffect = NO_STATUS_EFFECT;
+    private int previousStatusEffectDamage = 0;
+    // Indexed by Skill.ordinal()
+    private final int[] boostedSkills = new int[SKILLS.length];
+    private final int[] previousBoostedSkills = new int[SKILLS.length];
 
     private boolean previousIsOnline = false;
     private int previousOnlineWorld = -1;
     private boolean isOnline = false;
     private int onlineWorld = -1;
 
+    // Entity ids only depend on the username, built once per login
+    private String entityIdPrefix;
+    private String healthEntityId;
+    private String prayerEntityId;
+    private String specialAttackEntityId;
+    private String runEnergyEntityId;
+    private String statusEffectsEntityId;
+    private String playerStatusEntityId;
+    private final String[] skillEntityIds = new String[SKILLS.length];
+
+    // Indexed like StatThresholds, only filled for the stats a threshold is on
+    private StatThresholds thresholds;
+    private final int[] thresholdValues = new int[StatThresholds.STAT_COUNT];
+    private final int[] thresholdMaximums = new int[StatThresholds.STAT_COUNT];
+    private final StatThresholds.Listener thresholdListener = this::thresholdChanged;
+
     @Inject
-    public PlayerDataTracker(Client client, EventBus eventBus, HomeassistantConfig config)
+    public PlayerDataTracker(Client client, EventBus eventBus, HomeassistantConfig config, PlayerIdentity playerIdentity)
     {
         this.client = client;
         this.eventBus = eventBus;
         this.config = config;
-
-        for (Skill skill : Skill.values()) {
-            boostedSkills.put(skill, 0);
-        }
+        this.playerIdentity = playerIdentity;
+        this.thresholds = StatThresholds.parse(config.statThresholds());
 
         resetPrevious();
     }
 
+    @Subscribe
+    public void onConfigChanged(ConfigChanged event) {
+        if (event.getGroup().equals(HomeassistantConfig.CONFIG_GROUP) && event.getKey().equals("stat_thresholds")) {
+            thresholds = StatThresholds.parse(config.statThresholds());
+        }
+    }
+
     @Subscribe
     public void onGameStateChanged(GameStateChanged gameStateChanged) {
         GameState gameState = gameStateChanged.getGameState();
 
         if(gameState == GameState.CONNECTION_LOST || gameState == GameState.LOGIN_SCREEN){
             logOutEvent();
+            thresholds.reset();
         }
 
         if (gameState != GameState.LOGGED_IN) {
@@ -78,10 +122,9 @@ public class PlayerDataTracker {
         onlineWorld = client.getWorld();
     }
 
-    @Subscribe
     public void onGameTick(GameTick event)
     {
-        if (!config.playerRunEnergy() && !config.playerHealth() && !config.playerPrayer() && !config.playerSpecialAttack() && !config.playerOnlineStatus() && !config.skillBoosts()){
+        if (!config.playerRunEnergy() && !config.playerHealth() && !config.playerPrayer() && !config.playerSpecialAttack() && !config.playerOnlineStatus() && !config.skillBoosts() && thresholds.isEmpty()){
             return;
         }
 
@@ -93,83 +136,94 @@ public class PlayerDataTracker {
 
         checkCurrentStats();
         checkAllEntities();
+        checkThresholds();
 
         if(client.getTickCount() % PING_TICK_INTERVAL == 0 && config.playerOnlineStatus()){
             pingEvent();
         }
     }
 
+    private int getChangedFields() {
+        int changed = 0;
+        if (currentHealth != previousHealth && config.playerHealth()) {
+            changed |= HEALTH;
+        }
+        if (currentPrayer != previousPrayer && config.playerPrayer()) {
+            changed |= PRAYER;
+        }
+        if (currentSpecialAttack != previousSpecialAttack && config.playerSpecialAttack()) {
+            changed |= SPECIAL_ATTACK;
+        }
+        if (currentRunEnergy != previousRunEnergy && config.playerRunEnergy()) {
+            changed |= RUN_ENERGY;
+        }
+        if ((currentStatusEffect != previousStatusEffect || currentStatusEffectDamage != previousStatusEffectDamage) && config.playerStatusEffects()) {
+            changed |= STATUS_EFFECTS;
+        }
+        if ((isOnline != previousIsOnline || onlineWorld != previousOnlineWorld) && config.playerOnlineStatus()) {
+            changed |= ONLINE_STATUS;
+        }
+        if (config.skillBoosts() && !Arrays.equals(boostedSkills, previousBoostedSkills)) {
+            changed |= SKILL_BOOSTS;
+        }
+        return changed;
+    }
+
     private void checkAllEntities() {
+        int changed = getChangedFields();
+        if (changed == 0) {
+            // Nothing changed, don't allocate anything
+            resetPrevious();
+            return;
+        }
+
+        if (!buildEntityIds()) {
+            resetPrevious();
+            return;
+        }
+
         List<Map<String, Object>> entities = new ArrayList<>();
-        if(currentHealth != previousHealth && config.playerHealth()){
-            String entityId = String.format("sensor.runelite_%s_health", Utils.GetUserName(client));
-            Map<String, Object> attributes = new HashMap<>();
-            attributes.put("entity_id", entityId);
-            attributes.put("current_health", currentHealth);
-            entities.add(attributes);
+        if ((changed & HEALTH) != 0) {
+            entities.add(entity(healthEntityId, "current_health", currentHealth));
         }
-        if (currentPrayer != previousPrayer && config.playerPrayer())
-        {
-            String entityId = String.format("sensor.runelite_%s_prayer", Utils.GetUserName(client));
-            Map<String, Object> attributes = new HashMap<>();
-            attributes.put("entity_id", entityId);
-            attributes.put("current_prayer", currentPrayer);
-            entities.add(attributes);
+        if ((changed & PRAYER) != 0) {
+            entities.add(entity(prayerEntityId, "current_prayer", currentPrayer));
         }
-        if (currentSpecialAttack != previousSpecialAttack && config.playerSpecialAttack())
-        {
-            String entityId = String.format("sensor.runelite_%s_special_attack", Utils.GetUserName(client));
-            Map<String, Object> attributes = new HashMap<>();
-            attributes.put("entity_id", entityId);
-            attributes.put("current_special_attack", currentSpecialAttack);
-            entities.add(attributes);
+        if ((changed & SPECIAL_ATTACK) != 0) {
+            entities.add(entity(specialAttackEntityId, "current_special_attack", currentSpecialAttack));
         }
-        if (currentRunEnergy != previousRunEnergy && config.playerRunEnergy())
-        {
-            String entityId = String.format("sensor.runelite_%s_run_energy", Utils.GetUserName(client));
-            Map<String, Object> attributes = new HashMap<>();
-            attributes.put("entity_id", entityId);
-            attributes.put("current_run_energy", currentRunEnergy);
-            entities.add(attributes);
+        if ((changed & RUN_ENERGY) != 0) {
+            entities.add(entity(runEnergyEntityId, "current_run_energy", currentRunEnergy));
         }
-        if (!currentStatusEffects.equals(previousStatusEffects) && config.playerStatusEffects())
-        {
-            String entityId = String.format("sensor.runelite_%s_status_effects", Utils.GetUserName(client));
-            Map<String, Object> attributes = new HashMap<>();
-            attributes.put("entity_id", entityId);
-
-            // Convert status effects to a serializable list of maps or strings
-            List<Map<String, Object>> effectList = currentStatusEffects.stream()
-                    .map(effect -> {
-                        Map<String, Object> map = new HashMap<>();
-                        map.put("name", effect.name);
-                        map.put("number", effect.number);
-                        map.put("time", effect.time);
-                        return map;
-                    })
-                    .collect(Collectors.toList());
-
-            attributes.put("current_status_effects", effectList);
-            entities.add(attributes);
+        if ((changed & STATUS_EFFECTS) != 0) {
+            // Convert status effects to a serializable list of maps
+            List<Map<String, Object>> effectList = new ArrayList<>();
+            if (currentStatusEffect != NO_STATUS_EFFECT) {
+                StatusEffect statusEffect = new StatusEffect();
+                statusEffect.number = currentStatusEffectDamage;
+                statusEffect.name = currentStatusEffect == POISON ? "Poison" : "Venom";
+
+                Map<String, Object> map = new HashMap<>();
+                map.put("name", statusEffect.name);
+                map.put("number", statusEffect.number);
+                map.put("time", statusEffect.time);
+                effectList.add(map);
+            }
+            entities.add(entity(statusEffectsEntityId, "current_status_effects", effectList));
         }
 
-        if(config.skillBoosts()){
-            for (Skill skill : Skill.values()) {
-                if (!Objects.equals(previousBoostedSkills.get(skill), boostedSkills.get(skill))) {
-                    String entityId = String.format("sensor.runelite_%s_skill_%s", Utils.GetUserName(client), skill.getName().toLowerCase().replaceAll(" ", "_"));
-                    Map<String, Object> attributes = new HashMap<>();
-                    attributes.put("entity_id", entityId);
-                    attributes.put("virtual_level", boostedSkills.get(skill));
-                    entities.add(attributes);
+        if ((changed & SKILL_BOOSTS) != 0) {
+            for (int i = 0; i < SKILLS.length; i++) {
+                if (boostedSkills[i] != previousBoostedSkills[i]) {
+                    entities.add(entity(skillEntityIds[i], "virtual_level", boostedSkills[i]));
                 }
             }
         }
 
-
 //		Player stats
-        if((isOnline != previousIsOnline || onlineWorld != previousOnlineWorld) && config.playerOnlineStatus()) {
+        if ((changed & ONLINE_STATUS) != 0) {
             Map<String, Object> attributes = new HashMap<>();
-            attributes.put("entity_id", playerStatusEntityId());
+            attributes.put("entity_id", playerStatusEntityId);
             attributes.put("is_online", isOnline);
             attributes.put("world", onlineWorld);
             entities.add(attributes);
@@ -177,99 +231,174 @@ public class PlayerDataTracker {
 
         resetPrevious();
 
-        if(entities.isEmpty()){
-            return;
+        // Health and prayer go out right away, skill boosts alone can wait
+        EntityPriority priority = EntityPriority.LOW;
+        if ((changed & (HEALTH | PRAYER)) != 0) {
+            priority = EntityPriority.CRITICAL;
+        } else if ((changed & ~SKILL_BOOSTS) != 0) {
+            priority = EntityPriority.HIGH;
+        }
+        eventBus.post(new HomeassistantEvents.UpdateEntities(entities, priority));
+    }
+
+    private static Map<String, Object> entity(String entityId, String attribute, Object value) {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("entity_id", entityId);
+        attributes.put(attribute, value);
+        return attributes;
+    }
+
+    /**
+     * Builds all entity ids for the logged in player, only does work when the username changed.
+     * Returns false when the username is not known yet.
+     */
+    private boolean buildEntityIds() {
+        String prefix = playerIdentity.getEntityIdPrefix();
+        if (prefix == null) {
+            return false;
+        }
+        if (prefix.equals(entityIdPrefix)) {
+            return true;
         }
 
-        eventBus.post(new HomeassistantEvents.UpdateEntities(entities));
+        healthEntityId = prefix + "health";
+        prayerEntityId = prefix + "prayer";
+        specialAttackEntityId = prefix + "special_attack";
+        runEnergyEntityId = prefix + "run_energy";
+        statusEffectsEntityId = prefix + "status_effects";
+        playerStatusEntityId = prefix + "player_status";
+        for (Skill skill : SKILLS) {
+            skillEntityIds[skill.ordinal()] = prefix + "skill_" + skill.getName().toLowerCase().replaceAll(" ", "_");
+        }
+        entityIdPrefix = prefix;
+        return true;
     }
 
     private void checkCurrentStats(){
         if(config.playerStatusEffects()){
-            currentStatusEffects = new ArrayList<>();
-
             int poison = client.getVarpValue(102);
-            boolean isPoisoned = false;
-            boolean isVenomed = false;
-            int damage = 0;
+            currentStatusEffect = NO_STATUS_EFFECT;
+            currentStatusEffectDamage = 0;
 
             if (poison > 0 && poison <= 100)
             {
-                damage = (int) Math.ceil(poison / 5.0f);
-                isPoisoned = true;
+                currentStatusEffectDamage = (int) Math.ceil(poison / 5.0f);
+                currentStatusEffect = POISON;
 
             }
             else if (poison >= 1_000_000)
             {
-                damage = Math.min(20, (poison - 999_997) * 2);
-                isVenomed = true;
-            }
-
-            if(isPoisoned || isVenomed){
-                StatusEffect statusEffect = new StatusEffect();
-                statusEffect.number = damage;
-                statusEffect.name = isPoisoned ? "Poison" : "Venom";
-                currentStatusEffects.add(statusEffect);
+                currentStatusEffectDamage = Math.min(20, (poison - 999_997) * 2);
+                currentStatusEffect = VENOM;
             }
         }
 
-        if(config.playerRunEnergy())
+        if(config.playerRunEnergy() || thresholds.uses(StatThresholds.RUN_ENERGY))
             currentRunEnergy = client.getEnergy() / 100;
 
-        if(config.playerSpecialAttack())
+        if(config.playerSpecialAttack() || thresholds.uses(StatThresholds.SPECIAL_ATTACK))
             currentSpecialAttack = client.getVarpValue(300) / 10;
 
-        if(config.playerHealth())
+        if(config.playerHealth() || thresholds.uses(Skill.HITPOINTS.ordinal()))
             currentHealth = client.getBoostedSkillLevel(Skill.HITPOINTS);
 
-        if(config.playerPrayer())
+        if(config.playerPrayer() || thresholds.uses(Skill.PRAYER.ordinal()))
             currentPrayer = client.getBoostedSkillLevel(Skill.PRAYER);
 
         if(config.skillBoosts()){
-            for (Skill skill : Skill.values()) {
-                boostedSkills.put(skill, client.getBoostedSkillLevel(skill));
+            for (int i = 0; i < SKILLS.length; i++) {
+                boostedSkills[i] = client.getBoostedSkillLevel(SKILLS[i]);
+            }
+        } else {
+            for (int stat : thresholds.getStats()) {
+                if (stat < SKILLS.length) {
+                    boostedSkills[stat] = client.getBoostedSkillLevel(SKILLS[stat]);
+                }
             }
         }
     }
 
+    /**
+     * Evaluates the thresholds on the values read this tick, only a threshold being crossed or cleared is sent.
+     */
+    private void checkThresholds() {
+        if (thresholds.isEmpty()) {
+            return;
+        }
+
+        for (int stat : thresholds.getStats()) {
+            if (stat == StatThresholds.RUN_ENERGY) {
+                thresholdValues[stat] = currentRunEnergy;
+                thresholdMaximums[stat] = 100;
+            } else if (stat == StatThresholds.SPECIAL_ATTACK) {
+                thresholdValues[stat] = currentSpecialAttack;
+                thresholdMaximums[stat] = 100;
+            } else {
+                thresholdValues[stat] = stat == Skill.HITPOINTS.ordinal() ? currentHealth
+                        : stat == Skill.PRAYER.ordinal() ? currentPrayer
+                        : boostedSkills[stat];
+                thresholdMaximums[stat] = client.getRealSkillLevel(SKILLS[stat]);
+            }
+        }
+        thresholds.evaluate(thresholdValues, thresholdMaximums, thresholdListener);
+    }
+
+    private void thresholdChanged(StatThresholds.Rule rule, int value, boolean crossed) {
+        log.debug("Threshold {} {} {} {}: {}", rule.getStatName(), rule.isBelow() ? "below" : "above", rule.getThreshold(), crossed ? "crossed" : "cleared", value);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("stat", rule.getStatName());
+        data.put("direction", rule.isBelow() ? "below" : "above");
+        data.put("threshold", rule.getThreshold());
+        data.put("percent", rule.isPercent());
+        data.put("value", value);
+        data.put("crossed", crossed);
+        eventBus.post(new HomeassistantEvents.SendEvent(data, THRESHOLD_SERVICE));
+    }
+
     private void resetPrevious(){
         previousHealth = currentHealth;
         previousPrayer = currentPrayer;
         previousRunEnergy = currentRunEnergy;
         previousSpecialAttack = currentSpecialAttack;
-        previousStatusEffects = new ArrayList<>();
-        for (StatusEffect value : currentStatusEffects ){
-            previousStatusEffects.add(value.copy());
-        }
+        previousStatusEffect = currentStatusEffect;
+        previousStatusEffectDamage = currentStatusEffectDamage;
         previousIsOnline = isOnline;
         previousOnlineWorld = onlineWorld;
 
-        for (Skill skill : Skill.values()) {
-            previousBoostedSkills.put(skill, boostedSkills.get(skill));
-        }
+        System.arraycopy(boostedSkills, 0, previousBoostedSkills, 0, boostedSkills.length);
     }
 
     private void logOutEvent(){
         isOnline = false;
         onlineWorld = -1;
 
-        Map<String, Object> attributes = new HashMap<>();
-        attributes.put("entity_id", playerStatusEntityId());
-        attributes.put("is_online", isOnline);
-        attributes.put("world", onlineWorld);
+        String entityId = playerStatusEntityId();
+        if (entityId != null) {
+            Map<String, Object> attributes = new HashMap<>();
+            attributes.put("entity_id", entityId);
+            attributes.put("is_online", isOnline);
+            attributes.put("world", onlineWorld);
 
-        List<Map<String, Object>> entities = new ArrayList<>();
-        entities.add(attributes);
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("entities", entities);
+            List<Map<String, Object>> entities = new ArrayList<>();
+            entities.add(attributes);
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("entities", entities);
 
-        eventBus.post(new HomeassistantEvents.SendEvent(payload, "set_multi_entity_data"));
+            eventBus.post(new HomeassistantEvents.SendEvent(payload, "set_multi_entity_data"));
+        }
         checkAllEntities();
     }
 
     private void pingEvent(){
+        String entityId = playerStatusEntityId();
+        if (entityId == null) {
+            // Never logged in, there is no player to report on
+            return;
+        }
+
         Map<String, Object> attributes = new HashMap<>();
-        attributes.put("entity_id", playerStatusEntityId());
+        attributes.put("entity_id", entityId);
         attributes.put("is_online", isOnline);
         attributes.put("world", onlineWorld);
 
@@ -281,7 +410,12 @@ public class PlayerDataTracker {
         eventBus.post(new HomeassistantEvents.SendEvent(payload, "set_multi_entity_data"));
     }
 
+    /**
+     * The player status entity of the current or, after logging out, the last logged in player. Null before the first login.
+     */
     private String playerStatusEntityId(){
-        return String.format("sensor.runelite_%s_player_status", Utils.GetUserName(client));
+        // After logging out the player has no name anymore, keep using the id from the last login
+        buildEntityIds();
+        return playerStatusEntityId;
     }
 }
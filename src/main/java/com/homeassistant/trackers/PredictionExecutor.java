@@ -0,0 +1,46 @@
+package com.homeassistant.trackers;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Singleton;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * One background thread for the farming and birdhouse predictions, which load and parse the timetracking config.
+ * Work submitted here must not call the client, it gets what it needs from the client thread and hands its
+ * results back with ClientThread.invoke.
+ */
+@Slf4j
+@Singleton
+public class PredictionExecutor {
+    private ExecutorService executor;
+
+    public synchronized void execute(Runnable task) {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "homeassistant-predictions");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Error predicting completion times", e);
+            }
+        });
+    }
+
+    /**
+     * Drops the work that has not started yet, the next prediction starts a new thread.
+     */
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.homeassistant.trackers;
+
+import com.homeassistant.HomeassistantConfig;
+import com.homeassistant.classes.PlayerIdentity;
+import com.homeassistant.classes.TickSeries;
+import com.homeassistant.trackers.events.HomeassistantEvents;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.Skill;
+import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.GameTick;
+import net.runelite.client.eventbus.EventBus;
+import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.*;
+
+/**
+ * Samples health, prayer, run energy and special attack every tick, and sends them to the set_entity_history service
+ * once a minute as the min, max and last value of every 6 seconds. The entity updates only carry the latest value
+ * and skip whatever changed in between, this gives graphs the whole session without a request per tick.
+ * Sent for the same entity ids as {@link PlayerDataTracker} uses, see docs/entity-history-service.md.
+ */
+@Slf4j
+@Singleton
+public class StatHistoryTracker {
+    public static final String SERVICE = "set_entity_history";
+
+    private static final int WINDOW_TICKS = 10;
+    private static final int FLUSH_TICKS = 100;
+    // Drained every FLUSH_TICKS whether homeassistant takes it or not, so this only has to hold one flush and the
+    // window that is kept back. While homeassistant is away the requests wait in the OutboundQueue, up to its limit.
+    private static final int CAPACITY_TICKS = 2 * FLUSH_TICKS;
+
+    private static final int HEALTH = 0;
+    private static final int PRAYER = 1;
+    private static final int RUN_ENERGY = 2;
+    private static final int SPECIAL_ATTACK = 3;
+    private static final String[] SUFFIXES = {"health", "prayer", "run_energy", "special_attack"};
+
+    private final Client client;
+    private final EventBus eventBus;
+    private final HomeassistantConfig config;
+    private final PlayerIdentity playerIdentity;
+
+    private final TickSeries series = new TickSeries(SUFFIXES.length, CAPACITY_TICKS);
+    private final int[] sample = new int[SUFFIXES.length];
+    private int ticksSinceFlush = 0;
+    private long overwrittenLogged = 0;
+    // Kept after logging out, the last samples are sent once the player has no name anymore
+    private String entityIdPrefix;
+
+    @Inject
+    public StatHistoryTracker(Client client, EventBus eventBus, HomeassistantConfig config, PlayerIdentity playerIdentity) {
+        this.client = client;
+        this.eventBus = eventBus;
+        this.config = config;
+        this.playerIdentity = playerIdentity;
+    }
+
+    public void onGameTick(GameTick event) {
+        if (!config.statHistory() || client.getGameState() != GameState.LOGGED_IN || client.getLocalPlayer() == null) {
+            return;
+        }
+
+        String prefix = playerIdentity.getEntityIdPrefix();
+        if (prefix == null) {
+            return;
+        }
+        if (!prefix.equals(entityIdPrefix)) {
+            // Another account, what was left belongs to the previous one
+            flush(true);
+            entityIdPrefix = prefix;
+        }
+
+        sample[HEALTH] = client.getBoostedSkillLevel(Skill.HITPOINTS);
+        sample[PRAYER] = client.getBoostedSkillLevel(Skill.PRAYER);
+        sample[RUN_ENERGY] = client.getEnergy() / 100;
+        sample[SPECIAL_ATTACK] = client.getVarpValue(300) / 10;
+        series.record(client.getTickCount(), System.currentTimeMillis(), sample);
+
+        if (++ticksSinceFlush >= FLUSH_TICKS) {
+            flush(false);
+        }
+    }
+
+    @Subscribe
+    public void onGameStateChanged(GameStateChanged event) {
+        GameState gameState = event.getGameState();
+        if (gameState == GameState.LOGIN_SCREEN || gameState == GameState.CONNECTION_LOST) {
+            flush(true);
+        }
+    }
+
+    @Subscribe
+    public void onConfigChanged(ConfigChanged event) {
+        if (event.getGroup().equals(HomeassistantConfig.CONFIG_GROUP) && event.getKey().equals("stat_history") && !config.statHistory()) {
+            series.clear();
+        }
+    }
+
+    /**
+     * Sends the windows that are complete, or everything when `all` is set.
+     */
+    private void flush(boolean all) {
+        ticksSinceFlush = 0;
+        long overwritten = series.getOverwritten() - overwrittenLogged;
+        if (overwritten > 0) {
+            overwrittenLogged += overwritten;
+            log.debug("Stat history lost {} ticks", overwritten);
+        }
+
+        TickSeries.Windows windows = series.drain(WINDOW_TICKS, all);
+        if (windows == null || entityIdPrefix == null) {
+            return;
+        }
+
+        List<Map<String, Object>> entities = new ArrayList<>(SUFFIXES.length);
+        for (int channel = 0; channel < SUFFIXES.length; channel++) {
+            Map<String, Object> entity = new HashMap<>();
+            entity.put("entity_id", entityIdPrefix + SUFFIXES[channel]);
+            entity.put("min", windows.getMin()[channel]);
+            entity.put("max", windows.getMax()[channel]);
+            entity.put("last", windows.getLast()[channel]);
+            entities.add(entity);
+        }
+
+        Map<String, Object> payload = new HashMap<>();
+        // 10 * 0.6 is 6.000000000000001
+        payload.put("window_seconds", WINDOW_TICKS * 600 / 1000.0);
+        payload.put("timestamps", windows.getStartTimes());
+        payload.put("entities", entities);
+        eventBus.post(new HomeassistantEvents.SendEvent(payload, SERVICE));
+    }
+}
@@ -4,12 +4,12 @@ import com.homeassistant.HomeassistantConfig;
 import com.homeassistant.trackers.events.HomeassistantEvents;
 import com.homeassistant.trackers.events.InternalEvents;
 import lombok.extern.slf4j.Slf4j;
-import net.runelite.api.ChatMessageType;
 import net.runelite.api.Client;
+import net.runelite.api.GameState;
 import net.runelite.api.Player;
-import net.runelite.api.events.CommandExecuted;
+import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.GameTick;
-import net.runelite.api.gameval.VarbitID;
+import net.runelite.api.events.VarbitChanged;
 import net.runelite.client.eventbus.EventBus;
 import net.runelite.client.eventbus.Subscribe;
 
@@ -17,19 +17,47 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.*;
 
+/**
+ * Dispatches varbit changes to the varbits configured by the user and the varbits the internal trackers watch.
+ * Changes come from {@link VarbitChanged}, and the subscribers are looked up in an array indexed by varbit id, so the
+ * cost depends on how often watched varbits change and not on how many are watched.
+ * Every watched varbit is read once after a watch changes or a login, no matter how many subscribers share it.
+ * Changes are only dispatched while logged in, the client sets the varbits while the account loads.
+ */
 @Slf4j
 @Singleton
 public class VarbitTracker {
+    // Varbit ids are unsigned shorts in the cache
+    private static final int MAX_VARBIT_ID = 0xFFFF;
 
     private final Client client;
     private final EventBus eventBus;
     private final HomeassistantConfig config;
 
-    private final Map<Integer, Integer> previousVarbitValues = new HashMap<>();
-    private final List<Integer> watchedVarbitIds = new ArrayList<>();
+    private final List<Subscriber> watchedVarbits = new ArrayList<>();
+    private final Map<String, List<Subscriber>> internalVarbits = new LinkedHashMap<>();
 
-    private final Map<String, List<Integer>> internalVarbitIds = new HashMap<>();
-    private final Map<String, Map<Integer, Integer>> previousInternalVarbitIds = new HashMap<>();
+    // varbit id -> everything watching it, null for varbits nobody watches
+    private Subscriber[][] index = new Subscriber[0][];
+    private boolean seedPending = false;
+
+    /**
+     * One watcher of one varbit, with the value it saw last.
+     */
+    private static final class Subscriber {
+        // null for the varbits from the config
+        private final String trackerId;
+        private final int varbitId;
+        private boolean known;
+        private int previous;
+
+        private Subscriber(String trackerId, int varbitId, Integer previous) {
+            this.trackerId = trackerId;
+            this.varbitId = varbitId;
+            this.known = previous != null;
+            this.previous = previous != null ? previous : 0;
+        }
+    }
 
     @Inject
     public VarbitTracker(Client client, EventBus eventBus, HomeassistantConfig config) {
@@ -44,94 +72,213 @@ public class VarbitTracker {
         setInternalWatch(id, varbitIds, null); // default to null
     }
 
-    public void setInternalWatch(String id, List<Integer> varbitIds, Integer overrideValue){
-        Map<Integer, Integer> values = new HashMap<>();
+    /**
+     * Replaces the varbits watched for `id`. `overrideValue` is the previous value the first time a tracker watches
+     * a varbit, so it can be told about the current value right away. Without it the first value is only stored.
+     */
+    public synchronized void setInternalWatch(String id, List<Integer> varbitIds, Integer overrideValue){
+        List<Subscriber> existing = internalVarbits.get(id);
+        List<Subscriber> subscribers = new ArrayList<>(varbitIds.size());
         for (int varbitId : varbitIds) {
-            if(!previousInternalVarbitIds.containsKey(id)){
-                values.put(varbitId, overrideValue);
-            }else{
-                values.put(varbitId, previousInternalVarbitIds.get(id).get(varbitId));
+            if (!isValidVarbitId(varbitId)) {
+                log.warn("Invalid internal varbit ID for {}: {}", id, varbitId);
+                continue;
+            }
+
+            Subscriber subscriber = null;
+            if (existing != null) {
+                for (Subscriber previous : existing) {
+                    if (previous.varbitId == varbitId) {
+                        subscriber = previous;
+                        break;
+                    }
+                }
             }
+            subscribers.add(subscriber != null ? subscriber : new Subscriber(id, varbitId, existing == null ? overrideValue : null));
         }
 
-        internalVarbitIds.put(id, varbitIds);
-        previousInternalVarbitIds.put(id, values);
+        internalVarbits.put(id, subscribers);
+        rebuildIndex();
 
         log.info("Watching internal varbits: {}, {}", id, varbitIds);
     }
 
-    private void parseWatchedVarbits() {
-        watchedVarbitIds.clear();
-        previousVarbitValues.clear();
+    private synchronized void parseWatchedVarbits() {
+        watchedVarbits.clear();
 
         String input = config.varbitIdsEvent();
         log.debug("input {}",input);
-        if (input == null || input.isBlank()) return;
+        if (input != null && !input.isBlank()) {
+            for (String part : input.split(",")) {
+                try {
+                    int id = Integer.parseInt(part.trim());
+                    if (!isValidVarbitId(id)) {
+                        log.warn("Invalid varbit ID in config: {}", part.trim());
+                        continue;
+                    }
 
-        for (String part : input.split(",")) {
-            try {
-                int id = Integer.parseInt(part.trim());
+                    watchedVarbits.add(new Subscriber(null, id, null));
+                } catch (NumberFormatException e) {
+                    log.warn("Invalid varbit ID in config: {}", part.trim());
+                }
+            }
+        }
+
+        rebuildIndex();
+        log.info("Watching varbits: {}", watchedVarbits.size());
+    }
+
+    /**
+     * Every varbit id that is watched by the config or a tracker, in ascending order.
+     */
+    public int[] getWatchedVarbitIds() {
+        Subscriber[][] current = index;
+        int count = 0;
+        for (Subscriber[] subscribers : current) {
+            if (subscribers != null) {
+                count++;
+            }
+        }
+
+        int[] varbitIds = new int[count];
+        int i = 0;
+        for (int varbitId = 0; varbitId < current.length; varbitId++) {
+            if (current[varbitId] != null) {
+                varbitIds[i++] = varbitId;
+            }
+        }
+        return varbitIds;
+    }
+
+    private static boolean isValidVarbitId(int varbitId) {
+        return varbitId >= 0 && varbitId <= MAX_VARBIT_ID;
+    }
+
+    private void rebuildIndex() {
+        int size = 0;
+        for (Subscriber subscriber : watchedVarbits) {
+            size = Math.max(size, subscriber.varbitId + 1);
+        }
+        for (List<Subscriber> subscribers : internalVarbits.values()) {
+            for (Subscriber subscriber : subscribers) {
+                size = Math.max(size, subscriber.varbitId + 1);
+            }
+        }
 
-                watchedVarbitIds.add(id);
-                previousVarbitValues.put(id, null); // initialize value
-            } catch (NumberFormatException e) {
-                log.warn("Invalid varbit ID in config: {}", part.trim());
+        Subscriber[][] rebuilt = new Subscriber[size][];
+        for (Subscriber subscriber : watchedVarbits) {
+            addToIndex(rebuilt, subscriber);
+        }
+        for (List<Subscriber> subscribers : internalVarbits.values()) {
+            for (Subscriber subscriber : subscribers) {
+                addToIndex(rebuilt, subscriber);
             }
         }
 
-        log.info("Watching varbits: {}", watchedVarbitIds);
+        index = rebuilt;
+        seedPending = size > 0;
+    }
+
+    private static void addToIndex(Subscriber[][] rebuilt, Subscriber subscriber) {
+        Subscriber[] current = rebuilt[subscriber.varbitId];
+        if (current == null) {
+            rebuilt[subscriber.varbitId] = new Subscriber[]{subscriber};
+            return;
+        }
+
+        Subscriber[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = subscriber;
+        rebuilt[subscriber.varbitId] = grown;
     }
 
     @Subscribe
+    public void onVarbitChanged(VarbitChanged event) {
+        if (client.getGameState() != GameState.LOGGED_IN || client.getLocalPlayer() == null) {
+            return;
+        }
+
+        int varbitId = event.getVarbitId();
+        Subscriber[][] current = index;
+        // -1 for varp changes
+        if (varbitId < 0 || varbitId >= current.length || current[varbitId] == null) {
+            return;
+        }
+
+        dispatch(current[varbitId], event.getValue());
+    }
+
+    /**
+     * Reads every watched varbit once after the watches changed, VarbitChanged only covers the changes after that.
+     */
     public void onGameTick(GameTick tick) {
+        if (!seedPending) {
+            return;
+        }
+
         Player player = client.getLocalPlayer();
         if (player == null) return;
 
-        if (!watchedVarbitIds.isEmpty()) {
-            for (int varbitId : watchedVarbitIds) {
-                int current = client.getVarbitValue(varbitId);
-                Integer previous = previousVarbitValues.get(varbitId);
+        Subscriber[][] current;
+        synchronized (this) {
+            current = index;
+            seedPending = false;
+        }
 
-                if (previous != null && current != previous) {
-                    log.debug("Varbit {} changed: {} -> {}", varbitId, previous, current);
+        for (int varbitId = 0; varbitId < current.length; varbitId++) {
+            if (current[varbitId] != null) {
+                dispatch(current[varbitId], client.getVarbitValue(varbitId));
+            }
+        }
+    }
 
-                    Map<String, Object> data = new HashMap<>();
-                    data.put("varbit_id", varbitId);
-                    data.put("new_value", current);
-                    data.put("old_value", previous);
+    private void dispatch(Subscriber[] subscribers, int value) {
+        for (Subscriber subscriber : subscribers) {
+            int previous = subscriber.previous;
+            boolean changed = subscriber.known && previous != value;
+            subscriber.previous = value;
+            subscriber.known = true;
+            if (!changed) {
+                continue;
+            }
 
-                    eventBus.post(new HomeassistantEvents.SendEvent(data, "trigger_varbit_change_notify"));
-                }
+            if (subscriber.trackerId == null) {
+                log.debug("Varbit {} changed: {} -> {}", subscriber.varbitId, previous, value);
+
+                Map<String, Object> data = new HashMap<>();
+                data.put("varbit_id", subscriber.varbitId);
+                data.put("new_value", value);
+                data.put("old_value", previous);
 
-                previousVarbitValues.put(varbitId, current);
+                eventBus.post(new HomeassistantEvents.SendEvent(data, "trigger_varbit_change_notify"));
+            } else {
+                log.debug("Internal Varbit {} changed: {} -> {}", subscriber.trackerId, previous, value);
+                eventBus.post(new InternalEvents.VarbitUpdate(subscriber.trackerId, subscriber.varbitId, previous, value));
             }
         }
+    }
 
-        if(!internalVarbitIds.isEmpty()){
-            for(String internalId : internalVarbitIds.keySet()){
-                List<Integer> values = internalVarbitIds.get(internalId);
-                if (!values.isEmpty()){
-                    for (int varbitId : values) {
-
-                        int current = client.getVarbitValue(varbitId);
-                        Integer previous = previousInternalVarbitIds.get(internalId).get(varbitId);
-
-                        if (previous != null && previous != current) {
-                            log.debug("Internal Varbit {} changed: {} -> {}", internalId, previous, current);
-                            eventBus.post(new InternalEvents.VarbitUpdate(internalId, varbitId, previous, current));
-                        }
+    /**
+     * The next account may have other values, they are read again on the first tick after the login and only stored.
+     */
+    @Subscribe
+    public synchronized void onGameStateChanged(GameStateChanged event) {
+        if (event.getGameState() != GameState.LOGIN_SCREEN) {
+            return;
+        }
 
-                        previousInternalVarbitIds.get(internalId).put(varbitId, current);
-                    }
+        for (Subscriber[] subscribers : index) {
+            if (subscribers != null) {
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.known = false;
                 }
-
             }
         }
+        seedPending = index.length > 0;
     }
 
     @Subscribe
     public void onConfigChanged(net.runelite.client.events.ConfigChanged event) {
-        if (event.getGroup().equals(HomeassistantConfig.CONFIG_GROUP)) {
+        if (event.getGroup().equals(HomeassistantConfig.CONFIG_GROUP) && event.getKey().equals("varbit_ids_event")) {
             parseWatchedVarbits();
         }
     }
@@ -1,5 +1,6 @@
 package com.homeassistant.trackers.events;
 
+import com.homeassistant.enums.EntityPriority;
 import lombok.Getter;
 
 import java.util.List;
@@ -11,10 +12,17 @@ public abstract class HomeassistantEvents
     public static class UpdateEntities extends HomeassistantEvents
     {
         private final List<Map<String, Object>> entities;
+        private final EntityPriority priority;
 
         public UpdateEntities(List<Map<String, Object>> entities)
+        {
+            this(entities, EntityPriority.NORMAL);
+        }
+
+        public UpdateEntities(List<Map<String, Object>> entities, EntityPriority priority)
         {
             this.entities = entities;
+            this.priority = priority;
         }
 
     }
@@ -24,11 +32,19 @@ public abstract class HomeassistantEvents
     {
         private final Map<String, Object> eventObj;
         private final String service;
+        // Sent on its own right away instead of with the other events of the tick
+        private final boolean urgent;
 
         public SendEvent(Map<String, Object> eventObj, String service)
+        {
+            this(eventObj, service, false);
+        }
+
+        public SendEvent(Map<String, Object> eventObj, String service, boolean urgent)
         {
             this.eventObj = eventObj;
             this.service = service;
+            this.urgent = urgent;
         }
 
     }
@@ -0,0 +1,245 @@
+package com.homeassistant;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.homeassistant.benchmark.PluginHarness;
+import com.homeassistant.enums.EntityPriority;
+import com.homeassistant.network.OutboundQueue;
+import com.homeassistant.trackers.events.HomeassistantEvents;
+import net.runelite.api.events.GameTick;
+import net.runelite.client.eventbus.EventBus;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the plugin against a homeassistant that refuses every connection for 600 ticks, six minutes of game time, while
+ * entities and events keep coming. The outbound queue's clock moves a game tick along with every tick, so the backoff
+ * grows to its longest and more events come in than the queue holds. Once homeassistant is back, it has to end up with
+ * the latest state of every entity and every event except the oldest ones the queue dropped.
+ * Homeassistant merges the partial entities into what it has, see docs/partial-entity-updates.md.
+ */
+public class OutageTest {
+    private static final String EVENT_SERVICE = "trigger_outage_test";
+    private static final String SERVICES_PATH = "/api/services/runelite/";
+    private static final int ENTITIES = 20;
+    private static final int EVENT_EVERY_TICKS = 5;
+    private static final int OUTAGE_TICKS = 600;
+    // Game time per tick on the outbound queue's clock, and the real time the test waits for the callbacks
+    private static final long GAME_TICK_MS = 600L;
+    private static final long TICK_MS = 10L;
+    private static final long CONVERGE_TIMEOUT_MS = 30_000L;
+    // OutboundQueue's longest backoff
+    private static final long MAX_BACKOFF_MS = 60_000L;
+
+    private final Gson gson = new Gson();
+    private final MockWebServer server = new MockWebServer();
+    private final TickClock clock = new TickClock();
+    private volatile boolean down = false;
+    // Clock time of every refused request
+    private final List<Long> refused = Collections.synchronizedList(new ArrayList<>());
+
+    // What homeassistant has, attribute values as JSON
+    private final Map<String, Map<String, String>> received = new HashMap<>();
+    private final List<Integer> receivedEvents = new ArrayList<>();
+
+    private final Map<String, Map<String, String>> expected = new HashMap<>();
+    private final List<Integer> expectedEvents = new ArrayList<>();
+
+    private EventBus eventBus;
+    private OutboundQueue outboundQueue;
+    private HomeassistantPlugin plugin;
+    private int tick = 0;
+
+    @Before
+    public void setUp() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (down) {
+                    refused.add(clock.millis());
+                    return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+                }
+                received(request.getPath(), request.getBody().readUtf8());
+                return new MockResponse().setHeader("Content-Type", "application/json").setBody("[]");
+            }
+        });
+        server.start();
+
+        String url = server.url("/").toString();
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("homeassistantUrl", url.substring(0, url.length() - 1));
+        overrides.put("homeassistantToken", "outage-test");
+        overrides.put("http2", false);
+        overrides.put("compressRequests", false);
+        overrides.put("batchEvents", false);
+        PluginHarness harness = new PluginHarness(overrides, binder -> binder.bind(Clock.class).toInstance(clock));
+        eventBus = harness.getEventBus();
+        outboundQueue = harness.getInstance(OutboundQueue.class);
+
+        plugin = harness.getInstance(HomeassistantPlugin.class);
+        plugin.startUp();
+        eventBus.register(plugin);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        eventBus.unregister(plugin);
+        plugin.shutDown();
+        server.shutdown();
+    }
+
+    @Test
+    public void noUpdateIsLostAcrossAnOutage() throws Exception {
+        runTicks(20);
+        down = true;
+        runTicks(OUTAGE_TICKS);
+        down = false;
+        runTicks(20);
+
+        // Only game ticks from here on, the backoff has to run out and the queue has to drain
+        long deadline = System.currentTimeMillis() + CONVERGE_TIMEOUT_MS;
+        while (!converged() && System.currentTimeMillis() < deadline) {
+            clock.tick();
+            eventBus.post(new GameTick());
+            Thread.sleep(TICK_MS);
+        }
+
+        assertTrue("homeassistant was never down", !refused.isEmpty());
+        long longestGap = 0;
+        synchronized (refused) {
+            for (int i = 1; i < refused.size(); i++) {
+                longestGap = Math.max(longestGap, refused.get(i) - refused.get(i - 1));
+            }
+        }
+        // Within a tick or two of the clock, the attempts go out on the first tick that is due
+        assertTrue("the backoff never reached its longest, longest gap " + longestGap + " ms",
+                longestGap >= MAX_BACKOFF_MS - GAME_TICK_MS && longestGap <= MAX_BACKOFF_MS + 2 * GAME_TICK_MS);
+
+        synchronized (this) {
+            long dropped = outboundQueue.getDropped();
+            assertTrue("the outbound queue never filled up", dropped > 0);
+            // The queue drops its oldest, so what arrived is everything after the dropped ones, once each
+            List<Integer> events = new ArrayList<>(receivedEvents);
+            Collections.sort(events);
+            assertEquals(expectedEvents.size() - dropped, events.size());
+            assertEquals(new ArrayList<>(expectedEvents.subList((int) dropped, expectedEvents.size())), events);
+            for (Map.Entry<String, Map<String, String>> entity : expected.entrySet()) {
+                assertEquals(entity.getKey(), entity.getValue(), received.get(entity.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Every tick updates the state of every entity, every few ticks an event goes out as well.
+     */
+    private void runTicks(int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            tick++;
+            clock.tick();
+            List<Map<String, Object>> entities = new ArrayList<>(ENTITIES);
+            for (int entity = 0; entity < ENTITIES; entity++) {
+                Map<String, Object> attributes = new HashMap<>();
+                attributes.put("entity_id", "sensor.runelite_outage_test_" + entity);
+                attributes.put("state", tick * ENTITIES + entity);
+                attributes.put("icon", "mdi:test-tube");
+                entities.add(attributes);
+                expected(attributes);
+            }
+            eventBus.post(new HomeassistantEvents.UpdateEntities(entities, EntityPriority.HIGH));
+
+            if (tick % EVENT_EVERY_TICKS == 0) {
+                Map<String, Object> event = new HashMap<>();
+                event.put("seq", tick);
+                synchronized (this) {
+                    expectedEvents.add(tick);
+                }
+                eventBus.post(new HomeassistantEvents.SendEvent(event, EVENT_SERVICE));
+            }
+
+            eventBus.post(new GameTick());
+            Thread.sleep(TICK_MS);
+        }
+    }
+
+    private synchronized void expected(Map<String, Object> entity) {
+        Map<String, String> attributes = new HashMap<>();
+        for (Map.Entry<String, Object> attribute : entity.entrySet()) {
+            attributes.put(attribute.getKey(), gson.toJson(attribute.getValue()));
+        }
+        expected.put((String) entity.get("entity_id"), attributes);
+    }
+
+    private synchronized void received(String path, String body) {
+        if (path == null || !path.startsWith(SERVICES_PATH)) {
+            return;
+        }
+
+        String service = path.substring(SERVICES_PATH.length());
+        JsonObject payload = new JsonParser().parse(body).getAsJsonObject();
+        if (service.equals(EVENT_SERVICE)) {
+            receivedEvents.add(payload.get("seq").getAsInt());
+        } else if (service.equals(OutboundQueue.ENTITY_SERVICE)) {
+            for (JsonElement element : payload.getAsJsonArray("entities")) {
+                JsonObject entity = element.getAsJsonObject();
+                Map<String, String> attributes = received.computeIfAbsent(entity.get("entity_id").getAsString(), id -> new HashMap<>());
+                for (Map.Entry<String, JsonElement> attribute : entity.entrySet()) {
+                    attributes.put(attribute.getKey(), attribute.getValue().toString());
+                }
+            }
+        }
+    }
+
+    private synchronized boolean converged() {
+        return receivedEvents.size() + outboundQueue.getDropped() >= expectedEvents.size() && expected.entrySet().stream()
+                .allMatch(entity -> entity.getValue().equals(received.get(entity.getKey())));
+    }
+
+    /**
+     * Stands still until the test moves it a game tick along.
+     */
+    private static class TickClock extends Clock {
+        private final AtomicLong millis = new AtomicLong(1_700_000_000_000L);
+
+        void tick() {
+            millis.addAndGet(GAME_TICK_MS);
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
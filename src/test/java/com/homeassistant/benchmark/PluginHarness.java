@@ -0,0 +1,141 @@
+package com.homeassistant.benchmark;
+
+import com.google.gson.Gson;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.util.Modules;
+import com.homeassistant.HomeassistantConfig;
+import com.homeassistant.classes.PluginStorage;
+import com.homeassistant.trackers.PredictionExecutor;
+import lombok.Getter;
+import net.runelite.api.Client;
+import net.runelite.client.Notifier;
+import net.runelite.client.callback.ClientThread;
+import net.runelite.client.config.ConfigManager;
+import net.runelite.client.eventbus.EventBus;
+import net.runelite.client.events.ConfigChanged;
+import net.runelite.client.game.ItemManager;
+import net.runelite.client.plugins.timetracking.TimeTrackingConfig;
+import net.runelite.client.ui.overlay.OverlayManager;
+import okhttp3.OkHttpClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The plugin's object graph against a stubbed Client and a mocked ConfigManager. Client thread invokes and
+ * predictions run inline on the calling thread, so a benchmark or test drives everything from one thread.
+ * The plugin has to be registered on {@link #getEventBus()} after starting it, like RuneLite's plugin manager does.
+ */
+public class PluginHarness {
+    @Getter
+    private final Stubs.ClientState state = new Stubs.ClientState();
+    @Getter
+    private final EventBus eventBus = new EventBus();
+    private final Map<String, String> configuration = new ConcurrentHashMap<>();
+    private final Injector injector;
+
+    /**
+     * `configOverrides` are HomeassistantConfig values keyed by method name. Recording, token validation and the
+     * metrics overlay are off unless overridden. The ConfigManager keeps what is written in memory and the plugin's
+     * files go to a new temporary directory. `modules` bind anything else, like a transport that records its calls,
+     * and replace the harness' own bindings, like a clock the test moves along.
+     */
+    public PluginHarness(Map<String, Object> configOverrides, Module... modules) {
+        Client client = Stubs.client(state);
+
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("recordReplay", false);
+        overrides.put("validateToken", false);
+        overrides.put("pluginMetricsOverlay", false);
+        overrides.putAll(configOverrides);
+        HomeassistantConfig config = Stubs.config(HomeassistantConfig.class, overrides);
+
+        ConfigManager configManager = mock(ConfigManager.class);
+        when(configManager.getConfig(TimeTrackingConfig.class)).thenReturn(Stubs.config(TimeTrackingConfig.class));
+        when(configManager.getRSProfiles()).thenReturn(Collections.emptyList());
+        // Writes post a ConfigChanged on the writing thread, like the real one
+        when(configManager.getConfiguration(anyString(), anyString()))
+                .thenAnswer(invocation -> configuration.get(invocation.getArgument(0) + "." + invocation.getArgument(1)));
+        doAnswer(invocation -> {
+            configured(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        }).when(configManager).setConfiguration(anyString(), anyString(), anyString());
+        doAnswer(invocation -> {
+            configured(invocation.getArgument(0), invocation.getArgument(1), null);
+            return null;
+        }).when(configManager).unsetConfiguration(anyString(), anyString());
+
+        ClientThread clientThread = mock(ClientThread.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(clientThread).invoke(any(Runnable.class));
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(clientThread).invokeLater(any(Runnable.class));
+
+        PredictionExecutor predictionExecutor = mock(PredictionExecutor.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(predictionExecutor).execute(any(Runnable.class));
+
+        Module harness = binder -> {
+            binder.bind(Client.class).toInstance(client);
+            binder.bind(ClientThread.class).toInstance(clientThread);
+            binder.bind(HomeassistantConfig.class).toInstance(config);
+            binder.bind(ConfigManager.class).toInstance(configManager);
+            binder.bind(PredictionExecutor.class).toInstance(predictionExecutor);
+            binder.bind(EventBus.class).toInstance(eventBus);
+            binder.bind(Gson.class).toInstance(new Gson());
+            binder.bind(OkHttpClient.class).toInstance(new OkHttpClient());
+            binder.bind(ItemManager.class).toInstance(mock(ItemManager.class));
+            binder.bind(Notifier.class).toInstance(mock(Notifier.class));
+            binder.bind(OverlayManager.class).toInstance(mock(OverlayManager.class));
+            binder.bind(PluginStorage.class).toInstance(new PluginStorage(storageDirectory()));
+            binder.bind(Clock.class).toInstance(Clock.systemUTC());
+        };
+        injector = Guice.createInjector(Modules.override(harness).with(modules));
+    }
+
+    public <T> T getInstance(Class<T> type) {
+        return injector.getInstance(type);
+    }
+
+    private void configured(String group, String key, String value) {
+        String oldValue = value == null ? configuration.remove(group + "." + key) : configuration.put(group + "." + key, value);
+        ConfigChanged event = new ConfigChanged();
+        event.setGroup(group);
+        event.setKey(key);
+        event.setOldValue(oldValue);
+        event.setNewValue(value);
+        eventBus.post(event);
+    }
+
+    // Every harness starts without anything a previous run left behind
+    private static File storageDirectory() {
+        try {
+            File directory = Files.createTempDirectory("homeassistant-harness").toFile();
+            directory.deleteOnExit();
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.homeassistant.benchmark;
+
+import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.Player;
+import net.runelite.api.Skill;
+import net.runelite.api.coords.WorldPoint;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Proxy stubs of the RuneLite interfaces the benchmarks and tests need. They are cheaper per call than mocks, so the
+ * benchmarks measure the plugin and not the stubbing.
+ */
+public final class Stubs {
+    private Stubs() {
+    }
+
+    /**
+     * What the stubbed {@link Client} answers with, benchmarks change it between invocations.
+     */
+    public static final class ClientState {
+        public String playerName = "Iron Man_ 2";
+        public WorldPoint location = new WorldPoint(3222, 3218, 0);
+        public GameState gameState = GameState.LOGGED_IN;
+        public int tickCount = 0;
+        public int world = 302;
+        public int energy = 10000;
+        public int animation = -1;
+        public int poseAnimation = 808;
+        public int idlePoseAnimation = 808;
+        public boolean interacting = false;
+        // Indexed by Skill.ordinal()
+        public final int[] boostedSkills = new int[Skill.values().length];
+        public final int[] realSkills = new int[Skill.values().length];
+        public final int[] varps = new int[4096];
+        public final int[] varbits = new int[0x10000];
+    }
+
+    public static Client client(ClientState state) {
+        Player[] self = new Player[1];
+        Player player = proxy(Player.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return state.playerName;
+                case "getWorldLocation":
+                    return state.location;
+                case "getAnimation":
+                    return state.animation;
+                case "getPoseAnimation":
+                    return state.poseAnimation;
+                case "getIdlePoseAnimation":
+                    return state.idlePoseAnimation;
+                case "getInteracting":
+                    return state.interacting ? self[0] : null;
+                default:
+                    return null;
+            }
+        });
+        self[0] = player;
+
+        return proxy(Client.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getLocalPlayer":
+                    return state.playerName == null ? null : player;
+                case "getGameState":
+                    return state.gameState;
+                case "getTickCount":
+                    return state.tickCount;
+                case "getWorld":
+                    return state.world;
+                case "getEnergy":
+                    return state.energy;
+                case "getBoostedSkillLevel":
+                    return state.boostedSkills[((Skill) args[0]).ordinal()];
+                case "getRealSkillLevel":
+                    return state.realSkills[((Skill) args[0]).ordinal()];
+                case "getVarps":
+                    return state.varps;
+                case "getVarpValue":
+                    return args[0] instanceof Integer ? state.varps[(Integer) args[0]] : null;
+                case "getVarbitValue":
+                    return args[0] instanceof Integer ? state.varbits[(Integer) args[0]] : null;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * A config interface where every toggle is on, strings are empty and numbers are 0.
+     */
+    public static <T> T config(Class<T> type) {
+        return config(type, Collections.emptyMap());
+    }
+
+    /**
+     * Same as {@link #config(Class)}, with the values in `overrides` keyed by method name.
+     */
+    public static <T> T config(Class<T> type, Map<String, Object> overrides) {
+        return proxy(type, (method, args) -> overrides.get(method.getName()));
+    }
+
+    private interface Answer {
+        Object answer(Method method, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Answer answer) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "hashCode":
+                        return System.identityHashCode(self);
+                    case "equals":
+                        return self == args[0];
+                    default:
+                        return type.getSimpleName() + " stub";
+                }
+            }
+
+            Object value = answer.answer(method, args);
+            return value != null ? value : defaultValue(method.getReturnType());
+        });
+        return type.cast(proxy);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return true;
+        }
+        if (type == String.class) {
+            return "";
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == char.class) {
+            return (char) 0;
+        }
+        return null;
+    }
+}
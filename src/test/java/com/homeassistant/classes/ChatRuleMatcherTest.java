@@ -0,0 +1,97 @@
+package com.homeassistant.classes;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+public class ChatRuleMatcherTest {
+    @Test
+    public void literalStopsAtGroupsAndClassEscapes() {
+        assertEquals("your vorkath kill count is: ", ChatRuleMatcher.requiredLiteral("Your Vorkath kill count is: (?<count>\\d+)"));
+        assertEquals(" coins", ChatRuleMatcher.requiredLiteral("\\d+ coins"));
+        // Escaped characters mean themselves
+        assertEquals("valuable drop: abyssal whip (", ChatRuleMatcher.requiredLiteral("Valuable drop: Abyssal whip \\((?<value>[\\d,]+) coins\\)"));
+        assertEquals("", ChatRuleMatcher.requiredLiteral("\\Qa.b\\E"));
+        assertEquals("tail", ChatRuleMatcher.requiredLiteral("(\\Q)\\E)tail"));
+    }
+
+    @Test
+    public void literalLeavesOutOptionalCharacters() {
+        assertEquals("abc", ChatRuleMatcher.requiredLiteral("abcd?efg"));
+        assertEquals("ab", ChatRuleMatcher.requiredLiteral("abc*"));
+        assertEquals("cdef", ChatRuleMatcher.requiredLiteral("ab{2}cdef"));
+        assertEquals("abc", ChatRuleMatcher.requiredLiteral("abc+de"));
+    }
+
+    @Test
+    public void literalOfAlternativesAndFlags() {
+        assertEquals("", ChatRuleMatcher.requiredLiteral("foo|bar"));
+        assertEquals(" baz", ChatRuleMatcher.requiredLiteral("(foo|bar) baz"));
+        assertEquals("hello world", ChatRuleMatcher.requiredLiteral("(?i)Hello World"));
+        assertEquals("", ChatRuleMatcher.requiredLiteral("(?x)hello world"));
+    }
+
+    @Test
+    public void literalAfterClasses() {
+        assertEquals("xyz", ChatRuleMatcher.requiredLiteral("[a-z&&[^aeiou]]xyz"));
+        assertEquals("abc", ChatRuleMatcher.requiredLiteral("[a-c[x-z]]abc"));
+        assertEquals("def", ChatRuleMatcher.requiredLiteral("[]abc]def"));
+        assertEquals("def", ChatRuleMatcher.requiredLiteral("[^]abc]def"));
+        assertEquals("abc", ChatRuleMatcher.requiredLiteral("[\\]]abc"));
+        assertEquals("abc", ChatRuleMatcher.requiredLiteral("[\\Q]\\E]abc"));
+    }
+
+    /**
+     * Every rule whose regex finds a match is reported, the same as running every regex on every message.
+     */
+    @Test
+    public void everyMatchingRuleIsRun() {
+        List<ChatRuleMatcher.Rule> rules = Arrays.asList(
+                rule("kc", "Your (?<boss>.+) kill count is: (?<count>\\d+)"),
+                rule("drop", "Valuable drop: (?<item>[^(]+) \\((?<value>[\\d,]+) coins\\)"),
+                rule("level", "(?i)congratulations, you've just advanced your (?<skill>\\w+) level"),
+                rule("consonant", "[a-z&&[^aeiou]]ead"),
+                rule("short", "ok"),
+                rule("alternative", "shrimps|lobster"),
+                rule("optional", "colou?r"),
+                rule("quoted", "(\\Q(x)\\E) marks the spot")
+        );
+        ChatRuleMatcher matcher = new ChatRuleMatcher(rules);
+
+        List<String> messages = Arrays.asList(
+                "Your Vorkath kill count is: 1234.",
+                "YOUR VORKATH KILL COUNT IS: 1234.",
+                "Valuable drop: Abyssal whip (1,500,000 coins)",
+                "CONGRATULATIONS, YOU'VE JUST ADVANCED YOUR ATTACK LEVEL.",
+                "You eat the bread.",
+                "You eat the aead.",
+                "That's ok, I guess.",
+                "You catch some shrimps.",
+                "You cook a lobster.",
+                "What a lovely colour, or color.",
+                "(x) marks the spot",
+                "Nothing to see here."
+        );
+        for (String message : messages) {
+            Set<String> expected = new TreeSet<>();
+            for (ChatRuleMatcher.Rule rule : rules) {
+                if (rule.getPattern().matcher(message).find()) {
+                    expected.add(rule.getService());
+                }
+            }
+
+            List<String> matched = new ArrayList<>();
+            matcher.match(message, (rule, ruleMatcher, text) -> matched.add(rule.getService()));
+            assertEquals(message, expected, new TreeSet<>(matched));
+            // Once each, even when the literal shows up twice
+            assertEquals(message, expected.size(), matched.size());
+        }
+    }
+
+    private static ChatRuleMatcher.Rule rule(String service, String regex) {
+        return new ChatRuleMatcher.Rule(service, Pattern.compile(regex));
+    }
+}
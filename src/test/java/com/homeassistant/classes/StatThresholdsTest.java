@@ -0,0 +1,96 @@
+package com.homeassistant.classes;
+
+import net.runelite.api.Skill;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StatThresholdsTest {
+    private static final int HEALTH = Skill.HITPOINTS.ordinal();
+    private static final int PRAYER = Skill.PRAYER.ordinal();
+
+    private final int[] values = new int[StatThresholds.STAT_COUNT];
+    private final int[] maximums = new int[StatThresholds.STAT_COUNT];
+    private final List<String> changes = new ArrayList<>();
+
+    @Test
+    public void invalidRulesAreSkipped() {
+        // Clearing on the wrong side of the threshold
+        assertTrue(StatThresholds.parse("health below 20 10").isEmpty());
+        assertTrue(StatThresholds.parse("health above 80 90").isEmpty());
+        // Percent and absolute mixed
+        assertTrue(StatThresholds.parse("health below 20% 30").isEmpty());
+        assertTrue(StatThresholds.parse("mana below 20").isEmpty());
+        assertTrue(StatThresholds.parse("health under 20").isEmpty());
+        assertTrue(StatThresholds.parse("health below -1").isEmpty());
+
+        StatThresholds thresholds = StatThresholds.parse("health below 20 10\n# comment\n\nhealth below 20 20\nRun_Energy below 10");
+        assertEquals(2, thresholds.getStats().length);
+        assertTrue(thresholds.uses(HEALTH));
+        assertTrue(thresholds.uses(StatThresholds.RUN_ENERGY));
+        assertFalse(thresholds.uses(PRAYER));
+    }
+
+    @Test
+    public void belowAndAbove() {
+        StatThresholds thresholds = StatThresholds.parse("health below 20\nhealth below 50%\nprayer above 70\nprayer above 50%");
+        maximums[HEALTH] = 99;
+        maximums[PRAYER] = 70;
+
+        // On the threshold is not past it
+        evaluate(thresholds, 50, 35);
+        assertEquals(Collections.emptyList(), changes);
+
+        // 49 of 99 is under 50%, 36 of 70 is over it
+        evaluate(thresholds, 49, 36);
+        assertEquals(Arrays.asList("health 49 crossed", "prayer 36 crossed"), changes);
+        changes.clear();
+
+        evaluate(thresholds, 19, 71);
+        assertEquals(Arrays.asList("health 19 crossed", "prayer 71 crossed"), changes);
+    }
+
+    @Test
+    public void hoveringValueFiresOnce() {
+        StatThresholds thresholds = StatThresholds.parse("health below 20 30");
+        for (int health : new int[]{25, 19, 21, 19, 25, 29, 30, 31, 19}) {
+            evaluate(thresholds, health, 0);
+        }
+        assertEquals(Arrays.asList("health 19 crossed", "health 30 cleared", "health 19 crossed"), changes);
+    }
+
+    @Test
+    public void percentClearsAtItsOwnLevel() {
+        StatThresholds thresholds = StatThresholds.parse("health below 50% 70%");
+        maximums[HEALTH] = 90;
+        for (int health : new int[]{44, 62, 63}) {
+            evaluate(thresholds, health, 0);
+        }
+        assertEquals(Arrays.asList("health 44 crossed", "health 63 cleared"), changes);
+    }
+
+    @Test
+    public void firstEvaluationAfterResetOnlyReportsCrossedRules() {
+        StatThresholds thresholds = StatThresholds.parse("health below 20\nrun_energy below 10");
+        values[StatThresholds.RUN_ENERGY] = 50;
+        evaluate(thresholds, 10, 0);
+        assertEquals(Collections.singletonList("health 10 crossed"), changes);
+        changes.clear();
+
+        thresholds.reset();
+        values[StatThresholds.RUN_ENERGY] = 5;
+        evaluate(thresholds, 50, 0);
+        assertEquals(Collections.singletonList("run_energy 5 crossed"), changes);
+    }
+
+    private void evaluate(StatThresholds thresholds, int health, int prayer) {
+        values[HEALTH] = health;
+        values[PRAYER] = prayer;
+        thresholds.evaluate(values, maximums, (rule, value, crossed) ->
+                changes.add(rule.getStatName() + " " + value + (crossed ? " crossed" : " cleared")));
+    }
+}
@@ -0,0 +1,105 @@
+package com.homeassistant.classes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TickSeriesTest {
+    private static final int WINDOW_TICKS = 10;
+    private static final long START_MILLIS = 1_760_788_800_000L;
+
+    @Test
+    public void windowsAreAlignedOnTheTickCount() {
+        TickSeries series = new TickSeries(2, 100);
+        record(series, 5, 24);
+
+        // 20 to 24 can still grow, they stay for the next drain
+        TickSeries.Windows windows = series.drain(WINDOW_TICKS, false);
+        assertArrayEquals(new int[]{5, 10}, windows.getStartTicks());
+        assertArrayEquals(new long[]{millis(5), millis(10)}, windows.getStartTimes());
+        assertArrayEquals(new int[]{5, 10}, windows.getMin()[0]);
+        assertArrayEquals(new int[]{9, 19}, windows.getMax()[0]);
+        assertArrayEquals(new int[]{9, 19}, windows.getLast()[0]);
+        // The second channel counts down
+        assertArrayEquals(new int[]{-9, -19}, windows.getMin()[1]);
+        assertArrayEquals(new int[]{-5, -10}, windows.getMax()[1]);
+        assertEquals(5, series.pending());
+
+        // Only the latest window, nothing to take yet
+        assertNull(series.drain(WINDOW_TICKS, false));
+        assertEquals(5, series.pending());
+
+        windows = series.drain(WINDOW_TICKS, true);
+        assertArrayEquals(new int[]{20}, windows.getStartTicks());
+        assertArrayEquals(new int[]{20}, windows.getMin()[0]);
+        assertArrayEquals(new int[]{24}, windows.getLast()[0]);
+        assertNull(series.drain(WINDOW_TICKS, true));
+    }
+
+    @Test
+    public void tickCountJumpingBackStartsANewWindow() {
+        TickSeries series = new TickSeries(2, 100);
+        record(series, 100, 104);
+        // Logged in again, the tick count starts over
+        record(series, 3, 6);
+
+        TickSeries.Windows windows = series.drain(WINDOW_TICKS, true);
+        assertArrayEquals(new int[]{100, 3}, windows.getStartTicks());
+        assertArrayEquals(new int[]{100, 3}, windows.getMin()[0]);
+        assertArrayEquals(new int[]{104, 6}, windows.getLast()[0]);
+    }
+
+    @Test
+    public void tickCountJumpingBackIntoTheSameWindow() {
+        TickSeries series = new TickSeries(2, 100);
+        record(series, 5, 8);
+        record(series, 2, 4);
+
+        // The window after the jump is the latest, only the one before it is taken
+        TickSeries.Windows windows = series.drain(WINDOW_TICKS, false);
+        assertArrayEquals(new int[]{5}, windows.getStartTicks());
+        assertArrayEquals(new int[]{8}, windows.getLast()[0]);
+        assertEquals(3, series.pending());
+
+        windows = series.drain(WINDOW_TICKS, true);
+        assertArrayEquals(new int[]{2}, windows.getStartTicks());
+        assertArrayEquals(new int[]{2}, windows.getMin()[0]);
+        assertArrayEquals(new int[]{4}, windows.getMax()[0]);
+    }
+
+    @Test
+    public void overwrittenSamplesAreCounted() {
+        TickSeries series = new TickSeries(2, 10);
+        record(series, 0, 24);
+        assertEquals(15, series.getOverwritten());
+        assertEquals(10, series.pending());
+
+        // Only the latest 10 are left
+        TickSeries.Windows windows = series.drain(WINDOW_TICKS, true);
+        assertArrayEquals(new int[]{15, 20}, windows.getStartTicks());
+        assertArrayEquals(new int[]{15, 20}, windows.getMin()[0]);
+        assertArrayEquals(new int[]{19, 24}, windows.getMax()[0]);
+
+        // Drained in time, nothing more is lost
+        record(series, 25, 34);
+        assertEquals(15, series.getOverwritten());
+        series.clear();
+        assertEquals(0, series.pending());
+        assertNull(series.drain(WINDOW_TICKS, true));
+    }
+
+    /**
+     * Records the ticks `from` to `to`, with the tick as the first channel and minus the tick as the second.
+     */
+    private static void record(TickSeries series, int from, int to) {
+        for (int tick = from; tick <= to; tick++) {
+            series.record(tick, millis(tick), new int[]{tick, -tick});
+        }
+    }
+
+    private static long millis(int tick) {
+        return START_MILLIS + tick * 600L;
+    }
+}
@@ -0,0 +1,128 @@
+package com.homeassistant.classes;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimerWheelTest {
+    private static final long START = 1_700_000_000L;
+
+    private final TimerWheel<String> wheel = new TimerWheel<>();
+    // "key@second" for every timer that fired
+    private final List<String> fired = new ArrayList<>();
+    private long now;
+
+    @Before
+    public void setUp() {
+        now = START;
+        wheel.advance(now, this::fired);
+    }
+
+    @Test
+    public void deadlinesPastTheWheelWaitForTheirSecond() {
+        // Shares a slot with START + 1000 and START + 2024 without being due there
+        wheel.schedule("far", START + 3048);
+        wheel.schedule("near", START + 10);
+        advanceTo(START + 4000);
+        assertEquals(Arrays.asList("near@" + (START + 10), "far@" + (START + 3048)), fired);
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void longPauseFiresEverythingThatPassed() {
+        wheel.schedule("a", START + 5);
+        wheel.schedule("b", START + 5000);
+        wheel.schedule("c", START + 20_000);
+        advance(START + 10_000);
+        assertEquals(Arrays.asList("a@" + (START + 10_000), "b@" + (START + 10_000)), sorted(fired));
+        assertFalse(wheel.isEmpty());
+
+        advance(START + 20_000);
+        assertEquals(3, fired.size());
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void schedulingAgainReplacesTheTimer() {
+        wheel.schedule("a", START + 10);
+        wheel.schedule("a", START + 20);
+        advanceTo(START + 15);
+        assertEquals(Collections.emptyList(), fired);
+
+        advanceTo(START + 30);
+        assertEquals(Collections.singletonList("a@" + (START + 20)), fired);
+
+        // Earlier than before works as well
+        wheel.schedule("b", START + 100);
+        wheel.schedule("b", START + 40);
+        advanceTo(START + 100);
+        assertEquals(Arrays.asList("a@" + (START + 20), "b@" + (START + 40)), fired);
+    }
+
+    @Test
+    public void passedDeadlineFiresOnTheNextAdvance() {
+        wheel.schedule("late", START - 100);
+        assertEquals(Collections.emptyList(), fired);
+        advance(START + 1);
+        assertEquals(Collections.singletonList("late@" + (START + 1)), fired);
+    }
+
+    @Test
+    public void cancelledTimersDontFire() {
+        wheel.schedule("a", START + 10);
+        wheel.schedule("b", START + 10);
+        wheel.cancel("a");
+        // Cancelling something that isn't scheduled does nothing
+        wheel.cancel("c");
+        advanceTo(START + 20);
+        assertEquals(Collections.singletonList("b@" + (START + 10)), fired);
+
+        wheel.schedule("d", START + 30);
+        wheel.clear();
+        assertTrue(wheel.isEmpty());
+        advanceTo(START + 40);
+        assertEquals(1, fired.size());
+    }
+
+    @Test
+    public void callbacksCanScheduleAgain() {
+        wheel.schedule("repeat", START + 10);
+        for (long second = START + 1; second <= START + 35; second++) {
+            now = second;
+            wheel.advance(now, key -> {
+                fired(key);
+                wheel.schedule(key, now + 10);
+            });
+        }
+        assertEquals(Arrays.asList("repeat@" + (START + 10), "repeat@" + (START + 20), "repeat@" + (START + 30)), fired);
+    }
+
+    /**
+     * Advances one second at a time, like the game ticks do.
+     */
+    private void advanceTo(long end) {
+        while (now < end) {
+            advance(now + 1);
+        }
+    }
+
+    private void advance(long second) {
+        now = second;
+        wheel.advance(now, this::fired);
+    }
+
+    private void fired(String key) {
+        fired.add(key + "@" + now);
+    }
+
+    private static List<String> sorted(List<String> list) {
+        List<String> copy = new ArrayList<>(list);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,47 @@
+package com.homeassistant.network;
+
+import com.google.gson.Gson;
+import com.homeassistant.classes.PluginStorage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EntityStateStoreTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The undelivered entities are sent once after a restart, the same state posted by the trackers afterwards is not
+     * a change.
+     */
+    @Test
+    public void restoredEntitiesEqualWhatTheTrackersPost() {
+        PluginStorage storage = new PluginStorage(folder.getRoot());
+        EntityStateStore before = new EntityStateStore(storage, new Gson());
+        before.update(entity(), false);
+        before.save();
+
+        EntityStateStore after = new EntityStateStore(storage, new Gson());
+        after.load();
+        assertEquals(Collections.singletonList(entity()), after.drain());
+
+        after.update(entity(), false);
+        assertTrue(after.drain().isEmpty());
+    }
+
+    private static Map<String, Object> entity() {
+        Map<String, Object> entity = new HashMap<>();
+        entity.put("entity_id", "sensor.runelite_zezima_skill_attack");
+        entity.put("state", 99);
+        entity.put("xp", 5_000_000_000L);
+        entity.put("ratio", 0.5);
+        entity.put("members", true);
+        entity.put("icon", "mdi:sword");
+        return entity;
+    }
+}
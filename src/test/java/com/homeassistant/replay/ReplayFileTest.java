@@ -0,0 +1,91 @@
+package com.homeassistant.replay;
+
+import net.runelite.api.Skill;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReplayFileTest {
+    private static final int HITPOINTS = Skill.HITPOINTS.ordinal();
+    private static final int PRAYER = Skill.PRAYER.ordinal();
+
+    @Test
+    public void realLevelsAreKeptApartFromBoostedLevels() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ReplayFile.Writer writer = new ReplayFile.Writer(bytes)) {
+            ReplayFile.Frame frame = new ReplayFile.Frame();
+            Arrays.fill(frame.boostedSkills, 70);
+            Arrays.fill(frame.realSkills, 70);
+            frame.realSkills[HITPOINTS] = 99;
+            frame.boostedSkills[HITPOINTS] = 99;
+            writer.writeGameTick(frame);
+
+            // Damage only lowers the boosted level
+            frame.tickCount = 1;
+            frame.boostedSkills[HITPOINTS] = 40;
+            writer.writeGameTick(frame);
+
+            // A level up raises both
+            frame.tickCount = 2;
+            frame.boostedSkills[PRAYER] = 71;
+            frame.realSkills[PRAYER] = 71;
+            writer.writeGameTick(frame);
+        }
+
+        List<ReplayFile.Frame> frames = read(bytes.toByteArray());
+        assertEquals(3, frames.size());
+        assertEquals(99, frames.get(0).boostedSkills[HITPOINTS]);
+        assertEquals(99, frames.get(0).realSkills[HITPOINTS]);
+        assertEquals(40, frames.get(1).boostedSkills[HITPOINTS]);
+        assertEquals(99, frames.get(1).realSkills[HITPOINTS]);
+        assertEquals(71, frames.get(2).boostedSkills[PRAYER]);
+        assertEquals(71, frames.get(2).realSkills[PRAYER]);
+        assertEquals(99, frames.get(2).realSkills[HITPOINTS]);
+    }
+
+    @Test
+    public void versionOneReadsRealLevelsAsBoosted() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeInt(ReplayFile.MAGIC);
+            out.writeByte(1);
+            out.writeByte(ReplayFile.GAME_TICK);
+            // Only the skills changed, one of them
+            writeVarInt(out, 1 << 9);
+            writeVarInt(out, 1);
+            out.writeBoolean(true);
+            out.writeUTF(Skill.HITPOINTS.getName());
+            writeVarInt(out, 45);
+        }
+
+        List<ReplayFile.Frame> frames = read(bytes.toByteArray());
+        assertEquals(1, frames.size());
+        assertEquals(45, frames.get(0).boostedSkills[HITPOINTS]);
+        assertEquals(45, frames.get(0).realSkills[HITPOINTS]);
+    }
+
+    private static List<ReplayFile.Frame> read(byte[] bytes) throws IOException {
+        List<ReplayFile.Frame> frames = new ArrayList<>();
+        ReplayFile.read(new ByteArrayInputStream(bytes), new ReplayFile.Visitor() {
+            @Override
+            public void onGameTick(ReplayFile.Frame frame) {
+                frames.add(frame.copy());
+            }
+        });
+        return frames;
+    }
+
+    // Only for small positive values, zigzag encoded the same as the replay file
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        int zigzag = value << 1;
+        while ((zigzag & ~0x7F) != 0) {
+            out.writeByte((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        out.writeByte(zigzag);
+    }
+}
@@ -0,0 +1,74 @@
+package com.homeassistant.runelite.farming;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Every implementation and every 8 bit varbit value against the branches of forVarbitValue.
+ */
+public class PatchStateTableTest
+{
+	@Test
+	public void matchesForVarbitValue()
+	{
+		for (PatchImplementation implementation : PatchImplementation.values())
+		{
+			for (int value = 0; value < 256; value++)
+			{
+				PatchState expected = implementation.forVarbitValue(value);
+				PatchState state = PatchStateTable.get(implementation, value);
+				String message = implementation + " " + value;
+				if (expected == null)
+				{
+					assertNull(message, state);
+				}
+				else
+				{
+					assertEquals(message, expected, state);
+					assertEquals(message, expected.getProduce(), state.getProduce());
+					assertEquals(message, expected.getCropState(), state.getCropState());
+					assertEquals(message, expected.getStage(), state.getStage());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void equalStatesAreOneInstance()
+	{
+		Map<PatchState, PatchState> seen = new HashMap<>();
+		for (PatchImplementation implementation : PatchImplementation.values())
+		{
+			for (int value = 0; value < 256; value++)
+			{
+				PatchState state = PatchStateTable.get(implementation, value);
+				if (state == null)
+				{
+					continue;
+				}
+
+				String message = implementation + " " + value;
+				assertSame(message, state, PatchStateTable.get(implementation, value));
+				assertSame(message, seen.computeIfAbsent(state, s -> s), state);
+			}
+		}
+	}
+
+	@Test
+	public void valuesOutsideTheTableUseForVarbitValue()
+	{
+		for (PatchImplementation implementation : PatchImplementation.values())
+		{
+			for (int value : new int[]{-1, 256, 1 << 16})
+			{
+				assertEquals(implementation + " " + value, implementation.forVarbitValue(value), PatchStateTable.get(implementation, value));
+			}
+		}
+	}
+}
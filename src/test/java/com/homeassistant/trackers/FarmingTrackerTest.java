@@ -0,0 +1,172 @@
+package com.homeassistant.trackers;
+
+import com.homeassistant.enums.PatchStatus;
+import com.homeassistant.runelite.farming.Tab;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The patch entities of checkEntities against what it sent before the tab plan, which went through every tab, skipped
+ * the ignored ones and kept the completion times in EnumMaps.
+ */
+public class FarmingTrackerTest {
+    private static final String USER_NAME = "zezima";
+    private static final List<Tab> IGNORE_TABS = Arrays.asList(
+            Tab.GRAPE,
+            Tab.TIME_OFFSET,
+            Tab.ANIMA,
+            Tab.SPECIAL,
+            Tab.BELLADONNA,
+            Tab.CALQUAT,
+            Tab.CELASTRUS,
+            Tab.CRYSTAL,
+            Tab.BIRD_HOUSE,
+            Tab.OVERVIEW,
+            Tab.HOPS,
+            Tab.CLOCK
+    );
+    private static final long NOW = 1_700_000_000L;
+
+    @Test
+    public void patchEntitiesMatchThePreviousOutput() {
+        assertParity(true);
+    }
+
+    @Test
+    public void noPatchEntitiesWhenFarmingPatchesIsOff() {
+        assertParity(false);
+    }
+
+    /**
+     * Runs both through the same rounds of completion times, from the reset state to a load and a few updates.
+     */
+    private void assertParity(boolean farmingPatches) {
+        FarmingTracker.TabPlan plan = new FarmingTracker.TabPlan("sensor.runelite_" + USER_NAME + "_", farmingPatches);
+        long[] previous = new long[Tab.values().length];
+        long[] current = new long[Tab.values().length];
+        Arrays.fill(previous, -2L);
+        Arrays.fill(current, -2L);
+
+        Map<Tab, Long> previousTimes = new EnumMap<>(Tab.class);
+        Map<Tab, Long> currentTimes = new EnumMap<>(Tab.class);
+        for (Tab tab : Tab.values()) {
+            if (!IGNORE_TABS.contains(tab)) {
+                previousTimes.put(tab, -2L);
+                currentTimes.put(tab, -2L);
+            }
+        }
+
+        int emitted = 0;
+        for (Map<Tab, Long> round : rounds()) {
+            for (Map.Entry<Tab, Long> time : round.entrySet()) {
+                current[time.getKey().ordinal()] = time.getValue();
+                // Only the tracked tabs were loaded before
+                if (!IGNORE_TABS.contains(time.getKey())) {
+                    currentTimes.put(time.getKey(), time.getValue());
+                }
+            }
+
+            List<Map<String, Object>> entities = new ArrayList<>();
+            FarmingTracker.addPatchEntities(plan, previous, current, entities);
+            List<Map<String, Object>> expected = previousEntities(farmingPatches, previousTimes, currentTimes);
+            assertEquals(expected, entities);
+            emitted += entities.size();
+
+            // resetPrevious
+            System.arraycopy(current, 0, previous, 0, current.length);
+            previousTimes.putAll(currentTimes);
+        }
+
+        assertEquals(farmingPatches, emitted > 0);
+    }
+
+    private static List<Map<Tab, Long>> rounds() {
+        List<Map<Tab, Long>> rounds = new ArrayList<>();
+
+        // Nothing loaded yet
+        rounds.add(new EnumMap<>(Tab.class));
+
+        // The first load, every kind of status, the ignored tabs get times as well
+        Map<Tab, Long> loaded = new EnumMap<>(Tab.class);
+        int i = 0;
+        for (Tab tab : Tab.values()) {
+            switch (i++ % 4) {
+                case 0:
+                    loaded.put(tab, NOW + i * 60L);
+                    break;
+                case 1:
+                    loaded.put(tab, 0L);
+                    break;
+                case 2:
+                    loaded.put(tab, -1L);
+                    break;
+                default:
+                    // Stays -2, unknown
+                    break;
+            }
+        }
+        rounds.add(loaded);
+
+        // Nothing changed
+        rounds.add(new EnumMap<>(Tab.class));
+
+        // A few patches become ready or get planted, the compost bin and an ignored tab among them
+        Map<Tab, Long> updated = new EnumMap<>(Tab.class);
+        updated.put(Tab.HERB, 0L);
+        updated.put(Tab.ALLOTMENT, NOW + 3_600L);
+        updated.put(Tab.BIG_COMPOST, NOW + 120L);
+        updated.put(Tab.HOPS, NOW + 240L);
+        updated.put(Tab.TREE, -1L);
+        rounds.add(updated);
+
+        // Set to the time they already have
+        Map<Tab, Long> same = new EnumMap<>(Tab.class);
+        same.put(Tab.ALLOTMENT, NOW + 3_600L);
+        same.put(Tab.BIG_COMPOST, NOW + 120L);
+        rounds.add(same);
+
+        return rounds;
+    }
+
+    /**
+     * The farming patch part of checkEntities before the tab plan.
+     */
+    private static List<Map<String, Object>> previousEntities(boolean farmingPatches, Map<Tab, Long> previousFarmingCompletionTimes, Map<Tab, Long> farmingCompletionTimes) {
+        List<Map<String, Object>> entities = new ArrayList<>();
+        if (farmingPatches) {
+            for (Tab tab : Tab.values()) {
+                if (!Objects.equals(previousFarmingCompletionTimes.get(tab), farmingCompletionTimes.get(tab))) {
+                    if (IGNORE_TABS.contains(tab)) {
+                        continue;
+                    }
+                    String entityId = tab == Tab.BIG_COMPOST
+                            ? String.format("sensor.runelite_%s_compost_bin", USER_NAME)
+                            : String.format("sensor.runelite_%s_%s_patch", USER_NAME, tab.name().toLowerCase());
+
+                    Map<String, Object> attributes = new HashMap<>();
+                    attributes.put("entity_id", entityId);
+
+                    long completionTime = farmingCompletionTimes.get(tab);
+                    PatchStatus patchStatus = PatchStatus.READY;
+
+                    if (completionTime > 0) {
+                        patchStatus = PatchStatus.IN_PROGRESS;
+                        attributes.put("completion_time", Instant.ofEpochSecond(completionTime).toString());
+                    } else if (completionTime == -1) {
+                        patchStatus = PatchStatus.NEVER_PLANTED;
+                    }
+
+                    attributes.put("status", patchStatus.getName());
+
+                    entities.add(attributes);
+                    previousFarmingCompletionTimes.put(tab, farmingCompletionTimes.get(tab));
+                }
+            }
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,159 @@
+package com.homeassistant.trackers;
+
+import com.homeassistant.HomeassistantConfig;
+import com.homeassistant.benchmark.Stubs;
+import com.homeassistant.trackers.events.HomeassistantEvents;
+import com.homeassistant.trackers.events.InternalEvents;
+import net.runelite.api.GameState;
+import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.VarbitChanged;
+import net.runelite.client.eventbus.EventBus;
+import net.runelite.client.eventbus.Subscribe;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The varbit changes reach the subscribers that watch them, with the value each of them saw last.
+ */
+public class VarbitTrackerTest {
+    private final Stubs.ClientState state = new Stubs.ClientState();
+    private final EventBus eventBus = new EventBus();
+    private final Recorder recorder = new Recorder();
+    private VarbitTracker tracker;
+
+    @Before
+    public void setUp() {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("varbitIdsEvent", "100, 70000, nope");
+        tracker = new VarbitTracker(Stubs.client(state), eventBus, Stubs.config(HomeassistantConfig.class, overrides));
+        eventBus.register(tracker);
+        eventBus.register(recorder);
+    }
+
+    @Test
+    public void sharedVarbitReachesEverySubscriber() {
+        tracker.setInternalWatch("a", Arrays.asList(100, 200));
+        tracker.setInternalWatch("b", Collections.singletonList(100));
+        assertArrayEquals(new int[]{100, 200}, tracker.getWatchedVarbitIds());
+
+        state.varbits[100] = 3;
+        tracker.onGameTick(null);
+        // The first values are only stored
+        assertEquals(Collections.emptyList(), recorder.updates);
+        assertEquals(Collections.emptyList(), recorder.events);
+
+        changed(100, 4);
+        assertEquals(Arrays.asList("a 100 3->4", "b 100 3->4"), recorder.updates);
+        assertEquals(Collections.singletonList("100 3->4"), recorder.events);
+
+        // Unchanged, and a varbit nobody watches
+        changed(100, 4);
+        changed(300, 1);
+        assertEquals(2, recorder.updates.size());
+        assertEquals(1, recorder.events.size());
+    }
+
+    @Test
+    public void rebuildingTheIndexKeepsWhatTheSubscribersSaw() {
+        tracker.setInternalWatch("a", Arrays.asList(100, 200));
+        tracker.setInternalWatch("b", Collections.singletonList(100));
+        state.varbits[100] = 3;
+        state.varbits[200] = 7;
+        tracker.onGameTick(null);
+
+        // 100 stays, 200 is dropped and 300 seeded on the next tick
+        tracker.setInternalWatch("a", Arrays.asList(100, 300));
+        tracker.setInternalWatch("b", Collections.emptyList());
+        assertArrayEquals(new int[]{100, 300}, tracker.getWatchedVarbitIds());
+        state.varbits[300] = 9;
+        tracker.onGameTick(null);
+        assertEquals(Collections.emptyList(), recorder.updates);
+
+        changed(100, 5);
+        changed(200, 8);
+        changed(300, 10);
+        assertEquals(Arrays.asList("a 100 3->5", "a 300 9->10"), recorder.updates);
+    }
+
+    @Test
+    public void overrideValueIsThePreviousValueOfTheFirstWatch() {
+        state.varbits[400] = 5;
+        tracker.setInternalWatch("c", Collections.singletonList(400), 0);
+        tracker.onGameTick(null);
+        assertEquals(Collections.singletonList("c 400 0->5"), recorder.updates);
+
+        // Only the first watch of the tracker gets it
+        tracker.setInternalWatch("c", Arrays.asList(400, 500), 0);
+        state.varbits[500] = 6;
+        tracker.onGameTick(null);
+        assertEquals(1, recorder.updates.size());
+    }
+
+    @Test
+    public void seededAgainAfterLoggingOut() {
+        tracker.setInternalWatch("a", Collections.singletonList(200));
+        state.varbits[200] = 1;
+        tracker.onGameTick(null);
+
+        // Logging in to another account, the client sets the varbits while it loads
+        gameState(GameState.LOGIN_SCREEN);
+        gameState(GameState.LOADING);
+        changed(200, 0);
+        changed(200, 2);
+        assertEquals(Collections.emptyList(), recorder.updates);
+
+        gameState(GameState.LOGGED_IN);
+        state.varbits[200] = 2;
+        tracker.onGameTick(null);
+        assertEquals(Collections.emptyList(), recorder.updates);
+
+        changed(200, 3);
+        assertEquals(Collections.singletonList("a 200 2->3"), recorder.updates);
+    }
+
+    @Test
+    public void nothingIsDispatchedWithoutALocalPlayer() {
+        tracker.setInternalWatch("a", Collections.singletonList(200));
+        tracker.onGameTick(null);
+
+        state.playerName = null;
+        changed(200, 1);
+        assertEquals(Collections.emptyList(), recorder.updates);
+    }
+
+    private void changed(int varbitId, int value) {
+        state.varbits[varbitId] = value;
+        VarbitChanged event = new VarbitChanged();
+        event.setVarbitId(varbitId);
+        event.setValue(value);
+        eventBus.post(event);
+    }
+
+    private void gameState(GameState gameState) {
+        state.gameState = gameState;
+        GameStateChanged event = new GameStateChanged();
+        event.setGameState(gameState);
+        eventBus.post(event);
+    }
+
+    public class Recorder {
+        private final List<String> updates = new ArrayList<>();
+        private final List<String> events = new ArrayList<>();
+
+        @Subscribe
+        public void onVarbitUpdate(InternalEvents.VarbitUpdate update) {
+            updates.add(update.getTrackerId() + " " + update.getVarbitId() + " " + update.getPreviousValue() + "->" + update.getNewValue());
+        }
+
+        @Subscribe
+        public void onSendEvent(HomeassistantEvents.SendEvent event) {
+            Map<String, Object> data = event.getEventObj();
+            events.add(data.get("varbit_id") + " " + data.get("old_value") + "->" + data.get("new_value"));
+        }
+    }
+}